@@ -16,7 +16,11 @@
 
 package com.mrd.bitlib;
 
+import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 
 import com.mrd.bitlib.crypto.InMemoryPrivateKey;
 import com.mrd.bitlib.crypto.MrdExport;
@@ -33,6 +37,9 @@ public class BackupUtil {
    }
 
    public static void main(String[] args) throws IOException, MrdExport.DecodingException, InterruptedException {
+      if (args.length == 3 && args[0].equals("--batch")) {
+         System.exit(batch(args[1], args[2]) == 0 ? 0 : 1);
+      }
       if (args.length != 2) {
          printHelp();
          return;
@@ -42,21 +49,49 @@ public class BackupUtil {
 
    }
 
-   public String getKey() {
-      final String realpassword;
+   private static int batch(String fileName, String password) throws IOException, InterruptedException {
+      String error = checkPassword(password);
+      if (error != null) {
+         System.out.println(error);
+         return 1;
+      }
+      InputStream stream = fileName.equals("-") ? System.in : new FileInputStream(fileName);
+      BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+      BatchDecryptor decryptor = new BatchDecryptor(stripChecksum(password), Runtime.getRuntime()
+            .availableProcessors());
+      try {
+         return decryptor.decrypt(reader, System.out);
+      } finally {
+         decryptor.shutdown();
+         reader.close();
+      }
+   }
+
+   /**
+    * @return an error message if the password is not a 15 character password
+    *         optionally followed by a valid checksum character, null otherwise
+    */
+   static String checkPassword(String password) {
       if (password.length() == 16) {
-         boolean checksumValid = MrdExport.isChecksumValid(password);
-         if (!checksumValid) {
+         if (!MrdExport.isChecksumValid(password)) {
             return "Error: the last character of the password was not matching the checksum";
-         } else {
-            realpassword = password.substring(0, 15);
          }
-      } else {
-         if (password.length() != 15) {
-            return "Error: the supplied password did not match the expected length";
-         }
-         realpassword = password;
+      } else if (password.length() != 15) {
+         return "Error: the supplied password did not match the expected length";
+      }
+      return null;
+   }
+
+   static String stripChecksum(String password) {
+      return password.substring(0, 15);
+   }
+
+   public String getKey() {
+      String error = checkPassword(password);
+      if (error != null) {
+         return error;
       }
+      final String realpassword = stripChecksum(password);
       try {
          MrdExport.V1.Header header = MrdExport.V1.extractHeader(encryptedPrivateKey);
          MrdExport.V1.KdfParameters kdfParameters = MrdExport.V1.KdfParameters.fromPassphraseAndHeader(realpassword, header);
@@ -82,6 +117,9 @@ public class BackupUtil {
       System.out.println("\n" +
             "Usage of this restore utility:\n" +
             "java -jar backuputil.jar encryptedKey PASSWORD\n" +
+            "java -jar backuputil.jar --batch FILE PASSWORD\n" +
+            "In batch mode FILE contains one encrypted key per line, use - to read from standard input.\n" +
+            "Every key is written as: encryptedKey<TAB>privateKey<TAB>address\n" +
             "EXAMPLE:\n" +
             "java -jar backuputil.jar xEncGXICZE1_eVYfGWDioNu_8hA6RZzep4XqwPGRtcKb01MDg3s1XFntJYI9Dw QDTDXOYFBXBKKMKR");
    }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.MrdExport;
+import com.mrd.bitlib.util.HexUtils;
+
+/**
+ * Decrypts many encrypted keys that share a password, one per input line.
+ * <p/>
+ * Keys from the same backup share the header salt and scrypt parameters, so
+ * the key derivation runs once per distinct header rather than once per key.
+ * Decryption runs in parallel and the results are written in input order as
+ * soon as they are available, one tab separated line per key.
+ */
+public class BatchDecryptor {
+
+   private final String _password;
+   private final int _window;
+   private final ExecutorService _kdfExecutor;
+   private final ExecutorService _decryptExecutor;
+   private final Map<String, Future<MrdExport.V1.EncryptionParameters>> _parameters;
+
+   /**
+    * @param password
+    *           the 15 character password, without checksum character
+    * @param threads
+    *           the number of keys to decrypt concurrently
+    */
+   public BatchDecryptor(String password, int threads) {
+      _password = password;
+      _window = threads * 4;
+      // Key derivation gets its own threads, decryption tasks wait for it
+      _kdfExecutor = Executors.newFixedThreadPool(threads);
+      _decryptExecutor = Executors.newFixedThreadPool(threads);
+      _parameters = new HashMap<String, Future<MrdExport.V1.EncryptionParameters>>();
+   }
+
+   /**
+    * Decrypt all keys read from in and write one line per key to out. Empty
+    * lines and lines starting with # are skipped.
+    * 
+    * @return the number of keys that could not be decrypted
+    */
+   public int decrypt(BufferedReader in, PrintStream out) throws IOException, InterruptedException {
+      LinkedList<Future<String>> pending = new LinkedList<Future<String>>();
+      int errors = 0;
+      String line;
+      while ((line = in.readLine()) != null) {
+         line = line.trim();
+         if (line.length() == 0 || line.startsWith("#")) {
+            continue;
+         }
+         if (pending.size() == _window) {
+            errors += write(pending.removeFirst(), out);
+         }
+         pending.addLast(_decryptExecutor.submit(createTask(line)));
+      }
+      while (!pending.isEmpty()) {
+         errors += write(pending.removeFirst(), out);
+      }
+      out.flush();
+      return errors;
+   }
+
+   public void shutdown() {
+      _kdfExecutor.shutdownNow();
+      _decryptExecutor.shutdownNow();
+   }
+
+   private Callable<String> createTask(final String encryptedKey) {
+      final MrdExport.V1.Header header;
+      try {
+         header = MrdExport.V1.extractHeader(encryptedKey);
+      } catch (MrdExport.DecodingException e) {
+         return result(encryptedKey + "\tError: not a valid encrypted key");
+      }
+      final Future<MrdExport.V1.EncryptionParameters> parameters = getParameters(header);
+      return new Callable<String>() {
+         @Override
+         public String call() throws Exception {
+            try {
+               String privateKey = MrdExport.V1.decrypt(parameters.get(), encryptedKey, header.network);
+               InMemoryPrivateKey key = new InMemoryPrivateKey(privateKey, header.network);
+               return encryptedKey + "\t" + key.getBase58EncodedPrivateKey(header.network) + "\t"
+                     + key.getPublicKey().toAddress(header.network);
+            } catch (MrdExport.V1.InvalidChecksumException e) {
+               return encryptedKey + "\tError: the supplied password did not match the checksum of the encrypted key";
+            } catch (MrdExport.DecodingException e) {
+               return encryptedKey + "\tError: not a valid encrypted key";
+            }
+         }
+      };
+   }
+
+   private Future<MrdExport.V1.EncryptionParameters> getParameters(MrdExport.V1.Header header) {
+      String id = HexUtils.toHex(header.salt) + ":" + header.n + ":" + header.r + ":" + header.p;
+      Future<MrdExport.V1.EncryptionParameters> parameters = _parameters.get(id);
+      if (parameters == null) {
+         final MrdExport.V1.KdfParameters kdfParameters = MrdExport.V1.KdfParameters.fromPassphraseAndHeader(_password,
+               header);
+         parameters = _kdfExecutor.submit(new Callable<MrdExport.V1.EncryptionParameters>() {
+            @Override
+            public MrdExport.V1.EncryptionParameters call() throws InterruptedException {
+               return MrdExport.V1.EncryptionParameters.generate(kdfParameters);
+            }
+         });
+         _parameters.put(id, parameters);
+      }
+      return parameters;
+   }
+
+   private static Callable<String> result(final String line) {
+      return new Callable<String>() {
+         @Override
+         public String call() {
+            return line;
+         }
+      };
+   }
+
+   private static int write(Future<String> result, PrintStream out) throws InterruptedException {
+      String line;
+      try {
+         line = result.get();
+      } catch (ExecutionException e) {
+         throw new RuntimeException(e.getCause());
+      }
+      out.println(line);
+      return line.contains("\tError: ") ? 1 : 0;
+   }
+}
@@ -2,6 +2,12 @@ package com.mrd.bitlib;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
 import org.junit.Test;
 
 public class BackupUtilTest {
@@ -34,4 +40,26 @@ public class BackupUtilTest {
       decoded = util.getKey();
       assertTrue(decoded.startsWith("Error: "));
    }
+
+   @Test
+   public void testBatch() throws Exception {
+      String input = ENCRYPTED_KEY + "\n\n# comment\n" + ENCRYPTED_KEY + "\n"
+            + "xEncGXICZE1_eVYfGWDioAA_8hA6RZzep4XqwPGRtcKb01MDg3s1XFntJYI9Dw\nnot a key\n";
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      BatchDecryptor decryptor = new BatchDecryptor("QDTDXOYFBXBKKMK", 2);
+      int errors;
+      try {
+         errors = decryptor.decrypt(new BufferedReader(new StringReader(input)), new PrintStream(output, true, "UTF-8"));
+      } finally {
+         decryptor.shutdown();
+      }
+      String[] lines = output.toString("UTF-8").split("\n");
+      assertEquals(2, errors);
+      assertEquals(4, lines.length);
+      String expected = ENCRYPTED_KEY + "\tcRS3zDecX6c8UF9mtmh5vkB8CQ4nCNn1bjPQayXpt3fSLwSPi1LF\tn4J5FqC89EnV8hikctDs6njmG2cwxS8cM5";
+      assertEquals(expected, lines[0]);
+      assertEquals(expected, lines[1]);
+      assertTrue(lines[2].contains("\tError: "));
+      assertTrue(lines[3].startsWith("not a key\tError: "));
+   }
 }
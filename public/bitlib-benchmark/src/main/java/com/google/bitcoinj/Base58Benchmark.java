@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.bitcoinj;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base58 of the length of an address (21 bytes) and a private key (33 bytes)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Base58Benchmark {
+
+   private byte[] _address;
+   private byte[] _privateKey;
+   private String _encodedAddress;
+   private String _encodedPrivateKey;
+
+   @Setup
+   public void setup() {
+      Random random = new Random(42);
+      _address = new byte[21];
+      _privateKey = new byte[33];
+      random.nextBytes(_address);
+      random.nextBytes(_privateKey);
+      _encodedAddress = Base58.encodeWithChecksum(_address);
+      _encodedPrivateKey = Base58.encodeWithChecksum(_privateKey);
+   }
+
+   @Benchmark
+   public String encodeAddress() {
+      return Base58.encodeWithChecksum(_address);
+   }
+
+   @Benchmark
+   public byte[] decodeAddress() {
+      return Base58.decodeChecked(_encodedAddress);
+   }
+
+   @Benchmark
+   public String encodePrivateKey() {
+      return Base58.encodeWithChecksum(_privateKey);
+   }
+
+   @Benchmark
+   public byte[] decodePrivateKey() {
+      return Base58.decodeChecked(_encodedPrivateKey);
+   }
+
+}
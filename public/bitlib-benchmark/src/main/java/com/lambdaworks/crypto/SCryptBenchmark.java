@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.lambdaworks.crypto;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Key stretching with the pure Java scrypt, at the parameters of the MRD
+ * export (N = 1024) and BIP38 (N = 16384)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SCryptBenchmark {
+
+   private static final byte[] PASSWORD = "password".getBytes();
+   private static final byte[] SALT = "NaCl".getBytes();
+
+   @Param({ "1024", "16384" })
+   public int N;
+
+   @Param({ "8" })
+   public int r;
+
+   @Param({ "1", "8" })
+   public int p;
+
+   @Param({ "FLAT", "CHUNKED", "DIRECT" })
+   public SCryptMemory.Layout layout;
+
+   private int _lanes;
+   private ExecutorService _executor;
+
+   @Setup
+   public void setup() {
+      // The same number of lanes as scryptParallel with the default budget, on
+      // a pool that is not part of the measurement
+      _lanes = Math.max(1, Math.min(SCrypt.concurrentLanes(N, r, p, SCrypt.defaultMemoryBudget()), Runtime
+            .getRuntime().availableProcessors()));
+      _executor = Executors.newFixedThreadPool(_lanes);
+   }
+
+   @TearDown
+   public void tearDown() {
+      _executor.shutdownNow();
+   }
+
+   @Benchmark
+   public byte[] scryptJ() throws GeneralSecurityException, InterruptedException {
+      return SCrypt.scryptJ(PASSWORD, SALT, N, r, p, 64, null, layout);
+   }
+
+   @Benchmark
+   public byte[] scryptParallel() throws GeneralSecurityException, InterruptedException {
+      return SCrypt.scryptParallel(PASSWORD, SALT, N, r, p, 64, null, _executor, _lanes, layout);
+   }
+
+}
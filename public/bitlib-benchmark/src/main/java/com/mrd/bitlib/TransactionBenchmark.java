@@ -0,0 +1,201 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mrd.bitlib.StandardTransactionBuilder.InsufficientFundsException;
+import com.mrd.bitlib.StandardTransactionBuilder.OutputTooSmallException;
+import com.mrd.bitlib.StandardTransactionBuilder.UnsignedTransaction;
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PrivateKeyRing;
+import com.mrd.bitlib.crypto.RandomSource;
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.model.OutPoint;
+import com.mrd.bitlib.model.ScriptOutputStandard;
+import com.mrd.bitlib.model.Transaction;
+import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.model.TransactionInput;
+import com.mrd.bitlib.model.TransactionOutput;
+import com.mrd.bitlib.model.TransactionScanner;
+import com.mrd.bitlib.model.UnspentTransactionOutput;
+import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.Hash160Set;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.OutPointSet;
+
+/**
+ * Building, signing, serializing and parsing transactions that spend the
+ * given number of inputs, each from its own key
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransactionBenchmark {
+
+   private static final NetworkParameters NETWORK = NetworkParameters.productionNetwork;
+   private static final long INPUT_VALUE = 10000000;
+
+   @Param({ "1", "10", "100", "1000" })
+   public int inputs;
+
+   private final RandomSource _randomSource = new RandomSource() {
+      private final Random _random = new Random(42);
+
+      @Override
+      public void nextBytes(byte[] bytes) {
+         _random.nextBytes(bytes);
+      }
+   };
+
+   private List<UnspentTransactionOutput> _unspent;
+   private PrivateKeyRing _keyRing;
+   private Address _receiver;
+   private Address _change;
+   private UnsignedTransaction _unsigned;
+   private List<byte[]> _signatures;
+   private Transaction _transaction;
+   private byte[] _transactionBytes;
+   private Set<Address> _addressSet;
+   private Set<OutPoint> _outPointSet;
+   private TransactionScanner _scanner;
+
+   private final TransactionScanner.Listener _listener = new TransactionScanner.Listener() {
+      @Override
+      public void onInput(byte[] buffer, int transactionOffset, int transactionLength, int inputIndex,
+            int outPointOffset) {
+      }
+
+      @Override
+      public void onOutput(byte[] buffer, int transactionOffset, int transactionLength, int outputIndex,
+            int hashOffset) {
+      }
+   };
+
+   @Setup
+   public void setup() throws InsufficientFundsException, OutputTooSmallException {
+      _keyRing = new PrivateKeyRing();
+      _unspent = new ArrayList<UnspentTransactionOutput>(inputs);
+      List<InMemoryPrivateKey> keys = InMemoryPrivateKey.generateBatch(inputs + 2, _randomSource, true);
+      for (int i = 0; i < inputs; i++) {
+         InMemoryPrivateKey key = keys.get(i);
+         _keyRing.addPrivateKey(key, NETWORK);
+         Address address = key.getPublicKey().toAddress(NETWORK);
+         OutPoint outPoint = new OutPoint(HashUtils.sha256(new byte[] { (byte) i, (byte) (i >> 8) }), i % 3);
+         _unspent.add(new UnspentTransactionOutput(outPoint, 300000, INPUT_VALUE, new ScriptOutputStandard(address
+               .getTypeSpecificBytes())));
+      }
+      _receiver = keys.get(inputs).getPublicKey().toAddress(NETWORK);
+      _change = keys.get(inputs + 1).getPublicKey().toAddress(NETWORK);
+
+      _unsigned = createUnsignedTransaction();
+      _signatures = signTransaction();
+      _transaction = finalizeTransaction();
+      _transactionBytes = serialize();
+
+      _addressSet = new HashSet<Address>();
+      _addressSet.add(_change);
+      _outPointSet = new HashSet<OutPoint>();
+      for (UnspentTransactionOutput output : _unspent) {
+         _outPointSet.add(output.outPoint);
+      }
+      Hash160Set addresses = new Hash160Set();
+      addresses.add(_change);
+      _scanner = new TransactionScanner(addresses, new OutPointSet(_outPointSet));
+   }
+
+   /**
+    * Spends all inputs, as all but one are not enough to pay for the output
+    */
+   @Benchmark
+   public UnsignedTransaction createUnsignedTransaction() throws InsufficientFundsException, OutputTooSmallException {
+      StandardTransactionBuilder builder = new StandardTransactionBuilder(NETWORK);
+      builder.addOutput(_receiver, inputs * INPUT_VALUE - INPUT_VALUE / 2);
+      return builder.createUnsignedTransaction(_unspent, _change, _keyRing, NETWORK);
+   }
+
+   @Benchmark
+   public List<byte[]> signTransaction() {
+      return StandardTransactionBuilder.generateSignatures(_unsigned.getSignatureInfo(), _keyRing, _randomSource);
+   }
+
+   @Benchmark
+   public Transaction finalizeTransaction() {
+      return StandardTransactionBuilder.finalizeTransaction(_unsigned, _signatures);
+   }
+
+   @Benchmark
+   public byte[] serialize() {
+      return _transaction.toBytes();
+   }
+
+   @Benchmark
+   public Transaction parse() throws TransactionParsingException {
+      return Transaction.fromByteReader(new ByteReader(_transactionBytes));
+   }
+
+   /**
+    * Find the wallet inputs and outputs by parsing the transaction
+    */
+   @Benchmark
+   public int matchParsed() throws TransactionParsingException {
+      Transaction transaction = Transaction.fromByteReader(new ByteReader(_transactionBytes));
+      int matches = 0;
+      for (TransactionInput input : transaction.inputs) {
+         if (_outPointSet.contains(input.outPoint)) {
+            matches++;
+         }
+      }
+      for (TransactionOutput output : transaction.outputs) {
+         if (_addressSet.contains(output.script.getAddress(NETWORK))) {
+            matches++;
+         }
+      }
+      return matches;
+   }
+
+   /**
+    * Find the wallet inputs and outputs on the serialized transaction
+    */
+   @Benchmark
+   public int matchScanned() throws TransactionParsingException {
+      return _scanner.scan(_transactionBytes, 0, _listener);
+   }
+
+}
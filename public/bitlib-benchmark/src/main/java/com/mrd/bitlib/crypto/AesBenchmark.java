@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.crypto;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * javax.crypto AES compared to the Rijndael fallback in {@link Aes}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AesBenchmark {
+
+   @Param({ "16", "1024", "65536" })
+   public int size;
+
+   @Param({ "16", "32" })
+   public int keyLength;
+
+   private byte[] _key;
+   private byte[] _iv;
+   private byte[] _data;
+   private byte[] _block;
+   private Aes.BlockEncryptor _encryptor;
+
+   @Setup
+   public void setup() {
+      Random random = new Random(42);
+      _key = new byte[keyLength];
+      _iv = new byte[Aes.BLOCK_SIZE];
+      _data = new byte[size];
+      random.nextBytes(_key);
+      random.nextBytes(_iv);
+      random.nextBytes(_data);
+      _block = new byte[Aes.BLOCK_SIZE];
+      _encryptor = Aes.createEncryptor(_key);
+   }
+
+   /**
+    * The Fortuna generator path: a new key followed by a few blocks
+    */
+   @Benchmark
+   public byte[] rekeyAndEncrypt() {
+      _encryptor.setKey(_key);
+      _encryptor.encrypt(_data, _block);
+      return _block;
+   }
+
+   /**
+    * Like {@link #rekeyAndEncrypt()} with a new encryptor for every key
+    */
+   @Benchmark
+   public byte[] createEncryptorAndEncrypt() {
+      Aes.createEncryptor(_key).encrypt(_data, _block);
+      return _block;
+   }
+
+   /**
+    * Uses the Rijndael fallback where javax.crypto is limited to shorter keys
+    */
+   @Benchmark
+   public byte[] encryptCbc() {
+      return Aes.encryptCbc(_key, _iv, _data);
+   }
+
+   @Benchmark
+   public byte[] encryptCbcRijndael() {
+      return Aes.rijndaelEncrypt(_key, _iv, _data);
+   }
+
+   @Benchmark
+   public byte[] decryptCbc() {
+      return Aes.decryptCbc(_key, _iv, _data);
+   }
+
+   @Benchmark
+   public byte[] decryptCbcRijndael() {
+      return Aes.rijndaelDecrypt(_key, _iv, _data);
+   }
+
+}
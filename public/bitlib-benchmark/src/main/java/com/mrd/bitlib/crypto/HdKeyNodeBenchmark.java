@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.crypto;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mrd.bitlib.crypto.HdKeyNode.KeyGenerationException;
+import com.mrd.bitlib.util.HexUtils;
+
+/**
+ * BIP32 key derivation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HdKeyNodeBenchmark {
+
+   private static final byte[] SEED = HexUtils.toBytes("000102030405060708090a0b0c0d0e0f");
+   private static final int HARDENED = 0x80000000;
+
+   private HdKeyNode _root;
+   private HdKeyNode _publicRoot;
+   private int _index;
+
+   @Setup
+   public void setup() throws KeyGenerationException {
+      _root = HdKeyNode.fromSeed(SEED);
+      _publicRoot = _root.getPublicNode();
+   }
+
+   private int nextIndex() {
+      // A new child every time, as derived nodes are not cached
+      _index = (_index + 1) & 0x7FFFFFFF;
+      return _index;
+   }
+
+   @Benchmark
+   public HdKeyNode fromSeed() throws KeyGenerationException {
+      return HdKeyNode.fromSeed(SEED);
+   }
+
+   @Benchmark
+   public HdKeyNode privateChild() throws KeyGenerationException {
+      return _root.createChildNode(nextIndex());
+   }
+
+   @Benchmark
+   public HdKeyNode hardenedChild() throws KeyGenerationException {
+      return _root.createChildNode(nextIndex() | HARDENED);
+   }
+
+   @Benchmark
+   public PublicKey publicChild() throws KeyGenerationException {
+      return _publicRoot.createChildPublicKey(nextIndex());
+   }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.crypto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+/**
+ * Key generation, signing and signature verification
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SigningBenchmark {
+
+   private static final int BATCH_SIZE = 100;
+   private static final String MESSAGE = "Hello, this is Mycelium";
+
+   /**
+    * Deterministic, so that every run measures the same work
+    */
+   private static class BenchmarkRandomSource implements RandomSource {
+      private final Random _random = new Random(42);
+
+      @Override
+      public void nextBytes(byte[] bytes) {
+         _random.nextBytes(bytes);
+      }
+   }
+
+   private final RandomSource _randomSource = new BenchmarkRandomSource();
+   private InMemoryPrivateKey _key;
+   private InMemoryPrivateKey.Signer _signer;
+   private Sha256Hash _hash;
+   private List<Sha256Hash> _hashes;
+   private Signature _signature;
+   private Address _address;
+   private String _signedMessage;
+
+   @Setup
+   public void setup() {
+      _key = new InMemoryPrivateKey(_randomSource, true);
+      _signer = _key.createSigner();
+      _hash = HashUtils.sha256(new byte[] { 1, 2, 3 });
+      _hashes = new ArrayList<Sha256Hash>();
+      for (int i = 0; i < BATCH_SIZE; i++) {
+         _hashes.add(HashUtils.sha256(new byte[] { (byte) i }));
+      }
+      _signature = _key.generateSignature(_hash, _randomSource);
+      _address = _key.getPublicKey().toAddress(NetworkParameters.productionNetwork);
+      _signedMessage = _key.signMessage(MESSAGE, _randomSource).getBase64Signature();
+   }
+
+   @Benchmark
+   public InMemoryPrivateKey generateKey() {
+      return new InMemoryPrivateKey(_randomSource, true);
+   }
+
+   /**
+    * Time per batch of {@value #BATCH_SIZE} keys
+    */
+   @Benchmark
+   public List<InMemoryPrivateKey> generateKeyBatch() {
+      return InMemoryPrivateKey.generateBatch(BATCH_SIZE, _randomSource, true);
+   }
+
+   @Benchmark
+   public Signature generateSignature() {
+      return _key.generateSignature(_hash, _randomSource);
+   }
+
+   /**
+    * Time per batch of {@value #BATCH_SIZE} signatures
+    */
+   @Benchmark
+   public List<Signature> signMany() {
+      return _signer.signMany(_hashes, _randomSource);
+   }
+
+   @Benchmark
+   public boolean verifySignature() {
+      // A fresh public key, so that the point is decoded as in real use
+      PublicKey publicKey = new PublicKey(_key.getPublicKey().getPublicKeyBytes());
+      return Signatures.verifySignature(_hash.getBytes(), _signature, publicKey.getQ());
+   }
+
+   @Benchmark
+   public SignedMessage validateSignedMessage() throws WrongSignatureException {
+      return SignedMessage.validate(_address, MESSAGE, _signedMessage);
+   }
+
+}
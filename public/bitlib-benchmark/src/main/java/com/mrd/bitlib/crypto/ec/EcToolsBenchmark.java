@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.crypto.ec;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Point multiplication on secp256k1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EcToolsBenchmark {
+
+   private static final int BATCH_SIZE = 100;
+
+   private BigInteger _k;
+   private BigInteger _l;
+   private Point _point;
+   private BigInteger[] _batch;
+
+   @Setup
+   public void setup() {
+      Random random = new Random(42);
+      _k = new BigInteger(256, random).mod(Parameters.n);
+      _l = new BigInteger(256, random).mod(Parameters.n);
+      _point = EcTools.multiply(Parameters.G, new BigInteger(256, random).mod(Parameters.n));
+      _batch = new BigInteger[BATCH_SIZE];
+      for (int i = 0; i < _batch.length; i++) {
+         _batch[i] = new BigInteger(256, random).mod(Parameters.n);
+      }
+   }
+
+   @Benchmark
+   public Point multiplyG() {
+      return EcTools.multiplyG(_k);
+   }
+
+   @Benchmark
+   public Point multiplyGGeneric() {
+      return EcTools.multiply(Parameters.G, _k);
+   }
+
+   @Benchmark
+   public Point multiplyPoint() {
+      return EcTools.multiply(_point, _k);
+   }
+
+   @Benchmark
+   public Point sumOfTwoMultiplies() {
+      return EcTools.sumOfTwoMultiplies(Parameters.G, _k, _point, _l);
+   }
+
+   /**
+    * Time per batch of {@value #BATCH_SIZE} multiplications
+    */
+   @Benchmark
+   public Point[] multiplyGBatch() {
+      return EcTools.multiplyG(_batch);
+   }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mrd.bitlib.crypto.Hmac;
+import com.mrd.bitlib.crypto.HmacContext;
+
+/**
+ * Hash functions and HMAC
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HashUtilsBenchmark {
+
+   @Param({ "33", "1024" })
+   public int size;
+
+   private byte[] _data;
+   private byte[] _key;
+   private HmacContext _hmac;
+
+   @Setup
+   public void setup() {
+      Random random = new Random(42);
+      _data = new byte[size];
+      _key = new byte[32];
+      random.nextBytes(_data);
+      random.nextBytes(_key);
+      _hmac = HmacContext.sha512(_key);
+   }
+
+   @Benchmark
+   public Sha256Hash sha256() {
+      return HashUtils.sha256(_data);
+   }
+
+   @Benchmark
+   public Sha256Hash doubleSha256() {
+      return HashUtils.doubleSha256(_data);
+   }
+
+   @Benchmark
+   public byte[] addressHash() {
+      return HashUtils.addressHash(_data);
+   }
+
+   @Benchmark
+   public byte[] hmacSha512() {
+      return Hmac.hmacSha512(_key, _data);
+   }
+
+   @Benchmark
+   public byte[] hmacSha512Context() {
+      return _hmac.mac(_data);
+   }
+
+}
@@ -20,12 +20,10 @@ package com.google.bitcoinj;
  * limitations under the License.
  */
 
-import com.mrd.bitlib.util.HashUtils;
-import com.mrd.bitlib.util.Sha256Hash;
-
-import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
-import java.util.Arrays;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * <p>
@@ -48,6 +46,9 @@ import java.util.Arrays;
  * <li>Doubleclicking selects the whole number as one word if it's all
  * alphanumeric.</li>
  * </ul>
+ * <p>
+ * The codec works on 32-bit limbs. Encoding divides by 58^5 so that each pass over the limbs yields five digits,
+ * decoding multiplies in groups of five digits. Checksums are calculated with a per-thread SHA-256 digest.
  */
 public class Base58 {
    public static final char[] ALPHABET = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".toCharArray();
@@ -62,45 +63,83 @@ public class Base58 {
       }
    }
 
+   /**
+    * 58^0 up to 58^5, 58^5 is the largest power of 58 that fits into 30 bits
+    */
+   private static final long[] POWERS_OF_58 = { 1L, 58L, 3364L, 195112L, 11316496L, 656356768L };
+   private static final int DIGITS_PER_LIMB_STEP = 5;
+   private static final long LIMB_STEP_DIVISOR = POWERS_OF_58[DIGITS_PER_LIMB_STEP];
+   private static final int CHECKSUM_LENGTH = 4;
+
+   public static final int DECODE_OK = 0;
+   public static final int DECODE_INVALID_CHARACTER = -1;
+   public static final int DECODE_INVALID_LENGTH = -2;
+   public static final int DECODE_INVALID_CHECKSUM = -3;
+
+   private static final ThreadLocal<Checksummer> CHECKSUMMER = new ThreadLocal<Checksummer>() {
+      @Override
+      protected Checksummer initialValue() {
+         return new Checksummer();
+      }
+   };
+
    /** Encodes the given bytes in base58. No checksum is appended. */
    public static String encode(byte[] input) {
-      if (input.length == 0) {
+      int length = input.length;
+      if (length == 0) {
          return "";
       }
-      input = copyOfRange(input, 0, input.length);
       // Count leading zeroes.
       int zeroCount = 0;
-      while (zeroCount < input.length && input[zeroCount] == 0) {
+      while (zeroCount < length && input[zeroCount] == 0) {
          ++zeroCount;
       }
-      // The actual encoding.
-      byte[] temp = new byte[input.length * 2];
-      int j = temp.length;
+      // Load the remaining bytes into big endian 32-bit limbs
+      int significant = length - zeroCount;
+      int limbCount = (significant + 3) / 4;
+      int[] limbs = new int[limbCount];
+      int limb = limbCount - 1;
+      int shift = 0;
+      for (int i = length - 1; i >= zeroCount; i--) {
+         limbs[limb] |= (input[i] & 0xFF) << shift;
+         shift += 8;
+         if (shift == 32) {
+            shift = 0;
+            limb--;
+         }
+      }
 
-      int startAt = zeroCount;
-      while (startAt < input.length) {
-         byte mod = divmod58(input, startAt);
-         if (input[startAt] == 0) {
+      // log(256) / log(58) is about 1.366, add room for the padding of the last step
+      char[] temp = new char[zeroCount + significant * 138 / 100 + 2 * DIGITS_PER_LIMB_STEP];
+      int j = temp.length;
+      int startAt = 0;
+      while (startAt < limbCount) {
+         // limbs -> limbs / 58^5, five digits from the remainder
+         long remainder = 0;
+         for (int i = startAt; i < limbCount; i++) {
+            long current = (remainder << 32) | (limbs[i] & 0xFFFFFFFFL);
+            limbs[i] = (int) (current / LIMB_STEP_DIVISOR);
+            remainder = current % LIMB_STEP_DIVISOR;
+         }
+         while (startAt < limbCount && limbs[startAt] == 0) {
             ++startAt;
          }
-         temp[--j] = (byte) ALPHABET[mod];
+         int digits = (int) remainder;
+         for (int k = 0; k < DIGITS_PER_LIMB_STEP; k++) {
+            temp[--j] = ALPHABET[digits % 58];
+            digits /= 58;
+         }
       }
 
-      // Strip extra '1' if there are some after decoding.
+      // Strip extra '1' if there are some after encoding.
       while (j < temp.length && temp[j] == ALPHABET[0]) {
          ++j;
       }
       // Add as many leading '1' as there were leading zeros.
       while (--zeroCount >= 0) {
-         temp[--j] = (byte) ALPHABET[0];
-      }
-
-      byte[] output = copyOfRange(temp, j, temp.length);
-      try {
-         return new String(output, "US-ASCII");
-      } catch (UnsupportedEncodingException e) {
-         throw new RuntimeException(e); // Cannot happen.
+         temp[--j] = ALPHABET[0];
       }
+      return new String(temp, j, temp.length - j);
    }
 
    /**
@@ -108,62 +147,105 @@ public class Base58 {
     * address encoding
     */
    public static String encodeWithChecksum(byte[] input) {
-      byte[] b = new byte[input.length + 4];
+      byte[] b = new byte[input.length + CHECKSUM_LENGTH];
       System.arraycopy(input, 0, b, 0, input.length);
-      Sha256Hash checkSum = HashUtils.doubleSha256(b, 0, input.length);
-      System.arraycopy(checkSum.getBytes(), 0, b, input.length, 4);
+      CHECKSUMMER.get().checksum(b, input.length, b, input.length);
       return encode(b);
    }
-   
+
    public static byte[] decode(String input) {
+      // every character contributes at most one byte
+      byte[] temp = new byte[input.length()];
+      int length = decodeInto(input, temp);
+      if (length < 0) {
+         return null;
+      }
+      byte[] result = new byte[length];
+      System.arraycopy(temp, temp.length - length, result, 0, length);
+      return result;
+   }
 
-      if (input.length() == 0) {
-         return new byte[0];
+   /**
+    * Decodes the input into the last bytes of dest.
+    * 
+    * @return the number of decoded bytes, {@link #DECODE_INVALID_CHARACTER} or {@link #DECODE_INVALID_LENGTH} if the
+    *         result does not fit into dest
+    */
+   private static int decodeInto(CharSequence input, byte[] dest) {
+      int length = input.length();
+      if (length == 0) {
+         return 0;
       }
       // Get rid of any UTF-8 BOM marker. Those should not be present, but might have slipped in nonetheless,
       // since Java does not automatically discard them when reading a stream. Only remove it, if at the beginning
       // of the string. Otherwise, something is probably seriously wrong.
-      if (input.charAt(0) == '\uFEFF') input = input.substring(1);
-
-      byte[] input58 = new byte[input.length()];
-      // Transform the String to a base58 byte sequence
-      for (int i = 0; i < input.length(); ++i) {
-         char c = input.charAt(i);
-
-         int digit58 = -1;
-         if (c >= 0 && c < 128) {
-            digit58 = INDEXES[c];
-         }
-         if (digit58 < 0) {
-            return null;
-         }
+      int first = input.charAt(0) == '\uFEFF' ? 1 : 0;
 
-         input58[i] = (byte) digit58;
-      }
       // Count leading zeroes
       int zeroCount = 0;
-      while (zeroCount < input58.length && input58[zeroCount] == 0) {
+      while (first + zeroCount < length && input.charAt(first + zeroCount) == ALPHABET[0]) {
          ++zeroCount;
       }
-      // The encoding
-      byte[] temp = new byte[input.length()];
-      int j = temp.length;
+      if (zeroCount > dest.length) {
+         return DECODE_INVALID_LENGTH;
+      }
 
-      int startAt = zeroCount;
-      while (startAt < input58.length) {
-         byte mod = divmod256(input58, startAt);
-         if (input58[startAt] == 0) {
-            ++startAt;
+      // Little endian limbs, one more than needed for dest so that overflow is detectable
+      int[] limbs = new int[(dest.length - zeroCount + 3) / 4 + 1];
+      int limbCount = 0;
+      int i = first + zeroCount;
+      while (i < length) {
+         // Read up to five digits and fold them into the limbs with one multiplication
+         int step = Math.min(DIGITS_PER_LIMB_STEP, length - i);
+         long carry = 0;
+         for (int end = i + step; i < end; i++) {
+            char c = input.charAt(i);
+            int digit58 = c < 128 ? INDEXES[c] : -1;
+            if (digit58 < 0) {
+               return DECODE_INVALID_CHARACTER;
+            }
+            carry = carry * 58 + digit58;
+         }
+         long multiplier = POWERS_OF_58[step];
+         for (int l = 0; l < limbCount; l++) {
+            long t = (limbs[l] & 0xFFFFFFFFL) * multiplier + carry;
+            limbs[l] = (int) t;
+            carry = t >>> 32;
          }
+         if (carry != 0) {
+            if (limbCount == limbs.length) {
+               return DECODE_INVALID_LENGTH;
+            }
+            limbs[limbCount++] = (int) carry;
+         }
+      }
 
-         temp[--j] = mod;
+      // Do no add extra leading zeroes, only count the significant bytes of the top limb
+      int topBytes = 0;
+      if (limbCount > 0) {
+         int top = limbs[limbCount - 1];
+         while (topBytes < 4 && (top >>> (topBytes * 8)) != 0) {
+            topBytes++;
+         }
       }
-      // Do no add extra leading zeroes, move j to first non null byte.
-      while (j < temp.length && temp[j] == 0) {
-         ++j;
+      int numberLength = limbCount == 0 ? 0 : (limbCount - 1) * 4 + topBytes;
+      int resultLength = zeroCount + numberLength;
+      if (resultLength > dest.length) {
+         return DECODE_INVALID_LENGTH;
       }
-
-      return copyOfRange(temp, j - zeroCount, temp.length);
+      int j = dest.length;
+      for (int l = 0; l < limbCount; l++) {
+         int value = limbs[l];
+         int bytes = l == limbCount - 1 ? topBytes : 4;
+         for (int k = 0; k < bytes; k++) {
+            dest[--j] = (byte) value;
+            value >>>= 8;
+         }
+      }
+      while (j > dest.length - resultLength) {
+         dest[--j] = 0;
+      }
+      return resultLength;
    }
 
    public static BigInteger decodeToBigInteger(String input) {
@@ -176,59 +258,108 @@ public class Base58 {
     */
    public static byte[] decodeChecked(String input) {
       byte tmp[] = decode(input);
-      if (tmp == null || tmp.length < 4) {
+      if (tmp == null || tmp.length < CHECKSUM_LENGTH) {
          return null;
       }
-      byte[] bytes = copyOfRange(tmp, 0, tmp.length - 4);
-      byte[] checksum = copyOfRange(tmp, tmp.length - 4, tmp.length);
+      return verifyAndStripChecksum(tmp);
+   }
 
-      Sha256Hash sha256Hash = HashUtils.doubleSha256(bytes);
-      byte[] hash = sha256Hash.firstFourBytes();
-      if (!Arrays.equals(checksum, hash)) {
+   /**
+    * Fast path of {@link #decodeChecked(String)} for payloads of a known size, such as the 21 bytes of an address
+    * or the 33/34 bytes of a WIF private key. Strings too long to encode such a payload are rejected before any
+    * arithmetic is done.
+    * 
+    * @return the payload without checksum, or null if the input is invalid or does not decode to exactly length
+    *         bytes
+    */
+   public static byte[] decodeChecked(String input, int length) {
+      byte[] tmp = new byte[length + CHECKSUM_LENGTH];
+      if (decodeChecked(input, tmp) != DECODE_OK) {
          return null;
       }
-
+      byte[] bytes = new byte[length];
+      System.arraycopy(tmp, 0, bytes, 0, length);
       return bytes;
    }
 
-   //
-   // number -> number / 58, returns number % 58
-   //
-   private static byte divmod58(byte[] number, int startAt) {
-      int remainder = 0;
-      for (int i = startAt; i < number.length; i++) {
-         int digit256 = (int) number[i] & 0xFF;
-         int temp = remainder * 256 + digit256;
-
-         number[i] = (byte) (temp / 58);
-
-         remainder = temp % 58;
+   /**
+    * Decode and verify a checksummed string whose payload plus checksum has exactly the size of dest. Nothing is
+    * allocated and no exceptions are thrown, which makes this suitable for validating large numbers of strings with
+    * one buffer.
+    * 
+    * @param input
+    *           the base58 string
+    * @param dest
+    *           receives the payload followed by the 4 checksum bytes
+    * @return {@link #DECODE_OK} or the reason why the input was rejected
+    */
+   public static int decodeChecked(CharSequence input, byte[] dest) {
+      // every leading zero byte is one character, every other byte needs at most 1.37 characters, allow for a BOM
+      if (input.length() > dest.length * 137 / 100 + 3) {
+         return DECODE_INVALID_LENGTH;
       }
-
-      return (byte) remainder;
+      int length = decodeInto(input, dest);
+      if (length < 0) {
+         return length;
+      }
+      if (length != dest.length) {
+         return DECODE_INVALID_LENGTH;
+      }
+      if (!CHECKSUMMER.get().verify(dest, dest.length - CHECKSUM_LENGTH)) {
+         return DECODE_INVALID_CHECKSUM;
+      }
+      return DECODE_OK;
    }
 
-   //
-   // number -> number / 256, returns number % 256
-   //
-   private static byte divmod256(byte[] number58, int startAt) {
-      int remainder = 0;
-      for (int i = startAt; i < number58.length; i++) {
-         int digit58 = (int) number58[i] & 0xFF;
-         int temp = remainder * 58 + digit58;
+   private static byte[] verifyAndStripChecksum(byte[] tmp) {
+      int length = tmp.length - CHECKSUM_LENGTH;
+      if (!CHECKSUMMER.get().verify(tmp, length)) {
+         return null;
+      }
+      byte[] bytes = new byte[length];
+      System.arraycopy(tmp, 0, bytes, 0, length);
+      return bytes;
+   }
 
-         number58[i] = (byte) (temp / 256);
+   /**
+    * Double SHA-256 checksum calculation reusing one digest and output buffer per thread
+    */
+   private static class Checksummer {
+      private final MessageDigest _digest;
+      private final byte[] _hash = new byte[32];
 
-         remainder = temp % 256;
+      private Checksummer() {
+         try {
+            _digest = MessageDigest.getInstance("SHA-256");
+         } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e); // Cannot happen.
+         }
       }
 
-      return (byte) remainder;
-   }
+      private void doubleHash(byte[] data, int length) {
+         try {
+            _digest.update(data, 0, length);
+            _digest.digest(_hash, 0, _hash.length);
+            _digest.update(_hash, 0, _hash.length);
+            _digest.digest(_hash, 0, _hash.length);
+         } catch (DigestException e) {
+            throw new RuntimeException(e); // Cannot happen.
+         }
+      }
 
-   private static byte[] copyOfRange(byte[] source, int from, int to) {
-      byte[] range = new byte[to - from];
-      System.arraycopy(source, from, range, 0, range.length);
+      private void checksum(byte[] data, int length, byte[] dest, int destOffset) {
+         doubleHash(data, length);
+         System.arraycopy(_hash, 0, dest, destOffset, CHECKSUM_LENGTH);
+      }
 
-      return range;
+      private boolean verify(byte[] data, int length) {
+         doubleHash(data, length);
+         for (int i = 0; i < CHECKSUM_LENGTH; i++) {
+            if (_hash[i] != data[length + i]) {
+               return false;
+            }
+         }
+         return true;
+      }
    }
 }
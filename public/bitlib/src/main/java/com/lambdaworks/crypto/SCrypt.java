@@ -6,10 +6,21 @@ import static java.lang.Integer.MAX_VALUE;
 import static java.lang.System.arraycopy;
 
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
+import com.mrd.bitlib.util.Metrics;
+import com.mrd.bitlib.util.Metrics.Operation;
+
 /**
  * An implementation of the <a
  * href="http://www.tarsnap.com/scrypt/scrypt.pdf"/>scrypt</a> key derivation
@@ -21,6 +32,13 @@ import javax.crypto.spec.SecretKeySpec;
 public class SCrypt {
    private static boolean native_library_loaded = false;
 
+   /**
+    * V is allocated in one array per block by default. We have observed that
+    * one big V array may cause problems on some android devices due to memory
+    * fragmentation.
+    */
+   public static final SCryptMemory.Layout DEFAULT_LAYOUT = SCryptMemory.Layout.CHUNKED;
+
    /**
     * Implementation of the <a
     * href="http://www.tarsnap.com/scrypt/scrypt.pdf"/>scrypt KDF</a>. Calls the
@@ -101,13 +119,18 @@ public class SCrypt {
     */
    public static byte[] scryptJ(byte[] passwd, byte[] salt, int N, int r, int p, int dkLen,
          SCryptProgress progressTracker) throws GeneralSecurityException, InterruptedException {
-      if (N == 0 || (N & (N - 1)) != 0)
-         throw new IllegalArgumentException("N must be > 0 and a power of 2");
+      return scryptJ(passwd, salt, N, r, p, dkLen, progressTracker, DEFAULT_LAYOUT);
+   }
 
-      if (N > MAX_VALUE / 128 / r)
-         throw new IllegalArgumentException("Parameter N is too large");
-      if (r > MAX_VALUE / 128 / p)
-         throw new IllegalArgumentException("Parameter r is too large");
+   /**
+    * Like {@link #scryptJ(byte[], byte[], int, int, int, int, SCryptProgress)}
+    * but with V allocated using the given layout.
+    */
+   public static byte[] scryptJ(byte[] passwd, byte[] salt, int N, int r, int p, int dkLen,
+         SCryptProgress progressTracker, SCryptMemory.Layout layout) throws GeneralSecurityException,
+         InterruptedException {
+      checkParameters(N, r, p);
+      long start = Metrics.start();
 
       Mac mac = Mac.getInstance("HmacSHA256");
       mac.init(new SecretKeySpec(passwd, "HmacSHA256"));
@@ -115,77 +138,259 @@ public class SCrypt {
       byte[] DK = new byte[dkLen];
 
       byte[] B = new byte[128 * r * p];
-      byte[] XY = new byte[256 * r];
-      // The original SCrypt implementation uses one big V array with N * 128 *
-      // r bytes. We have observed that this may cause problems on some android
-      // devices due to memory fragmentation. Instead we allocate N arrays of
-      // size 128 * r.
-      byte[][] V = new byte[N][];
-      for (int i = 0; i < N; i++) {
-         V[i] = new byte[128 * r];
-      }
-      
+      int[] B32 = new int[32 * r * p];
+      int[] XY = allocateXY(r);
+      SCryptMemory V = SCryptMemory.allocate(layout, N, r);
+
       int i;
 
       PBKDF.pbkdf2(mac, salt, 1, B, p * 128 * r);
+      bytesToWords(B, B32);
 
       for (i = 0; i < p; i++) {
-         smix(B, i * 128 * r, r, N, V, XY, progressTracker);
-         if (progressTracker != null) {
-            progressTracker.setProgressP(i+1);
-         }
+         smix(B32, i * 32 * r, r, N, V, XY, progressTracker);
       }
+      wordsToBytes(B32, B);
       PBKDF.pbkdf2(mac, B, 1, DK, dkLen);
 
+      Metrics.stop(Operation.SCRYPT, start);
+      return DK;
+   }
+
+   /**
+    * Pure Java implementation of the <a
+    * href="http://www.tarsnap.com/scrypt/scrypt.pdf"/>scrypt KDF</a> that runs
+    * the p independent smix lanes concurrently. Each concurrently running lane
+    * needs its own V and XY buffers, so the number of lanes in flight is
+    * limited by the memory budget, the number of processors and p. With a
+    * budget for a single lane this is the same as {@link #scryptJ}.
+    * 
+    * @param passwd
+    *           Password.
+    * @param salt
+    *           Salt.
+    * @param N
+    *           CPU cost parameter.
+    * @param r
+    *           Memory cost parameter.
+    * @param p
+    *           Parallelization parameter.
+    * @param dkLen
+    *           Intended length of the derived key.
+    * @param progressTracker
+    *           Progress tracker, may be null.
+    * @param memoryBudget
+    *           Maximum number of bytes to use for lane buffers, see
+    *           {@link #laneMemory} and {@link #defaultMemoryBudget}.
+    * 
+    * @return The derived key.
+    * 
+    * @throws GeneralSecurityException
+    *            when HMAC_SHA256 is not available.
+    * @throws InterruptedException
+    */
+   public static byte[] scryptParallel(byte[] passwd, byte[] salt, int N, int r, int p, int dkLen,
+         SCryptProgress progressTracker, long memoryBudget) throws GeneralSecurityException, InterruptedException {
+      int lanes = Math.min(concurrentLanes(N, r, p, memoryBudget), Runtime.getRuntime().availableProcessors());
+      if (lanes <= 1) {
+         return scryptJ(passwd, salt, N, r, p, dkLen, progressTracker);
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(lanes);
+      try {
+         return scryptParallel(passwd, salt, N, r, p, dkLen, progressTracker, executor, lanes);
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   /**
+    * Like {@link #scryptParallel(byte[], byte[], int, int, int, int, SCryptProgress, long)} but runs the lanes on
+    * the given executor with at most maxLanes lanes in flight.
+    */
+   public static byte[] scryptParallel(byte[] passwd, byte[] salt, int N, int r, int p, int dkLen,
+         SCryptProgress progressTracker, ExecutorService executor, int maxLanes) throws GeneralSecurityException,
+         InterruptedException {
+      return scryptParallel(passwd, salt, N, r, p, dkLen, progressTracker, executor, maxLanes, DEFAULT_LAYOUT);
+   }
+
+   /**
+    * Like {@link #scryptParallel(byte[], byte[], int, int, int, int, SCryptProgress, ExecutorService, int)} but
+    * with the V of every lane allocated using the given layout.
+    */
+   public static byte[] scryptParallel(byte[] passwd, byte[] salt, int N, final int r, final int p, int dkLen,
+         final SCryptProgress progressTracker, ExecutorService executor, int maxLanes,
+         final SCryptMemory.Layout layout) throws GeneralSecurityException, InterruptedException {
+      checkParameters(N, r, p);
+      long start = Metrics.start();
+      final int n = N;
+      int workers = Math.max(1, Math.min(maxLanes, p));
+
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(passwd, "HmacSHA256"));
+
+      byte[] DK = new byte[dkLen];
+      byte[] B = new byte[128 * r * p];
+      final int[] B32 = new int[32 * r * p];
+
+      PBKDF.pbkdf2(mac, salt, 1, B, p * 128 * r);
+      bytesToWords(B, B32);
+
+      // Every worker owns one set of buffers and takes lanes until none are left
+      final AtomicInteger nextLane = new AtomicInteger();
+      List<Future<Void>> futures = new ArrayList<Future<Void>>(workers);
+      for (int w = 0; w < workers; w++) {
+         futures.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+               int[] XY = allocateXY(r);
+               SCryptMemory V = SCryptMemory.allocate(layout, n, r);
+               int lane;
+               while ((lane = nextLane.getAndIncrement()) < p) {
+                  if (Thread.currentThread().isInterrupted()) {
+                     throw new InterruptedException();
+                  }
+                  smix(B32, lane * 32 * r, r, n, V, XY, progressTracker);
+               }
+               return null;
+            }
+         }));
+      }
+      try {
+         for (Future<Void> future : futures) {
+            future.get();
+         }
+      } catch (ExecutionException e) {
+         cancelAll(futures);
+         Throwable cause = e.getCause();
+         if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+         }
+         if (cause instanceof Error) {
+            throw (Error) cause;
+         }
+         throw new RuntimeException(cause);
+      } catch (InterruptedException e) {
+         cancelAll(futures);
+         throw e;
+      }
+
+      wordsToBytes(B32, B);
+      PBKDF.pbkdf2(mac, B, 1, DK, dkLen);
+      Metrics.stop(Operation.SCRYPT, start);
       return DK;
    }
 
-   public static void smix(byte[] B, int Bi, int r, int N, byte[][] V, byte[] XY, SCryptProgress progressTracker)
+   /**
+    * @return the number of bytes one smix lane needs for its V and XY buffers
+    */
+   public static long laneMemory(int N, int r) {
+      return 128L * r * N + 256L * r + 64;
+   }
+
+   /**
+    * @return a memory budget for concurrently running lanes of a quarter of the maximum heap size
+    */
+   public static long defaultMemoryBudget() {
+      return Runtime.getRuntime().maxMemory() / 4;
+   }
+
+   /**
+    * @return how many of the p lanes fit into the memory budget at the same time, at least one
+    */
+   public static int concurrentLanes(int N, int r, int p, long memoryBudget) {
+      long lanes = Math.min(p, memoryBudget / laneMemory(N, r));
+      return (int) Math.max(1, lanes);
+   }
+
+   private static void checkParameters(int N, int r, int p) {
+      if (N == 0 || (N & (N - 1)) != 0)
+         throw new IllegalArgumentException("N must be > 0 and a power of 2");
+
+      if (N > MAX_VALUE / 128 / r)
+         throw new IllegalArgumentException("Parameter N is too large");
+      if (r > MAX_VALUE / 128 / p)
+         throw new IllegalArgumentException("Parameter r is too large");
+   }
+
+   private static int[] allocateXY(int r) {
+      // X and Y of 32 * r words each followed by the 16 word salsa20/8 scratch
+      // block used by blockmix_salsa8
+      return new int[64 * r + 16];
+   }
+
+   private static void cancelAll(List<Future<Void>> futures) {
+      for (Future<Void> future : futures) {
+         future.cancel(true);
+      }
+   }
+
+   /**
+    * ROMix on the lane of 32 * r words starting at B[Bi]. XY must hold at
+    * least 64 * r + 16 words. Progress is reported and termination checked
+    * every {@link SCryptProgress#REPORT_INTERVAL} iterations.
+    */
+   public static void smix(int[] B, int Bi, int r, int N, SCryptMemory V, int[] XY, SCryptProgress progressTracker)
          throws InterruptedException {
       int Xi = 0;
-      int Yi = 128 * r;
+      int Yi = 32 * r;
+      int mask = SCryptProgress.REPORT_INTERVAL - 1;
       int i;
 
-      arraycopy(B, Bi, XY, Xi, 128 * r);
+      arraycopy(B, Bi, XY, Xi, 32 * r);
 
       for (i = 0; i < N; i++) {
-         arraycopy(XY, Xi, V[i], 0, 128 * r);
+         V.store(i, XY, Xi);
          blockmix_salsa8(XY, Xi, Yi, r);
-         if (progressTracker != null) {
-            progressTracker.setProgressN1(i);
+         if ((i & mask) == mask && progressTracker != null) {
+            progressTracker.addWork(SCryptProgress.REPORT_INTERVAL);
          }
       }
+      reportRemainder(N, progressTracker);
 
       for (i = 0; i < N; i++) {
          int j = integerify(XY, Xi, r) & (N - 1);
-         blockxor(V[j], 0, XY, Xi, 128 * r);
+         V.xorInto(j, XY, Xi);
          blockmix_salsa8(XY, Xi, Yi, r);
-         if (progressTracker != null) {
-            progressTracker.setProgressN2(i);
+         if ((i & mask) == mask && progressTracker != null) {
+            progressTracker.addWork(SCryptProgress.REPORT_INTERVAL);
          }
       }
+      reportRemainder(N, progressTracker);
 
-      arraycopy(XY, Xi, B, Bi, 128 * r);
+      arraycopy(XY, Xi, B, Bi, 32 * r);
    }
 
-   public static void blockmix_salsa8(byte[] BY, int Bi, int Yi, int r) {
-      byte[] X = new byte[64];
+   private static void reportRemainder(int N, SCryptProgress progressTracker) throws InterruptedException {
+      // N is a power of two, so there is only a remainder when N is smaller
+      // than the report interval
+      int remainder = N & (SCryptProgress.REPORT_INTERVAL - 1);
+      if (remainder != 0 && progressTracker != null) {
+         progressTracker.addWork(remainder);
+      }
+   }
+
+   /**
+    * BlockMix with salsa20/8 on the 32 * r words at BY[Bi], using the 32 * r
+    * words at BY[Yi] as Y and the 16 words following Y as scratch space.
+    */
+   public static void blockmix_salsa8(int[] BY, int Bi, int Yi, int r) {
+      int Xi = Yi + 32 * r;
       int i;
 
-      arraycopy(BY, Bi + (2 * r - 1) * 64, X, 0, 64);
+      arraycopy(BY, Bi + (2 * r - 1) * 16, BY, Xi, 16);
 
       for (i = 0; i < 2 * r; i++) {
-         blockxor(BY, i * 64, X, 0, 64);
-         salsa20_8(X);
-         arraycopy(X, 0, BY, Yi + (i * 64), 64);
+         blockxor(BY, Bi + i * 16, BY, Xi, 16);
+         salsa20_8(BY, Xi);
+         arraycopy(BY, Xi, BY, Yi + (i * 16), 16);
       }
 
       for (i = 0; i < r; i++) {
-         arraycopy(BY, Yi + (i * 2) * 64, BY, Bi + (i * 64), 64);
+         arraycopy(BY, Yi + (i * 2) * 16, BY, Bi + (i * 16), 16);
       }
 
       for (i = 0; i < r; i++) {
-         arraycopy(BY, Yi + (i * 2 + 1) * 64, BY, Bi + (i + r) * 64, 64);
+         arraycopy(BY, Yi + (i * 2 + 1) * 16, BY, Bi + (i + r) * 16, 16);
       }
    }
 
@@ -193,82 +398,100 @@ public class SCrypt {
       return (a << b) | (a >>> (32 - b));
    }
 
-   public static void salsa20_8(byte[] B) {
-      int[] B32 = new int[16];
-      int[] x = new int[16];
+   /**
+    * Salsa20/8 core on the 16 words at B[Bi], in place
+    */
+   public static void salsa20_8(int[] B, int Bi) {
+      int x0 = B[Bi + 0], x1 = B[Bi + 1], x2 = B[Bi + 2], x3 = B[Bi + 3];
+      int x4 = B[Bi + 4], x5 = B[Bi + 5], x6 = B[Bi + 6], x7 = B[Bi + 7];
+      int x8 = B[Bi + 8], x9 = B[Bi + 9], x10 = B[Bi + 10], x11 = B[Bi + 11];
+      int x12 = B[Bi + 12], x13 = B[Bi + 13], x14 = B[Bi + 14], x15 = B[Bi + 15];
       int i;
 
-      for (i = 0; i < 16; i++) {
-         B32[i] = (B[i * 4 + 0] & 0xff) << 0;
-         B32[i] |= (B[i * 4 + 1] & 0xff) << 8;
-         B32[i] |= (B[i * 4 + 2] & 0xff) << 16;
-         B32[i] |= (B[i * 4 + 3] & 0xff) << 24;
-      }
-
-      arraycopy(B32, 0, x, 0, 16);
-
       for (i = 8; i > 0; i -= 2) {
-         x[4] ^= R(x[0] + x[12], 7);
-         x[8] ^= R(x[4] + x[0], 9);
-         x[12] ^= R(x[8] + x[4], 13);
-         x[0] ^= R(x[12] + x[8], 18);
-         x[9] ^= R(x[5] + x[1], 7);
-         x[13] ^= R(x[9] + x[5], 9);
-         x[1] ^= R(x[13] + x[9], 13);
-         x[5] ^= R(x[1] + x[13], 18);
-         x[14] ^= R(x[10] + x[6], 7);
-         x[2] ^= R(x[14] + x[10], 9);
-         x[6] ^= R(x[2] + x[14], 13);
-         x[10] ^= R(x[6] + x[2], 18);
-         x[3] ^= R(x[15] + x[11], 7);
-         x[7] ^= R(x[3] + x[15], 9);
-         x[11] ^= R(x[7] + x[3], 13);
-         x[15] ^= R(x[11] + x[7], 18);
-         x[1] ^= R(x[0] + x[3], 7);
-         x[2] ^= R(x[1] + x[0], 9);
-         x[3] ^= R(x[2] + x[1], 13);
-         x[0] ^= R(x[3] + x[2], 18);
-         x[6] ^= R(x[5] + x[4], 7);
-         x[7] ^= R(x[6] + x[5], 9);
-         x[4] ^= R(x[7] + x[6], 13);
-         x[5] ^= R(x[4] + x[7], 18);
-         x[11] ^= R(x[10] + x[9], 7);
-         x[8] ^= R(x[11] + x[10], 9);
-         x[9] ^= R(x[8] + x[11], 13);
-         x[10] ^= R(x[9] + x[8], 18);
-         x[12] ^= R(x[15] + x[14], 7);
-         x[13] ^= R(x[12] + x[15], 9);
-         x[14] ^= R(x[13] + x[12], 13);
-         x[15] ^= R(x[14] + x[13], 18);
+         x4 ^= R(x0 + x12, 7);
+         x8 ^= R(x4 + x0, 9);
+         x12 ^= R(x8 + x4, 13);
+         x0 ^= R(x12 + x8, 18);
+         x9 ^= R(x5 + x1, 7);
+         x13 ^= R(x9 + x5, 9);
+         x1 ^= R(x13 + x9, 13);
+         x5 ^= R(x1 + x13, 18);
+         x14 ^= R(x10 + x6, 7);
+         x2 ^= R(x14 + x10, 9);
+         x6 ^= R(x2 + x14, 13);
+         x10 ^= R(x6 + x2, 18);
+         x3 ^= R(x15 + x11, 7);
+         x7 ^= R(x3 + x15, 9);
+         x11 ^= R(x7 + x3, 13);
+         x15 ^= R(x11 + x7, 18);
+         x1 ^= R(x0 + x3, 7);
+         x2 ^= R(x1 + x0, 9);
+         x3 ^= R(x2 + x1, 13);
+         x0 ^= R(x3 + x2, 18);
+         x6 ^= R(x5 + x4, 7);
+         x7 ^= R(x6 + x5, 9);
+         x4 ^= R(x7 + x6, 13);
+         x5 ^= R(x4 + x7, 18);
+         x11 ^= R(x10 + x9, 7);
+         x8 ^= R(x11 + x10, 9);
+         x9 ^= R(x8 + x11, 13);
+         x10 ^= R(x9 + x8, 18);
+         x12 ^= R(x15 + x14, 7);
+         x13 ^= R(x12 + x15, 9);
+         x14 ^= R(x13 + x12, 13);
+         x15 ^= R(x14 + x13, 18);
       }
 
-      for (i = 0; i < 16; ++i)
-         B32[i] = x[i] + B32[i];
-
-      for (i = 0; i < 16; i++) {
-         B[i * 4 + 0] = (byte) (B32[i] >> 0 & 0xff);
-         B[i * 4 + 1] = (byte) (B32[i] >> 8 & 0xff);
-         B[i * 4 + 2] = (byte) (B32[i] >> 16 & 0xff);
-         B[i * 4 + 3] = (byte) (B32[i] >> 24 & 0xff);
-      }
+      B[Bi + 0] += x0;
+      B[Bi + 1] += x1;
+      B[Bi + 2] += x2;
+      B[Bi + 3] += x3;
+      B[Bi + 4] += x4;
+      B[Bi + 5] += x5;
+      B[Bi + 6] += x6;
+      B[Bi + 7] += x7;
+      B[Bi + 8] += x8;
+      B[Bi + 9] += x9;
+      B[Bi + 10] += x10;
+      B[Bi + 11] += x11;
+      B[Bi + 12] += x12;
+      B[Bi + 13] += x13;
+      B[Bi + 14] += x14;
+      B[Bi + 15] += x15;
    }
 
-   public static void blockxor(byte[] S, int Si, byte[] D, int Di, int len) {
+   public static void blockxor(int[] S, int Si, int[] D, int Di, int len) {
       for (int i = 0; i < len; i++) {
          D[Di + i] ^= S[Si + i];
       }
    }
 
-   public static int integerify(byte[] B, int Bi, int r) {
-      int n;
-
-      Bi += (2 * r - 1) * 64;
+   public static int integerify(int[] B, int Bi, int r) {
+      return B[Bi + (2 * r - 1) * 16];
+   }
 
-      n = (B[Bi + 0] & 0xff) << 0;
-      n |= (B[Bi + 1] & 0xff) << 8;
-      n |= (B[Bi + 2] & 0xff) << 16;
-      n |= (B[Bi + 3] & 0xff) << 24;
+   /**
+    * Convert PBKDF2 output to little-endian words
+    */
+   private static void bytesToWords(byte[] src, int[] dst) {
+      for (int i = 0; i < dst.length; i++) {
+         int b = i * 4;
+         dst[i] = (src[b] & 0xff) | (src[b + 1] & 0xff) << 8 | (src[b + 2] & 0xff) << 16 | (src[b + 3] & 0xff) << 24;
+      }
+   }
 
-      return n;
+   /**
+    * Convert little-endian words back to bytes for the final PBKDF2 step
+    */
+   private static void wordsToBytes(int[] src, byte[] dst) {
+      for (int i = 0; i < src.length; i++) {
+         int b = i * 4;
+         int w = src[i];
+         dst[b] = (byte) w;
+         dst[b + 1] = (byte) (w >>> 8);
+         dst[b + 2] = (byte) (w >>> 16);
+         dst[b + 3] = (byte) (w >>> 24);
+      }
    }
 }
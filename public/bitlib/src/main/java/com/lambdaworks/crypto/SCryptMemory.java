@@ -0,0 +1,140 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.crypto;
+
+import static java.lang.System.arraycopy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * The V array of scrypt's ROMix: N blocks of 32 * r little-endian words each.
+ * An instance is not thread safe and belongs to a single smix lane at a time.
+ */
+public abstract class SCryptMemory {
+
+   /**
+    * How the N blocks are laid out in memory.
+    */
+   public enum Layout {
+      /**
+       * One int[] of N * 32 * r words. Fastest, but needs one contiguous
+       * allocation.
+       */
+      FLAT,
+      /**
+       * One int[] per block. Avoids large allocations on fragmented heaps such
+       * as on some Android devices.
+       */
+      CHUNKED,
+      /**
+       * A direct IntBuffer outside of the Java heap. The memory is released
+       * when the buffer is garbage collected.
+       */
+      DIRECT
+   }
+
+   protected final int _blockWords;
+
+   protected SCryptMemory(int r) {
+      _blockWords = 32 * r;
+   }
+
+   /**
+    * Allocate V for the given scrypt parameters
+    */
+   public static SCryptMemory allocate(Layout layout, int N, int r) {
+      switch (layout) {
+      case FLAT:
+         return new Flat(N, r);
+      case CHUNKED:
+         return new Chunked(N, r);
+      case DIRECT:
+         return new Direct(N, r);
+      default:
+         throw new IllegalArgumentException("Unknown layout: " + layout);
+      }
+   }
+
+   /**
+    * Copy 32 * r words from src into the given block
+    */
+   public abstract void store(int block, int[] src, int srcOffset);
+
+   /**
+    * XOR the given block into 32 * r words of dst
+    */
+   public abstract void xorInto(int block, int[] dst, int dstOffset);
+
+   private static final class Flat extends SCryptMemory {
+      private final int[] _words;
+
+      private Flat(int N, int r) {
+         super(r);
+         _words = new int[N * _blockWords];
+      }
+
+      @Override
+      public void store(int block, int[] src, int srcOffset) {
+         arraycopy(src, srcOffset, _words, block * _blockWords, _blockWords);
+      }
+
+      @Override
+      public void xorInto(int block, int[] dst, int dstOffset) {
+         int base = block * _blockWords;
+         for (int i = 0; i < _blockWords; i++) {
+            dst[dstOffset + i] ^= _words[base + i];
+         }
+      }
+   }
+
+   private static final class Chunked extends SCryptMemory {
+      private final int[][] _blocks;
+
+      private Chunked(int N, int r) {
+         super(r);
+         _blocks = new int[N][];
+         for (int i = 0; i < N; i++) {
+            _blocks[i] = new int[_blockWords];
+         }
+      }
+
+      @Override
+      public void store(int block, int[] src, int srcOffset) {
+         arraycopy(src, srcOffset, _blocks[block], 0, _blockWords);
+      }
+
+      @Override
+      public void xorInto(int block, int[] dst, int dstOffset) {
+         int[] words = _blocks[block];
+         for (int i = 0; i < _blockWords; i++) {
+            dst[dstOffset + i] ^= words[i];
+         }
+      }
+   }
+
+   private static final class Direct extends SCryptMemory {
+      private final IntBuffer _buffer;
+
+      private Direct(int N, int r) {
+         super(r);
+         _buffer = ByteBuffer.allocateDirect(N * _blockWords * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+      }
+
+      @Override
+      public void store(int block, int[] src, int srcOffset) {
+         _buffer.position(block * _blockWords);
+         _buffer.put(src, srcOffset, _blockWords);
+      }
+
+      @Override
+      public void xorInto(int block, int[] dst, int dstOffset) {
+         int base = block * _blockWords;
+         for (int i = 0; i < _blockWords; i++) {
+            dst[dstOffset + i] ^= _buffer.get(base + i);
+         }
+      }
+   }
+
+}
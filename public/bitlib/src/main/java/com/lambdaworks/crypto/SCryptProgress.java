@@ -1,15 +1,23 @@
 package com.lambdaworks.crypto;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SCryptProgress implements Serializable{
    private static final long serialVersionUID = 1L;
-   
+
+   /**
+    * Number of smix iterations between two calls to {@link #addWork}. Must be a
+    * power of two.
+    */
+   public static final int REPORT_INTERVAL = 256;
+
    private int n;
    private long totalWork;
-   private int progressN1;
-   private int progressN2;
-   private int progressP;
+   private volatile int progressN1;
+   private volatile int progressN2;
+   private volatile int progressP;
+   private final AtomicLong _work;
    private volatile boolean _terminate;
 
    public SCryptProgress(int n, int r, int p) {
@@ -18,9 +26,25 @@ public class SCryptProgress implements Serializable{
       progressN1 = 0;
       progressN2 = 0;
       progressP = 0;
+      _work = new AtomicLong();
       _terminate = false;
    }
 
+   /**
+    * Report that another number of smix iterations have completed. Called by
+    * {@link SCrypt#smix} every {@link #REPORT_INTERVAL} iterations, and safe to
+    * call from several lanes at once.
+    * 
+    * @throws InterruptedException
+    *            if {@link #terminate} has been called
+    */
+   public void addWork(int iterations) throws InterruptedException {
+      _work.addAndGet(iterations);
+      if (_terminate) {
+         throw new InterruptedException();
+      }
+   }
+
    public void setProgressN1(int n1) throws InterruptedException {
       // Don't synchronize due to performance. There will be a microscopic
       // change of getting a progress that is off by one
@@ -39,7 +63,7 @@ public class SCryptProgress implements Serializable{
       }
    }
 
-   public synchronized void setProgressP(int p) throws InterruptedException {
+   public void setProgressP(int p) throws InterruptedException {
       progressP = p;
       progressN1 = 0;
       progressN2 = 0;
@@ -52,9 +76,17 @@ public class SCryptProgress implements Serializable{
       _terminate = true;
    }
 
-   public synchronized double getProgress() {
-      long work = (long) progressP * ((long) n * 2) + (long) progressN1 + (long) progressN2;
-      return (double) work / totalWork;
+   public boolean isTerminated() {
+      return _terminate;
+   }
+
+   /**
+    * Get the progress between 0 and 1. Does not lock, so it is cheap to poll
+    * from a UI thread while the key derivation runs.
+    */
+   public double getProgress() {
+      long work = (long) progressP * ((long) n * 2) + (long) progressN1 + (long) progressN2 + _work.get();
+      return Math.min(1.0, (double) work / totalWork);
    }
 
 }
@@ -36,6 +36,8 @@ import com.mrd.bitlib.model.*;
 import com.mrd.bitlib.util.ByteWriter;
 import com.mrd.bitlib.util.CoinUtil;
 import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Metrics;
+import com.mrd.bitlib.util.Metrics.Operation;
 import com.mrd.bitlib.util.Sha256Hash;
 
 public class StandardTransactionBuilder {
@@ -255,11 +257,12 @@ public class StandardTransactionBuilder {
     */
    public UnsignedTransaction createUnsignedTransaction(List<UnspentTransactionOutput> unspent, Address changeAddress,
                                                         PublicKeyRing keyRing, NetworkParameters network) throws InsufficientFundsException {
+      long start = Metrics.start();
       long fee = TransactionUtils.DEFAULT_MINER_FEE;
       while (true) {
          UnsignedTransaction unsigned;
          try {
-            unsigned = createUnsignedTransaction(unspent, changeAddress, fee, keyRing, network);
+            unsigned = buildUnsignedTransaction(unspent, changeAddress, fee, keyRing, network);
          } catch (InsufficientFundsException e) {
             // We did not even have enough funds to pay the minimum fee
             throw e;
@@ -269,6 +272,7 @@ public class StandardTransactionBuilder {
          // every 1000 bytes
          long requiredFee = (1 + (txSize / 1000)) * TransactionUtils.DEFAULT_MINER_FEE;
          if (fee >= requiredFee) {
+            Metrics.stop(Operation.TX_BUILD, start);
             return unsigned;
          }
          // collect coins anew with an increased fee
@@ -294,6 +298,15 @@ public class StandardTransactionBuilder {
    public UnsignedTransaction createUnsignedTransaction(List<UnspentTransactionOutput> inventory,
                                                         Address changeAddress, long fee, PublicKeyRing keyRing, NetworkParameters network)
          throws InsufficientFundsException {
+      long start = Metrics.start();
+      UnsignedTransaction unsigned = buildUnsignedTransaction(inventory, changeAddress, fee, keyRing, network);
+      Metrics.stop(Operation.TX_BUILD, start);
+      return unsigned;
+   }
+
+   private UnsignedTransaction buildUnsignedTransaction(List<UnspentTransactionOutput> inventory,
+         Address changeAddress, long fee, PublicKeyRing keyRing, NetworkParameters network)
+         throws InsufficientFundsException {
       // Make a copy so we can mutate the list
       List<UnspentTransactionOutput> unspent = new LinkedList<UnspentTransactionOutput>(inventory);
       List<UnspentTransactionOutput> funding = new LinkedList<UnspentTransactionOutput>();
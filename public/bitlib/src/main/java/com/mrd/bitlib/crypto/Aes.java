@@ -0,0 +1,255 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.crypto;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import Rijndael.Rijndael;
+
+/**
+ * AES block encryption without padding.
+ * <p/>
+ * Uses the javax.crypto AES implementation when the platform has one that
+ * allows the key size, as it is typically backed by hardware instructions.
+ * Otherwise the pure Java {@link Rijndael} implementation is used. The JCE
+ * ciphers are kept per thread and re-keyed for every operation, so no cipher
+ * lookup happens per call.
+ * <p/>
+ * All data lengths must be a multiple of {@link #BLOCK_SIZE}.
+ */
+public class Aes {
+
+   public static final int BLOCK_SIZE = 16;
+
+   /**
+    * Encrypts single blocks with a key that may be replaced
+    */
+   public interface BlockEncryptor {
+      void encrypt(byte[] plaintext, byte[] ciphertext);
+
+      /**
+       * Replace the key. The cipher of the encryptor is kept and only
+       * initialized with the new key.
+       */
+      void setKey(byte[] key);
+   }
+
+   private static final String ECB = "AES/ECB/NoPadding";
+   private static final String CBC = "AES/CBC/NoPadding";
+   private static final int JCE_MAX_KEY_BITS = getJceMaxKeyBits();
+
+   private static final ThreadLocal<Cipher> ECB_CIPHER = new ThreadLocal<Cipher>() {
+      @Override
+      protected Cipher initialValue() {
+         return getCipher(ECB);
+      }
+   };
+
+   private static final ThreadLocal<Cipher> CBC_CIPHER = new ThreadLocal<Cipher>() {
+      @Override
+      protected Cipher initialValue() {
+         return getCipher(CBC);
+      }
+   };
+
+   /**
+    * @return true if keys of this many bits are handled by javax.crypto rather
+    *         than by the Rijndael fallback
+    */
+   public static boolean isJceAvailable(int keyBits) {
+      return keyBits <= JCE_MAX_KEY_BITS;
+   }
+
+   public static byte[] encryptEcb(byte[] key, byte[] plaintext) {
+      checkLength(plaintext);
+      if (isJceAvailable(key.length * 8)) {
+         return jce(ECB_CIPHER.get(), Cipher.ENCRYPT_MODE, key, null, plaintext);
+      }
+      return rijndaelEncrypt(key, null, plaintext);
+   }
+
+   public static byte[] decryptEcb(byte[] key, byte[] ciphertext) {
+      checkLength(ciphertext);
+      if (isJceAvailable(key.length * 8)) {
+         return jce(ECB_CIPHER.get(), Cipher.DECRYPT_MODE, key, null, ciphertext);
+      }
+      return rijndaelDecrypt(key, null, ciphertext);
+   }
+
+   public static byte[] encryptCbc(byte[] key, byte[] iv, byte[] plaintext) {
+      checkLength(plaintext);
+      if (isJceAvailable(key.length * 8)) {
+         return jce(CBC_CIPHER.get(), Cipher.ENCRYPT_MODE, key, iv, plaintext);
+      }
+      return rijndaelEncrypt(key, iv, plaintext);
+   }
+
+   public static byte[] decryptCbc(byte[] key, byte[] iv, byte[] ciphertext) {
+      checkLength(ciphertext);
+      if (isJceAvailable(key.length * 8)) {
+         return jce(CBC_CIPHER.get(), Cipher.DECRYPT_MODE, key, iv, ciphertext);
+      }
+      return rijndaelDecrypt(key, iv, ciphertext);
+   }
+
+   /**
+    * Create an encryptor for many single blocks with the same key. The
+    * encryptor is not thread safe.
+    */
+   public static BlockEncryptor createEncryptor(byte[] key) {
+      BlockEncryptor encryptor = new ReusableEncryptor();
+      encryptor.setKey(key);
+      return encryptor;
+   }
+
+   /**
+    * Looks up its JCE cipher or creates its Rijndael instance once and re-keys
+    * it on {@link #setKey}, so a rekey does not pay for a cipher lookup
+    */
+   private static class ReusableEncryptor implements BlockEncryptor {
+      private Cipher _cipher;
+      private Rijndael _rijndael;
+      private boolean _useJce;
+
+      @Override
+      public void setKey(byte[] key) {
+         _useJce = isJceAvailable(key.length * 8);
+         if (_useJce) {
+            if (_cipher == null) {
+               _cipher = getCipher(ECB);
+            }
+            try {
+               _cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+            } catch (GeneralSecurityException e) {
+               throw new RuntimeException(e);
+            }
+         } else {
+            if (_rijndael == null) {
+               _rijndael = new Rijndael();
+            }
+            _rijndael.makeKey(key, key.length * 8, Rijndael.DIR_ENCRYPT);
+         }
+      }
+
+      @Override
+      public void encrypt(byte[] plaintext, byte[] ciphertext) {
+         if (!_useJce) {
+            _rijndael.encrypt(plaintext, ciphertext);
+            return;
+         }
+         try {
+            _cipher.doFinal(plaintext, 0, BLOCK_SIZE, ciphertext, 0);
+         } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+         }
+      }
+   }
+
+   private static byte[] jce(Cipher cipher, int mode, byte[] key, byte[] iv, byte[] data) {
+      try {
+         SecretKeySpec keySpec = new SecretKeySpec(key, "AES");
+         if (iv == null) {
+            cipher.init(mode, keySpec);
+         } else {
+            cipher.init(mode, keySpec, new IvParameterSpec(iv));
+         }
+         return cipher.doFinal(data);
+      } catch (GeneralSecurityException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * Encrypt in ECB mode if iv is null, otherwise in CBC mode
+    */
+   static byte[] rijndaelEncrypt(byte[] key, byte[] iv, byte[] plaintext) {
+      Rijndael aes = new Rijndael();
+      aes.makeKey(key, key.length * 8, Rijndael.DIR_ENCRYPT);
+      byte[] result = new byte[plaintext.length];
+      byte[] pt = new byte[BLOCK_SIZE];
+      byte[] ct = new byte[BLOCK_SIZE];
+      for (int i = 0; i < plaintext.length; i += BLOCK_SIZE) {
+         System.arraycopy(plaintext, i, pt, 0, BLOCK_SIZE);
+         if (iv != null) {
+            // Chain with the IV or the previous ciphertext block
+            byte[] parent = i == 0 ? iv : result;
+            int parentOffset = i == 0 ? 0 : i - BLOCK_SIZE;
+            for (int j = 0; j < BLOCK_SIZE; j++) {
+               pt[j] ^= parent[parentOffset + j];
+            }
+         }
+         aes.encrypt(pt, ct);
+         System.arraycopy(ct, 0, result, i, BLOCK_SIZE);
+      }
+      return result;
+   }
+
+   /**
+    * Decrypt in ECB mode if iv is null, otherwise in CBC mode
+    */
+   static byte[] rijndaelDecrypt(byte[] key, byte[] iv, byte[] ciphertext) {
+      Rijndael aes = new Rijndael();
+      aes.makeKey(key, key.length * 8, Rijndael.DIR_DECRYPT);
+      byte[] result = new byte[ciphertext.length];
+      byte[] pt = new byte[BLOCK_SIZE];
+      byte[] ct = new byte[BLOCK_SIZE];
+      for (int i = 0; i < ciphertext.length; i += BLOCK_SIZE) {
+         System.arraycopy(ciphertext, i, ct, 0, BLOCK_SIZE);
+         aes.decrypt(ct, pt);
+         if (iv != null) {
+            byte[] parent = i == 0 ? iv : ciphertext;
+            int parentOffset = i == 0 ? 0 : i - BLOCK_SIZE;
+            for (int j = 0; j < BLOCK_SIZE; j++) {
+               pt[j] ^= parent[parentOffset + j];
+            }
+         }
+         System.arraycopy(pt, 0, result, i, BLOCK_SIZE);
+      }
+      return result;
+   }
+
+   private static void checkLength(byte[] data) {
+      if (data.length % BLOCK_SIZE != 0) {
+         throw new IllegalArgumentException("Data length must be a multiple of " + BLOCK_SIZE);
+      }
+   }
+
+   private static Cipher getCipher(String transformation) {
+      try {
+         return Cipher.getInstance(transformation);
+      } catch (GeneralSecurityException e) {
+         // Checked by getJceMaxKeyBits
+         throw new RuntimeException(e);
+      }
+   }
+
+   private static int getJceMaxKeyBits() {
+      try {
+         Cipher.getInstance(ECB);
+         Cipher.getInstance(CBC);
+         return Cipher.getMaxAllowedKeyLength("AES");
+      } catch (GeneralSecurityException e) {
+         return 0;
+      }
+   }
+
+}
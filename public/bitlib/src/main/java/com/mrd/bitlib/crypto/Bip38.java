@@ -19,8 +19,17 @@ package com.mrd.bitlib.crypto;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import Rijndael.Rijndael;
 import com.google.bitcoinj.Base58;
 import com.lambdaworks.crypto.SCrypt;
 import com.lambdaworks.crypto.SCryptProgress;
@@ -30,6 +39,7 @@ import com.mrd.bitlib.model.Address;
 import com.mrd.bitlib.model.NetworkParameters;
 import com.mrd.bitlib.util.BitUtils;
 import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.HexUtils;
 import com.mrd.bitlib.util.Sha256Hash;
 
 public class Bip38 {
@@ -68,8 +78,9 @@ public class Bip38 {
          throws InterruptedException {
       byte[] derived;
       try {
-         derived = SCrypt.scrypt(passphrase.getBytes("UTF-8"), salt, SCRYPT_N, SCRYPT_R, SCRYPT_P, outputSize,
-               progressTracker);
+         // The SCRYPT_P lanes are independent, run as many of them concurrently as memory allows
+         derived = SCrypt.scryptParallel(passphrase.getBytes("UTF-8"), salt, SCRYPT_N, SCRYPT_R, SCRYPT_P,
+               outputSize, progressTracker, SCrypt.defaultMemoryBudget());
          return derived;
       } catch (UnsupportedEncodingException e) {
          throw new RuntimeException(e);
@@ -102,32 +113,17 @@ public class Bip38 {
       byte[] derivedHalf2 = new byte[32];
       System.arraycopy(stretcedKeyMaterial, 32, derivedHalf2, 0, 32);
 
-      // Initialize AES key
-      Rijndael aes = new Rijndael();
-      aes.makeKey(derivedHalf2, 256);
-
       // Get private key bytes
       byte[] complete = key.getPrivateKeyBytes();
 
-      // Insert first encrypted key part
-      byte[] toEncryptPart1 = new byte[16];
-      for (int i = 0; i < 16; i++) {
-         toEncryptPart1[i] = (byte) ((((int) complete[i]) & 0xFF) ^ (((int) derivedHalf1[i]) & 0xFF));
-      }
-      byte[] encryptedHalf1 = new byte[16];
-      aes.encrypt(toEncryptPart1, encryptedHalf1);
-      System.arraycopy(encryptedHalf1, 0, encoded, index, encryptedHalf1.length);
-      index += encryptedHalf1.length;
-
-      // Insert second encrypted key part
-      byte[] toEncryptPart2 = new byte[16];
-      for (int i = 0; i < 16; i++) {
-         toEncryptPart2[i] = (byte) ((((int) complete[16 + i]) & 0xFF) ^ (((int) derivedHalf1[16 + i]) & 0xFF));
+      // Encrypt both key parts xor'ed with the first derived half
+      byte[] toEncrypt = new byte[32];
+      for (int i = 0; i < 32; i++) {
+         toEncrypt[i] = (byte) ((((int) complete[i]) & 0xFF) ^ (((int) derivedHalf1[i]) & 0xFF));
       }
-      byte[] encryptedHalf2 = new byte[16];
-      aes.encrypt(toEncryptPart2, encryptedHalf2);
-      System.arraycopy(encryptedHalf2, 0, encoded, index, encryptedHalf2.length);
-      index += encryptedHalf2.length;
+      byte[] encryptedHalves = Aes.encryptEcb(derivedHalf2, toEncrypt);
+      System.arraycopy(encryptedHalves, 0, encoded, index, encryptedHalves.length);
+      index += encryptedHalves.length;
 
       // Checksum
       Sha256Hash checkSum = HashUtils.doubleSha256(encoded, 0, 39);
@@ -251,28 +247,138 @@ public class Bip38 {
 
    public static String decryptEcMultiply(Bip38PrivateKey bip38Key, String passphrase, SCryptProgress progressTracker,
                                           NetworkParameters network) throws InterruptedException {
+      byte[] ownerEntropy = getOwnerEntropy(bip38Key);
+
+      // Stretch to get Pass Factor
+      byte[] preFactor = bip38Stretch1(passphrase, getOwnerSalt(bip38Key, ownerEntropy), progressTracker, 32);
+      byte[] passFactor = getPassFactor(bip38Key, preFactor, ownerEntropy);
+      return decryptEcMultiply(bip38Key, passFactor, ownerEntropy, network);
+   }
+
+   /**
+    * Decrypt a batch of EC multiplied BIP38 keys that were encrypted with the
+    * same passphrase, such as a stack of paper wallets from the same lot.
+    * <p/>
+    * The expensive passphrase stretching is done once per distinct owner salt
+    * rather than once per key, and the remaining per key work runs in parallel.
+    * Use {@link #getScryptProgressTracker(List)} to create a progress tracker
+    * that covers all the stretching.
+    *
+    * @return the decrypted keys in SIPA format, in the same order as the input.
+    *         An entry is null if the passphrase is wrong for that key, or if it
+    *         is on another network.
+    * @throws InterruptedException
+    */
+   public static List<String> decryptEcMultiply(List<Bip38PrivateKey> bip38Keys, String passphrase,
+                                                SCryptProgress progressTracker, final NetworkParameters network)
+         throws InterruptedException {
+      Map<String, List<Integer>> groups = groupByOwnerSalt(bip38Keys);
+      final String[] result = new String[bip38Keys.size()];
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bip38Keys.size());
+      for (List<Integer> group : groups.values()) {
+         Bip38PrivateKey first = bip38Keys.get(group.get(0));
+         byte[] preFactor = bip38Stretch1(passphrase, getOwnerSalt(first, getOwnerEntropy(first)), progressTracker, 32);
+         for (final Integer index : group) {
+            final Bip38PrivateKey bip38Key = bip38Keys.get(index);
+            final byte[] ownerEntropy = getOwnerEntropy(bip38Key);
+            final byte[] passFactor = getPassFactor(bip38Key, preFactor, ownerEntropy);
+            tasks.add(new Callable<Void>() {
+               @Override
+               public Void call() {
+                  result[index] = decryptEcMultiply(bip38Key, passFactor, ownerEntropy, network);
+                  return null;
+               }
+            });
+         }
+      }
+      runAll(tasks);
+      return Arrays.asList(result);
+   }
+
+   /**
+    * Create a progress tracker for decrypting a batch of EC multiplied keys with
+    * {@link #decryptEcMultiply(List, String, SCryptProgress, NetworkParameters)}
+    */
+   public static SCryptProgress getScryptProgressTracker(List<Bip38PrivateKey> bip38Keys) {
+      int stretches = Math.max(1, groupByOwnerSalt(bip38Keys).size());
+      return new SCryptProgress(SCRYPT_N, SCRYPT_R, SCRYPT_P * stretches);
+   }
+
+   private static Map<String, List<Integer>> groupByOwnerSalt(List<Bip38PrivateKey> bip38Keys) {
+      Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+      for (int i = 0; i < bip38Keys.size(); i++) {
+         Bip38PrivateKey bip38Key = bip38Keys.get(i);
+         if (!bip38Key.ecMultiply) {
+            throw new IllegalArgumentException("Not an EC multiplied key at index " + i);
+         }
+         String ownerSalt = HexUtils.toHex(getOwnerSalt(bip38Key, getOwnerEntropy(bip38Key)));
+         List<Integer> group = groups.get(ownerSalt);
+         if (group == null) {
+            group = new ArrayList<Integer>();
+            groups.put(ownerSalt, group);
+         }
+         group.add(i);
+      }
+      return groups;
+   }
+
+   private static void runAll(List<Callable<Void>> tasks) throws InterruptedException {
+      int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+      if (threads <= 1) {
+         for (Callable<Void> task : tasks) {
+            if (Thread.currentThread().isInterrupted()) {
+               throw new InterruptedException();
+            }
+            try {
+               task.call();
+            } catch (Exception e) {
+               throw new RuntimeException(e);
+            }
+         }
+         return;
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
+         }
+      } catch (ExecutionException e) {
+         throw new RuntimeException(e.getCause());
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   private static byte[] getOwnerEntropy(Bip38PrivateKey bip38Key) {
       // Get 8 byte Owner Salt
       byte[] ownerEntropy = new byte[8];
       System.arraycopy(bip38Key.data, 0, ownerEntropy, 0, 8);
+      return ownerEntropy;
+   }
 
-      byte[] ownerSalt = ownerEntropy;
-      if (bip38Key.lotSequence) {
-         ownerSalt = new byte[4];
-         System.arraycopy(ownerEntropy, 0, ownerSalt, 0, 4);
+   private static byte[] getOwnerSalt(Bip38PrivateKey bip38Key, byte[] ownerEntropy) {
+      if (!bip38Key.lotSequence) {
+         return ownerEntropy;
       }
+      byte[] ownerSalt = new byte[4];
+      System.arraycopy(ownerEntropy, 0, ownerSalt, 0, 4);
+      return ownerSalt;
+   }
 
-      // Stretch to get Pass Factor
-      byte[] passFactor = bip38Stretch1(passphrase, ownerSalt, progressTracker, 32);
-
-      if (bip38Key.lotSequence) {
-         byte[] tmp = new byte[40];
-         System.arraycopy(passFactor, 0, tmp, 0, 32);
-         System.arraycopy(ownerEntropy, 0, tmp, 32, 8);
-         //we convert to byte[] here since this can be a sha256 or Scrypt result.
-         // might make sense to introduce a 32 byte scrypt type
-         passFactor = HashUtils.doubleSha256(tmp).getBytes();
+   private static byte[] getPassFactor(Bip38PrivateKey bip38Key, byte[] preFactor, byte[] ownerEntropy) {
+      if (!bip38Key.lotSequence) {
+         return preFactor;
       }
+      byte[] tmp = new byte[40];
+      System.arraycopy(preFactor, 0, tmp, 0, 32);
+      System.arraycopy(ownerEntropy, 0, tmp, 32, 8);
+      //we convert to byte[] here since this can be a sha256 or Scrypt result.
+      // might make sense to introduce a 32 byte scrypt type
+      return HashUtils.doubleSha256(tmp).getBytes();
+   }
 
+   private static String decryptEcMultiply(Bip38PrivateKey bip38Key, byte[] passFactor, byte[] ownerEntropy,
+                                           NetworkParameters network) {
       InMemoryPrivateKey key = new InMemoryPrivateKey(passFactor, true);
       // Determine Pass Point
       byte[] passPoint = key.getPublicKey().getPublicKeyBytes();
@@ -294,6 +400,9 @@ public class Bip38 {
          derived = SCrypt.scrypt(passPoint, saltPlusOwnerSalt, 1024, 1, 1, 64, null);
       } catch (GeneralSecurityException e) {
          throw new RuntimeException(e);
+      } catch (InterruptedException e) {
+         // Only happens through a progress tracker, and we have none
+         throw new RuntimeException(e);
       }
       byte[] derivedQuater1 = new byte[16];
       System.arraycopy(derived, 0, derivedQuater1, 0, 16);
@@ -302,19 +411,14 @@ public class Bip38 {
       byte[] derivedHalf2 = new byte[32];
       System.arraycopy(derived, 32, derivedHalf2, 0, 32);
 
-      Rijndael aes = new Rijndael();
-      aes.makeKey(derivedHalf2, 256);
-
-      byte[] unencryptedPart2 = new byte[16];
-      aes.decrypt(encryptedPart2, unencryptedPart2);
+      byte[] unencryptedPart2 = Aes.decryptEcb(derivedHalf2, encryptedPart2);
       xorBytes(derivedQuater2, unencryptedPart2);
 
       // Get second half of encrypted half 1
       System.arraycopy(unencryptedPart2, 0, encryptedPart1, 8, 8);
 
       // Decrypt part 1
-      byte[] unencryptedPart1 = new byte[16];
-      aes.decrypt(encryptedPart1, unencryptedPart1);
+      byte[] unencryptedPart1 = Aes.decryptEcb(derivedHalf2, encryptedPart1);
       xorBytes(derivedQuater1, unencryptedPart1);
 
       // Recover seedB
@@ -360,28 +464,14 @@ public class Bip38 {
       byte[] derivedHalf2 = new byte[32];
       System.arraycopy(stretcedKeyMaterial, 32, derivedHalf2, 0, 32);
 
-      // Initialize AES key
-      Rijndael aes = new Rijndael();
-      aes.makeKey(derivedHalf2, 256);
-
-      // Fetch first encrypted half
-      byte[] encryptedHalf1 = new byte[16];
-      System.arraycopy(bip38Key.data, 0, encryptedHalf1, 0, encryptedHalf1.length);
-
-      // Fetch second encrypted half
-      byte[] encryptedHalf2 = new byte[16];
-      System.arraycopy(bip38Key.data, 16, encryptedHalf2, 0, encryptedHalf2.length);
-
-      byte[] decryptedHalf1 = new byte[16];
-      aes.decrypt(encryptedHalf1, decryptedHalf1);
-
-      byte[] decryptedHalf2 = new byte[16];
-      aes.decrypt(encryptedHalf2, decryptedHalf2);
+      // Decrypt both encrypted halves
+      byte[] encryptedHalves = new byte[32];
+      System.arraycopy(bip38Key.data, 0, encryptedHalves, 0, encryptedHalves.length);
+      byte[] decryptedHalves = Aes.decryptEcb(derivedHalf2, encryptedHalves);
 
       byte[] complete = new byte[32];
-      for (int i = 0; i < 16; i++) {
-         complete[i] = (byte) ((((int) decryptedHalf1[i]) & 0xFF) ^ (((int) derivedHalf1[i]) & 0xFF));
-         complete[i + 16] = (byte) ((((int) decryptedHalf2[i]) & 0xFF) ^ (((int) derivedHalf1[i + 16]) & 0xFF));
+      for (int i = 0; i < 32; i++) {
+         complete[i] = (byte) ((((int) decryptedHalves[i]) & 0xFF) ^ (((int) derivedHalf1[i]) & 0xFF));
       }
 
       // Create private key
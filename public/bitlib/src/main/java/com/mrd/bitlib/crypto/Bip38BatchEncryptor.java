@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.crypto;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.lambdaworks.crypto.SCrypt;
+import com.lambdaworks.crypto.SCryptProgress;
+import com.mrd.bitlib.model.Address;
+import com.mrd.bitlib.model.NetworkParameters;
+
+/**
+ * Encrypts many private keys with the same passphrase using BIP38 without EC
+ * multiplication, for instance when printing a batch of paper wallets.
+ * <p/>
+ * Every key has its own salt, so every key costs a full scrypt run. The runs
+ * are spread over a pool of workers, each running one scrypt instance at a
+ * time, with as many workers as fit into the memory budget. Keys are read from
+ * an iterator as workers become available, and results are handed to a
+ * {@link Receiver} in input order on the calling thread.
+ */
+public class Bip38BatchEncryptor {
+
+   /**
+    * Receives the encrypted keys in input order
+    */
+   public interface Receiver {
+      void onEncrypted(int index, InMemoryPrivateKey key, String bip38PrivateKey);
+   }
+
+   private final byte[] _passphrase;
+   private final NetworkParameters _network;
+   private final int _workers;
+   private final SCryptProgress _progress;
+
+   /**
+    * @param passphrase
+    *           the passphrase to encrypt all keys with
+    * @param keyCount
+    *           the expected number of keys, used for progress reporting
+    * @param network
+    *           the network of the addresses that the BIP38 salts are
+    *           calculated from
+    * @param memoryBudget
+    *           the maximum number of bytes to use for scrypt buffers, see
+    *           {@link SCrypt#defaultMemoryBudget}
+    */
+   public Bip38BatchEncryptor(String passphrase, int keyCount, NetworkParameters network, long memoryBudget) {
+      try {
+         _passphrase = passphrase.getBytes(Bip38.BIP38_CHARACTER_ENCODING);
+      } catch (UnsupportedEncodingException e) {
+         throw new RuntimeException(e);
+      }
+      _network = network;
+      long fit = memoryBudget / SCrypt.laneMemory(Bip38.SCRYPT_N, Bip38.SCRYPT_R);
+      _workers = (int) Math.max(1, Math.min(fit, Runtime.getRuntime().availableProcessors()));
+      _progress = new SCryptProgress(Bip38.SCRYPT_N, Bip38.SCRYPT_R, Bip38.SCRYPT_P * Math.max(1, keyCount));
+   }
+
+   /**
+    * @return the number of keys encrypted concurrently
+    */
+   public int getWorkerCount() {
+      return _workers;
+   }
+
+   /**
+    * @return the aggregate progress of all keys between 0 and 1
+    */
+   public double getProgress() {
+      return _progress.getProgress();
+   }
+
+   /**
+    * Cancel the batch. {@link #encrypt} throws an InterruptedException soon
+    * after.
+    */
+   public void terminate() {
+      _progress.terminate();
+   }
+
+   /**
+    * Encrypt all keys from the iterator and hand them to the receiver in
+    * order. Blocks until all keys have been encrypted.
+    * 
+    * @throws InterruptedException
+    *            if the batch was terminated or the calling thread interrupted
+    */
+   public void encrypt(Iterator<? extends InMemoryPrivateKey> keys, Receiver receiver) throws InterruptedException {
+      ExecutorService executor = Executors.newFixedThreadPool(_workers);
+      // Keep the workers busy while the receiver waits for the oldest key
+      int window = _workers * 2;
+      LinkedList<Future<String>> inFlight = new LinkedList<Future<String>>();
+      LinkedList<InMemoryPrivateKey> pending = new LinkedList<InMemoryPrivateKey>();
+      int index = 0;
+      try {
+         while (keys.hasNext()) {
+            if (inFlight.size() == window) {
+               receiver.onEncrypted(index++, pending.removeFirst(), take(inFlight.removeFirst()));
+            }
+            InMemoryPrivateKey key = keys.next();
+            pending.addLast(key);
+            inFlight.addLast(executor.submit(createTask(key)));
+         }
+         while (!inFlight.isEmpty()) {
+            receiver.onEncrypted(index++, pending.removeFirst(), take(inFlight.removeFirst()));
+         }
+      } catch (InterruptedException e) {
+         _progress.terminate();
+         throw e;
+      } finally {
+         executor.shutdownNow();
+      }
+   }
+
+   private Callable<String> createTask(final InMemoryPrivateKey key) {
+      return new Callable<String>() {
+         @Override
+         public String call() throws InterruptedException, GeneralSecurityException {
+            Address address = key.getPublicKey().toAddress(_network);
+            byte[] salt = Bip38.calculateScryptSalt(address);
+            byte[] stretched = SCrypt.scryptJ(_passphrase, salt, Bip38.SCRYPT_N, Bip38.SCRYPT_R, Bip38.SCRYPT_P,
+                  Bip38.SCRYPT_LENGTH, _progress);
+            return Bip38.encryptNoEcMultiply(stretched, key, salt);
+         }
+      };
+   }
+
+   private String take(Future<String> future) throws InterruptedException {
+      try {
+         return future.get();
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+         }
+         _progress.terminate();
+         throw new RuntimeException(cause);
+      }
+   }
+
+}
@@ -37,7 +37,7 @@ public class FortunaRandomSource implements RandomSource {
    private final Fortuna fortuna;
 
    public FortunaRandomSource() {
-      fortuna = Fortuna.createInstance(Iterables.concat(jmxSources(),defaultSources(), platformSource()));
+      fortuna = Fortuna.createPerThreadInstance(Iterables.concat(jmxSources(), defaultSources(), platformSource()));
    }
 
    @Override
@@ -16,8 +16,15 @@
 
 package com.mrd.bitlib.crypto;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.Preconditions;
 import com.mrd.bitlib.util.BitUtils;
@@ -52,11 +59,59 @@ public class Gf256 {
 
    }
 
-   private int[] _logTable = new int[256];
-   private int[] _expTable = new int[256];
+   /**
+    * The log, exponent and multiplication tables of a field. They never change
+    * once built, so they are shared by all instances with the same polynomial.
+    */
+   private static class Tables {
+      private final int[] logTable = new int[256];
+      private final int[] expTable = new int[256];
+
+      /**
+       * mulTable[a][b] is the product of a and b. A row is the multiplication
+       * by a constant, which is all that polynomial evaluation and
+       * interpolation need.
+       */
+      private final byte[][] mulTable = new byte[256][256];
+
+      private Tables(int polynomial) {
+         // Initialize log and exponent tables by computing b = 2**i in GF
+         // sequentially for all i from 0 to 254
+         int b = 1; // 2**0
+         for (int i = 0; i < 255; i++) {
+            logTable[b] = i;
+            expTable[i] = b;
+            b <<= 1;
+            if ((b & 0x100) > 0) {
+               b ^= polynomial;
+            }
+         }
+         logTable[0] = (byte) INFINITY;
+         expTable[INFINITY] = 0;
+         // Check that this polynomial really generates a GF by checking that we
+         // are back to square one
+         Preconditions.checkState(b == 1);
+         for (int x = 1; x < 256; x++) {
+            for (int y = 1; y < 256; y++) {
+               mulTable[x][y] = (byte) expTable[(logTable[x] + logTable[y]) % 255];
+            }
+         }
+      }
+   }
+
+   private static final ConcurrentMap<Integer, Tables> TABLES = new ConcurrentHashMap<Integer, Tables>();
+
+   private final int[] _logTable;
+   private final int[] _expTable;
+   private final byte[][] _mulTable;
 
    private static final int INFINITY = 255;
 
+   /**
+    * The number of bytes of each stream that are processed at a time
+    */
+   private static final int STREAM_BLOCK_SIZE = 64 * 1024;
+
    /*
     * Create a Galois Field with the default polynomial 0x11d
     */
@@ -68,24 +123,16 @@ public class Gf256 {
     * Create a Galois Field with the specified polynomial 0x11d
     */
    public Gf256(int polynomial) {
-      // Initialize log and exponent tables by computing b = 2**i in GF
-      // sequentially for all i from 0 to 254
-      _logTable = new int[256];
-      _expTable = new int[256];
-      int b = 1; // 2**0
-      for (int i = 0; i < 255; i++) {
-         _logTable[b] = i;
-         _expTable[i] = b;
-         b <<= 1;
-         if ((b & 0x100) > 0) {
-            b ^= polynomial;
+      Tables tables = TABLES.get(polynomial);
+      if (tables == null) {
+         Tables existing = TABLES.putIfAbsent(polynomial, tables = new Tables(polynomial));
+         if (existing != null) {
+            tables = existing;
          }
       }
-      _logTable[0] = (byte) INFINITY;
-      _expTable[INFINITY] = 0;
-      // Check that this polynomial really generates a GF by checking that we
-      // are back to square one
-      Preconditions.checkState(b == 1);
+      _logTable = tables.logTable;
+      _expTable = tables.expTable;
+      _mulTable = tables.mulTable;
    }
 
    private final int log(int n) {
@@ -96,18 +143,6 @@ public class Gf256 {
       return _expTable[n];
    }
 
-   /**
-    * Addition. This is a simple X-or of two byte arrays
-    */
-   private final byte[] add(byte[] a, byte[] b) {
-      Preconditions.checkState(a.length == b.length);
-      byte[] c = new byte[a.length];
-      for (int i = 0; i < a.length; i++) {
-         c[i] = add(a[i], b[i]);
-      }
-      return c;
-   }
-
    /**
     * Addition. This is a simple X-or of two bytes
     */
@@ -122,30 +157,11 @@ public class Gf256 {
       return add(a, b);
    }
 
-   /**
-    * Multiplication.
-    */
-   private byte[] mul(byte[] a, byte[] b) {
-      Preconditions.checkState(a.length == b.length);
-      byte[] c = new byte[a.length];
-      for (int i = 0; i < a.length; i++) {
-         c[i] = mul(a[i], b[i]);
-      }
-      return c;
-   }
-
    /**
     * Multiplication.
     */
    private final byte mul(byte a, byte b) {
-      if (a == 0 || b == 0) {
-         return 0;
-      } else {
-         // The log of the product is the sum of the log of the multiplicands
-         // modulo 255
-         int lp = mod255(log(b2i(a)) + log(b2i(b)));
-         return (byte) exp(lp);
-      }
+      return _mulTable[b2i(a)][b2i(b)];
    }
 
    /**
@@ -189,16 +205,47 @@ public class Gf256 {
 
    private Share makeShare(byte x, byte[][] coeff) {
       Preconditions.checkArgument(x != 0);
-      int q = coeff[0].length;
-      byte[] s = coeff[0];
+      byte[] s = new byte[coeff[0].length];
+      evaluate(x, coeff, s, s.length);
+      return new Share((byte) x, s);
+   }
 
-      byte xpow = 1;
+   /**
+    * Evaluate the polynomials with the given coefficients at x for the first
+    * length bytes, using Horner's method
+    */
+   private void evaluate(byte x, byte[][] coeff, byte[] result, int length) {
+      byte[] xRow = _mulTable[b2i(x)];
+      byte[] last = coeff[coeff.length - 1];
+      System.arraycopy(last, 0, result, 0, length);
+      for (int i = coeff.length - 2; i >= 0; i--) {
+         byte[] c = coeff[i];
+         for (int j = 0; j < length; j++) {
+            result[j] = (byte) (xRow[result[j] & 0xFF] ^ c[j]);
+         }
+      }
+   }
 
-      for (int i = 1; i < coeff.length; i++) {
-         xpow = mul(xpow, x);
-         s = add(s, mul(byteArrayOf(xpow, q), coeff[i]));
+   /**
+    * The Lagrange coefficients for recreating the secret at x = 0 from shares
+    * with the given indexes
+    */
+   private byte[] lagrangeCoefficients(byte[] indexes) {
+      byte n = 1;
+      for (byte index : indexes) {
+         n = mul(n, index);
       }
-      return new Share((byte) x, s);
+      byte[] result = new byte[indexes.length];
+      for (int i = 0; i < indexes.length; i++) {
+         byte lc = div(n, indexes[i]);
+         for (byte otherIndex : indexes) {
+            if (otherIndex != indexes[i]) {
+               lc = div(lc, sub(otherIndex, indexes[i]));
+            }
+         }
+         result[i] = lc;
+      }
+      return result;
    }
 
    /**
@@ -216,33 +263,24 @@ public class Gf256 {
       Preconditions.checkArgument(m > 0);
       int q = shares.get(0).data.length;
 
-      byte n = 1;
-
-      for (Share share : shares) {
-         n = mul(n, share.index);
+      byte[] indexes = new byte[m];
+      for (int i = 0; i < m; i++) {
+         indexes[i] = shares.get(i).index;
       }
+      byte[] lc = lagrangeCoefficients(indexes);
 
       byte[] a = new byte[q];
-      for (Share share : shares) {
-         byte lc = div(n, share.index);
-         for (Share otherShare : shares) {
-            if (otherShare.index != share.index) {
-               lc = div(lc, sub(otherShare.index, share.index));
-            }
+      for (int i = 0; i < m; i++) {
+         byte[] lcRow = _mulTable[b2i(lc[i])];
+         byte[] data = shares.get(i).data;
+         Preconditions.checkState(data.length == q);
+         for (int j = 0; j < q; j++) {
+            a[j] ^= lcRow[data[j] & 0xFF];
          }
-         a = add(a, mul(share.data, byteArrayOf(lc, q)));
       }
       return a;
    }
 
-   private static final byte[] byteArrayOf(byte b, int length) {
-      byte[] result = new byte[length];
-      for (int i = 0; i < length; i++) {
-         result[i] = b;
-      }
-      return result;
-   }
-
    /**
     * Shard a secret into a number of shares in such a way that only the
     * specified threshold number of shares can recreate the secret.
@@ -268,4 +306,122 @@ public class Gf256 {
       return shareList;
    }
 
+   /**
+    * Shard a secret of any length into a number of share streams, in such a
+    * way that only the specified threshold number of shares can recreate the
+    * secret. Memory use is independent of the length of the secret.
+    * <p>
+    * Unlike {@link #makeShares(byte[], int, int)} the polynomial coefficients
+    * are drawn from the given random source rather than derived from the
+    * secret, as equal chunks of a long secret would otherwise give equal share
+    * chunks. The share written to shares.get(i) has index i + 1. The streams
+    * are not closed.
+    * 
+    * @param secret
+    *           the secret to shard
+    * @param threshold
+    *           the number of shares needed to recreate the secret
+    * @param shares
+    *           one output stream per share to create
+    * @param random
+    *           the source of the polynomial coefficients, should be a secure
+    *           random source
+    */
+   public void makeShares(InputStream secret, int threshold, List<? extends OutputStream> shares, Random random)
+         throws IOException {
+      Preconditions.checkArgument(shares.size() > 0, "Number of shares must be larger than zero");
+      Preconditions.checkArgument(shares.size() < 256, "Number of shares must be less than 256");
+      Preconditions.checkArgument(threshold > 0 && threshold <= shares.size(),
+            "Number of shares needed must be less than or equal to the number of shares");
+      byte[][] coeff = new byte[threshold][STREAM_BLOCK_SIZE];
+      byte[] share = new byte[STREAM_BLOCK_SIZE];
+      try {
+         int length;
+         while ((length = readBlock(secret, coeff[0])) > 0) {
+            for (int i = 1; i < threshold; i++) {
+               random.nextBytes(coeff[i]);
+            }
+            for (int i = 0; i < shares.size(); i++) {
+               evaluate((byte) (i + 1), coeff, share, length);
+               shares.get(i).write(share, 0, length);
+            }
+         }
+      } finally {
+         // Wipe the last secret block, the coefficients and the last share
+         for (int i = 0; i < threshold; i++) {
+            Arrays.fill(coeff[i], (byte) 0);
+         }
+         Arrays.fill(share, (byte) 0);
+      }
+   }
+
+   /**
+    * Combine share streams into the secret, with constant memory use.
+    * <p>
+    * If the number of shares does not exactly match the original threshold that
+    * the shares was created with, then the generated secret is not correct.
+    * The streams are not closed.
+    * 
+    * @param indexes
+    *           the index of each share
+    * @param shares
+    *           the share streams, in the same order as indexes
+    * @param secret
+    *           where the combined secret is written
+    * @throws IOException
+    *            if reading or writing fails, or the shares differ in length
+    */
+   public void combineShares(byte[] indexes, List<? extends InputStream> shares, OutputStream secret)
+         throws IOException {
+      int m = shares.size();
+      Preconditions.checkArgument(m > 0);
+      Preconditions.checkArgument(indexes.length == m);
+      byte[] lc = lagrangeCoefficients(indexes);
+      byte[] block = new byte[STREAM_BLOCK_SIZE];
+      byte[] a = new byte[STREAM_BLOCK_SIZE];
+      try {
+         while (true) {
+            int length = -1;
+            for (int i = 0; i < m; i++) {
+               int read = readBlock(shares.get(i), block);
+               if (length == -1) {
+                  length = read;
+                  Arrays.fill(a, (byte) 0);
+               } else if (read != length) {
+                  throw new IOException("Shares differ in length");
+               }
+               byte[] lcRow = _mulTable[b2i(lc[i])];
+               for (int j = 0; j < length; j++) {
+                  a[j] ^= lcRow[block[j] & 0xFF];
+               }
+            }
+            if (length == 0) {
+               return;
+            }
+            secret.write(a, 0, length);
+         }
+      } finally {
+         // Wipe the last block of the secret
+         Arrays.fill(a, (byte) 0);
+      }
+   }
+
+   /**
+    * Read until the buffer is full or the stream ends
+    * 
+    * @return the number of bytes read, less than the buffer length only at the
+    *         end of the stream
+    */
+   private static int readBlock(InputStream in, byte[] buffer) throws IOException {
+      int length = 0;
+      while (length < buffer.length) {
+         int read = in.read(buffer, length, buffer.length - length);
+         if (read == -1) {
+            break;
+         }
+         length += read;
+      }
+      return length;
+   }
+
 }
@@ -21,6 +21,7 @@ import java.math.BigInteger;
 
 import com.google.bitcoinj.Base58;
 import com.google.common.base.Preconditions;
+import com.mrd.bitlib.crypto.ec.EcTools;
 import com.mrd.bitlib.crypto.ec.Parameters;
 import com.mrd.bitlib.crypto.ec.Point;
 import com.mrd.bitlib.model.NetworkParameters;
@@ -28,6 +29,8 @@ import com.mrd.bitlib.util.BitUtils;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
 import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.Metrics;
+import com.mrd.bitlib.util.Metrics.Operation;
 
 /**
  * Implementation of BIP 32 HD wallet key derivation.
@@ -52,6 +55,7 @@ public class HdKeyNode {
    private final int _depth;
    private final int _parentFingerprint;
    private final int _index;
+   private volatile HmacContext _chainCodeHmac;
 
    HdKeyNode(InMemoryPrivateKey privateKey, byte[] chainCode, int depth, int parentFingerprint, int index) {
       _privateKey = privateKey;
@@ -71,6 +75,18 @@ public class HdKeyNode {
       _index = index;
    }
 
+   /**
+    * The chain code keys the HMAC of every child derived from this node
+    */
+   private HmacContext getChainCodeHmac() {
+      HmacContext hmac = _chainCodeHmac;
+      if (hmac == null) {
+         hmac = HmacContext.sha512(_chainCode);
+         _chainCodeHmac = hmac;
+      }
+      return hmac;
+   }
+
    /**
     * Generate a master HD key node from a seed.
     * 
@@ -166,6 +182,13 @@ public class HdKeyNode {
     *            can be created for this index (extremely unlikely)
     */
    public HdKeyNode createChildNode(int index) throws KeyGenerationException {
+      long start = Metrics.start();
+      HdKeyNode child = deriveChildNode(index);
+      Metrics.stop(Operation.DERIVE, start);
+      return child;
+   }
+
+   private HdKeyNode deriveChildNode(int index) throws KeyGenerationException {
       byte[] data;
       byte[] publicKeyBytes = _publicKey.getPublicKeyBytes();
       if (0 == (index & 0x80000000)) {
@@ -185,7 +208,7 @@ public class HdKeyNode {
          writer.putIntBE(index);
          data = writer.toBytes();
       }
-      byte[] l = Hmac.hmacSha512(_chainCode, data);
+      byte[] l = getChainCodeHmac().mac(data);
       byte[] lL = BitUtils.copyOfRange(l, 0, 32);
       byte[] lR = BitUtils.copyOfRange(l, 32, 64);
 
@@ -208,7 +231,7 @@ public class HdKeyNode {
          InMemoryPrivateKey key = new InMemoryPrivateKey(privateKeyBytes, true);
          return new HdKeyNode(key, lR, _depth + 1, getFingerprint(), index);
       } else {
-         Point q = Parameters.G.multiply(m).add(Parameters.curve.decodePoint(_publicKey.getPublicKeyBytes()));
+         Point q = EcTools.multiplyG(m).add(Parameters.curve.decodePoint(_publicKey.getPublicKeyBytes()));
          if (q.isInfinity()) {
             throw new KeyGenerationException("An unlikely thing happened: Invalid key point at infinity");
          }
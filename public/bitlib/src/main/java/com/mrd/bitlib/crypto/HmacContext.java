@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.crypto;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An HMAC key that has been absorbed into digest states once, so that each MAC
+ * computation only clones those states and hashes the message. Instances are
+ * immutable and may be shared between threads.
+ */
+public class HmacContext {
+
+   private static final String SHA256 = "SHA-256";
+   private static final String SHA512 = "SHA-512";
+   private static final int SHA256_BLOCK_SIZE = 64;
+   private static final int SHA512_BLOCK_SIZE = 128;
+
+   private final String _algorithm;
+   private final byte[] _iKeyPad;
+   private final byte[] _oKeyPad;
+   private final MessageDigest _inner;
+   private final MessageDigest _outer;
+   private final int _macLength;
+
+   public static HmacContext sha256(byte[] key) {
+      return new HmacContext(SHA256, SHA256_BLOCK_SIZE, key);
+   }
+
+   public static HmacContext sha512(byte[] key) {
+      return new HmacContext(SHA512, SHA512_BLOCK_SIZE, key);
+   }
+
+   private HmacContext(String algorithm, int blockSize, byte[] key) {
+      _algorithm = algorithm;
+      MessageDigest digest = newDigest(algorithm);
+      _macLength = digest.getDigestLength();
+
+      // Ensure sufficient key length
+      if (key.length > blockSize) {
+         key = digest.digest(key);
+      }
+      byte[] paddedKey = new byte[blockSize];
+      System.arraycopy(key, 0, paddedKey, 0, key.length);
+
+      _iKeyPad = new byte[blockSize];
+      _oKeyPad = new byte[blockSize];
+      for (int i = 0; i < blockSize; i++) {
+         _iKeyPad[i] = (byte) (0x36 ^ paddedKey[i]);
+         _oKeyPad[i] = (byte) (0x5c ^ paddedKey[i]);
+      }
+
+      _inner = absorb(digest, _iKeyPad);
+      _outer = absorb(newDigest(algorithm), _oKeyPad);
+   }
+
+   /**
+    * Digests that cannot be cloned are left null, and the key pads are
+    * hashed again for every MAC instead
+    */
+   private static MessageDigest absorb(MessageDigest digest, byte[] keyPad) {
+      digest.reset();
+      digest.update(keyPad, 0, keyPad.length);
+      try {
+         digest.clone();
+         return digest;
+      } catch (CloneNotSupportedException e) {
+         return null;
+      }
+   }
+
+   /**
+    * @return the length of a MAC in bytes
+    */
+   public int getMacLength() {
+      return _macLength;
+   }
+
+   public byte[] mac(byte[] message) {
+      return mac(message, 0, message.length);
+   }
+
+   public byte[] mac(byte[] message, int offset, int length) {
+      byte[] result = new byte[_macLength];
+      mac(message, offset, length, result, 0);
+      return result;
+   }
+
+   /**
+    * Write the MAC of a message slice into a caller supplied buffer
+    * 
+    * @return the number of bytes written, which is {@link #getMacLength()}
+    */
+   public int mac(byte[] message, int offset, int length, byte[] out, int outOffset) {
+      MessageDigest inner = start(_inner, _iKeyPad);
+      inner.update(message, offset, length);
+      MessageDigest outer = start(_outer, _oKeyPad);
+      try {
+         // The inner hash is written to out first and then replaced by the MAC
+         inner.digest(out, outOffset, _macLength);
+         outer.update(out, outOffset, _macLength);
+         return outer.digest(out, outOffset, _macLength);
+      } catch (DigestException e) {
+         // Only happens if out is too short
+         throw new IllegalArgumentException(e);
+      }
+   }
+
+   private MessageDigest start(MessageDigest prototype, byte[] keyPad) {
+      if (prototype != null) {
+         try {
+            return (MessageDigest) prototype.clone();
+         } catch (CloneNotSupportedException e) {
+            // Checked when the context was created
+         }
+      }
+      MessageDigest digest = newDigest(_algorithm);
+      digest.update(keyPad, 0, keyPad.length);
+      return digest;
+   }
+
+   private static MessageDigest newDigest(String algorithm) {
+      try {
+         return MessageDigest.getInstance(algorithm);
+      } catch (NoSuchAlgorithmException e) {
+         // Only happens if the platform does not support the algorithm
+         throw new RuntimeException(e);
+      }
+   }
+
+}
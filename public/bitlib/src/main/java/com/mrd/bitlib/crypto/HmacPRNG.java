@@ -16,10 +16,11 @@
 
 package com.mrd.bitlib.crypto;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 
-import com.mrd.bitlib.crypto.Hmac;
 import com.mrd.bitlib.util.BitUtils;
 
 /**
@@ -35,6 +36,7 @@ public class HmacPRNG extends SecureRandom {
 
    private int _nonce;
    private byte[] _key;
+   private transient HmacContext _hmac;
    private byte[] _randomBuffer;
    private int _index;
 
@@ -47,6 +49,7 @@ public class HmacPRNG extends SecureRandom {
     */
    public HmacPRNG(byte[] seed) throws NoSuchAlgorithmException {
       _key = seed;
+      _hmac = HmacContext.sha256(seed);
       _nonce = 1;
       _randomBuffer = new byte[16];
       hmacIteration();
@@ -55,12 +58,17 @@ public class HmacPRNG extends SecureRandom {
    private void hmacIteration() {
       byte[] message = new byte[4];
       BitUtils.uint32ToByteArrayLE(_nonce++, message, 0);
-      byte[] temp = Hmac.hmacSha256(_key, message);
+      byte[] temp = _hmac.mac(message);
       // Only use half of the output as random bytes
       System.arraycopy(temp, 0, _randomBuffer, 0, _randomBuffer.length);
       _index = 0;
    }
 
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      in.defaultReadObject();
+      _hmac = HmacContext.sha256(_key);
+   }
+
    @Override
    public String getAlgorithm() {
       throw new RuntimeException("Not supported");
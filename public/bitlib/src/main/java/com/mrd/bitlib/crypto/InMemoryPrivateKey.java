@@ -22,6 +22,9 @@ package com.mrd.bitlib.crypto;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.google.bitcoinj.Base58;
 
@@ -30,6 +33,8 @@ import com.mrd.bitlib.crypto.ec.Parameters;
 import com.mrd.bitlib.crypto.ec.Point;
 import com.mrd.bitlib.model.NetworkParameters;
 import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Metrics;
+import com.mrd.bitlib.util.Metrics.Operation;
 import com.mrd.bitlib.util.Sha256Hash;
 
 /**
@@ -62,6 +67,22 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
     *           compressed
     */
    public InMemoryPrivateKey(RandomSource randomSource, boolean compressed) {
+      BigInteger d = randomScalar(randomSource);
+      Point Q = EcTools.multiplyG(d);
+      _privateKey = d;
+      if (compressed) {
+         // Convert Q to a compressed point on the curve
+         Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
+      }
+      _publicKey = new PublicKey(Q.getEncoded());
+   }
+
+   private InMemoryPrivateKey(BigInteger privateKey, PublicKey publicKey) {
+      _privateKey = privateKey;
+      _publicKey = publicKey;
+   }
+
+   private static BigInteger randomScalar(RandomSource randomSource) {
       int nBitLength = Parameters.n.bitLength();
       BigInteger d;
       do {
@@ -74,14 +95,44 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
          bytes[0] = (byte) (bytes[0] & 0x7F); // ensure positive number
          d = new BigInteger(bytes);
       } while (d.equals(BigInteger.ZERO) || (d.compareTo(Parameters.n) >= 0));
+      return d;
+   }
 
-      Point Q = EcTools.multiply(Parameters.G, d);
-      _privateKey = d;
-      if (compressed) {
-         // Convert Q to a compressed point on the curve
-         Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
+   /**
+    * Generate many random private keys. This gives the same keys as calling
+    * {@link #InMemoryPrivateKey(RandomSource, boolean)} count times, but
+    * converts all public keys to affine coordinates with one shared field
+    * inversion and calculates their address hashes up front, so that
+    * {@link PublicKey#toAddress(NetworkParameters)} does no hashing.
+    *
+    * @param count
+    *           the number of keys to generate
+    * @param randomSource
+    *           the secure random source to generate the keys from
+    * @param compressed
+    *           Specifies whether the public keys should be compressed
+    * @return the generated keys
+    */
+   public static List<InMemoryPrivateKey> generateBatch(int count, RandomSource randomSource, boolean compressed) {
+      BigInteger[] privateKeys = new BigInteger[count];
+      for (int i = 0; i < count; i++) {
+         privateKeys[i] = randomScalar(randomSource);
       }
-      _publicKey = new PublicKey(Q.getEncoded());
+      Point[] points = EcTools.multiplyG(privateKeys);
+      byte[][] encoded = new byte[count][];
+      for (int i = 0; i < count; i++) {
+         Point Q = points[i];
+         if (compressed) {
+            Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
+         }
+         encoded[i] = Q.getEncoded();
+      }
+      byte[][] hashes = HashUtils.addressHashes(encoded);
+      List<InMemoryPrivateKey> keys = new ArrayList<InMemoryPrivateKey>(count);
+      for (int i = 0; i < count; i++) {
+         keys.add(new InMemoryPrivateKey(privateKeys[i], new PublicKey(encoded[i], hashes[i])));
+      }
+      return keys;
    }
 
    /**
@@ -117,7 +168,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       byte[] keyBytes = new byte[33];
       System.arraycopy(bytes, 0, keyBytes, 1, 32);
       _privateKey = new BigInteger(keyBytes);
-      Point Q = EcTools.multiply(Parameters.G, _privateKey);
+      Point Q = EcTools.multiplyG(_privateKey);
       if (compressed) {
          // Convert Q to a compressed point on the curve
          Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
@@ -146,10 +197,16 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
     * Construct from a base58 encoded key (SIPA format)
     */
    public InMemoryPrivateKey(String base58Encoded, NetworkParameters network) {
-      byte[] decoded = Base58.decodeChecked(base58Encoded);
+      // 52 characters encode the 34 bytes of a key with compression flag, 51
+      // characters the 33 bytes of one without
+      boolean flagged = base58Encoded.length() >= 52;
+      byte[] decoded = Base58.decodeChecked(base58Encoded, flagged ? 34 : 33);
+      if (decoded == null) {
+         decoded = Base58.decodeChecked(base58Encoded, flagged ? 33 : 34);
+      }
 
       // Validate format
-      if (decoded == null || decoded.length < 33 || decoded.length > 34) {
+      if (decoded == null) {
          throw new IllegalArgumentException("Invalid base58 encoded key");
       }
       if (network.equals(NetworkParameters.productionNetwork) && decoded[0] != (byte) 0x80) {
@@ -177,7 +234,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       decoded[0] = 0;
 
       _privateKey = new BigInteger(decoded);
-      Point Q = EcTools.multiply(Parameters.G, _privateKey);
+      Point Q = EcTools.multiplyG(_privateKey);
       if (compressed) {
          // Convert Q to a compressed point on the curve
          Q = new Point(Q.getCurve(), Q.getX(), Q.getY(), true);
@@ -192,6 +249,15 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
 
    @Override
    protected Signature generateSignature(Sha256Hash messageHash, RandomSource randomSource) {
+      return generateSignature(messageHash, randomSource, new byte[Parameters.n.bitLength() / 8]);
+   }
+
+   /**
+    * @param kBytes
+    *           buffer for the random bytes of k, overwritten when done
+    */
+   private Signature generateSignature(Sha256Hash messageHash, RandomSource randomSource, byte[] kBytes) {
+      long start = Metrics.start();
       BigInteger n = Parameters.n;
       BigInteger e = calculateE(n, messageHash.getBytes()); //leaving strong typing here
       BigInteger r = null;
@@ -200,20 +266,18 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       do // generate s
       {
          BigInteger k = null;
-         int nBitLength = n.bitLength();
 
          do // generate r
          {
             do {
                // make a BigInteger from bytes to ensure that Andriod and
                // 'classic' java make the same BigIntegers
-               byte[] bytes = new byte[nBitLength / 8];
-               randomSource.nextBytes(bytes);
-               bytes[0] = (byte) (bytes[0] & 0x7F); // ensure positive number
-               k = new BigInteger(bytes);
+               randomSource.nextBytes(kBytes);
+               kBytes[0] = (byte) (kBytes[0] & 0x7F); // ensure positive number
+               k = new BigInteger(kBytes);
             } while (k.equals(BigInteger.ZERO));
 
-            Point p = EcTools.multiply(Parameters.G, k);
+            Point p = EcTools.multiplyG(k);
 
             // 5.3.3
             BigInteger x = p.getX().toBigInteger();
@@ -225,6 +289,7 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
 
          s = k.modInverse(n).multiply(e.add(d.multiply(r))).mod(n);
       } while (s.equals(BigInteger.ZERO));
+      Arrays.fill(kBytes, (byte) 0);
 
       // Enforce low S value
       if(s.compareTo(Parameters.MAX_SIG_S) == 1){
@@ -232,9 +297,85 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
          s = Parameters.n.subtract(s);
       }
 
+      Metrics.stop(Operation.SIGN, start);
       return new Signature(r, s);
    }
 
+   /**
+    * Create a signer for signing many hashes with this key, such as the inputs
+    * of a consolidation transaction. A signer is not thread safe.
+    */
+   public Signer createSigner() {
+      return new Signer();
+   }
+
+   /**
+    * Signs with the key it was created from, reusing its buffers between
+    * signatures
+    */
+   public class Signer {
+      private final byte[] _kBytes = new byte[Parameters.n.bitLength() / 8];
+
+      private Signer() {
+      }
+
+      public Signature sign(Sha256Hash messageHash, RandomSource randomSource) {
+         return generateSignature(messageHash, randomSource, _kBytes);
+      }
+
+      /**
+       * Sign many hashes, fetching the random bytes for all of them from the
+       * random source at once
+       * 
+       * @return the signatures in the same order as the hashes
+       */
+      public List<Signature> signMany(List<Sha256Hash> messageHashes, RandomSource randomSource) {
+         PrefetchedRandomSource prefetched = new PrefetchedRandomSource(randomSource, messageHashes.size()
+               * _kBytes.length);
+         try {
+            List<Signature> signatures = new ArrayList<Signature>(messageHashes.size());
+            for (Sha256Hash messageHash : messageHashes) {
+               signatures.add(sign(messageHash, prefetched));
+            }
+            return signatures;
+         } finally {
+            prefetched.wipe();
+         }
+      }
+   }
+
+   /**
+    * Hands out random bytes fetched in one go, and reads from the underlying
+    * source once they are used up
+    */
+   private static class PrefetchedRandomSource implements RandomSource {
+      private final RandomSource _source;
+      private final byte[] _buffer;
+      private int _position;
+
+      private PrefetchedRandomSource(RandomSource source, int length) {
+         _source = source;
+         _buffer = new byte[length];
+         source.nextBytes(_buffer);
+         _position = 0;
+      }
+
+      @Override
+      public void nextBytes(byte[] bytes) {
+         if (_buffer.length - _position < bytes.length) {
+            _source.nextBytes(bytes);
+            return;
+         }
+         System.arraycopy(_buffer, _position, bytes, 0, bytes.length);
+         Arrays.fill(_buffer, _position, _position + bytes.length, (byte) 0);
+         _position += bytes.length;
+      }
+
+      private void wipe() {
+         Arrays.fill(_buffer, (byte) 0);
+      }
+   }
+
    private BigInteger calculateE(BigInteger n, byte[] messageHash) {
       if (n.bitLength() > messageHash.length * 8) {
          return new BigInteger(1, messageHash);
@@ -275,21 +416,18 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
    }
 
    private String getBase58EncodedPrivateKeyUncompressed(NetworkParameters network) {
-      byte[] toEncode = new byte[1 + 32 + 4];
+      byte[] toEncode = new byte[1 + 32];
       // Set network
       toEncode[0] = network.isProdnet() ? (byte) 0x80 : (byte) 0xEF;
       // Set key bytes
       byte[] keyBytes = getPrivateKeyBytes();
       System.arraycopy(keyBytes, 0, toEncode, 1, keyBytes.length);
-      // Set checksum
-      byte[] checkSum = HashUtils.doubleSha256(toEncode, 0, 1 + 32).firstFourBytes();
-      System.arraycopy(checkSum, 0, toEncode, 1 + 32, 4);
-      // Encode
-      return Base58.encode(toEncode);
+      // Encode with checksum
+      return Base58.encodeWithChecksum(toEncode);
    }
 
    private String getBase58EncodedPrivateKeyCompressed(NetworkParameters network) {
-      byte[] toEncode = new byte[1 + 32 + 1 + 4];
+      byte[] toEncode = new byte[1 + 32 + 1];
       // Set network
       toEncode[0] = network.isProdnet() ? (byte) 0x80 : (byte) 0xEF;
       // Set key bytes
@@ -297,11 +435,8 @@ public class InMemoryPrivateKey extends PrivateKey implements KeyExporter, Seria
       System.arraycopy(keyBytes, 0, toEncode, 1, keyBytes.length);
       // Set compressed indicator
       toEncode[33] = 0x01;
-      // Set checksum
-      byte[] checkSum = HashUtils.doubleSha256(toEncode, 0, 1 + 32 + 1).firstFourBytes();
-      System.arraycopy(checkSum, 0, toEncode, 1 + 32 + 1, 4);
-      // Encode
-      return Base58.encode(toEncode);
+      // Encode with checksum
+      return Base58.encodeWithChecksum(toEncode);
    }
 
 }
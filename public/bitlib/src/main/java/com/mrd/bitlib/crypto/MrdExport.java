@@ -16,7 +16,6 @@
 
 package com.mrd.bitlib.crypto;
 
-import Rijndael.Rijndael;
 import com.google.common.io.BaseEncoding;
 import com.lambdaworks.crypto.SCrypt;
 import com.lambdaworks.crypto.SCryptProgress;
@@ -426,29 +425,11 @@ public class MrdExport {
          byte[] hash = HashUtils.sha256(parameters.salt, checksum).getBytes();
          System.arraycopy(hash, 0, IV, 0, IV.length);
 
-         // Initialize AES key
-         Rijndael aes = new Rijndael();
-         aes.makeKey(parameters.aesKey, V1_CIPHER_KEY_LENGTH * 8);
-
-         // Decrypt block 1
-         byte[] plaintextBlock1 = new byte[V1_BLOCK_CIPHER_LENGTH];
-         aes.decrypt(ciphertextBlock1, plaintextBlock1);
-
-         // Apply IV to plaintext block 1 (Cipher block chaining)
-         xorBytes(IV, plaintextBlock1);
-
-         // Decrypt block 2
-         byte[] plaintextBlock2 = new byte[V1_BLOCK_CIPHER_LENGTH];
-         aes.decrypt(ciphertextBlock2, plaintextBlock2);
-
-         // Apply ciphertext block 1 on plaintext block 2 (Cipher block
-         // chaining)
-         xorBytes(ciphertextBlock1, plaintextBlock2);
-
-         // Concatenate plaintext blocks
-         byte[] privateKeyBytes = new byte[32];
-         System.arraycopy(plaintextBlock1, 0, privateKeyBytes, 0, 16);
-         System.arraycopy(plaintextBlock2, 0, privateKeyBytes, 16, 16);
+         // Decrypt both blocks in CBC mode
+         byte[] ciphertext = new byte[32];
+         System.arraycopy(ciphertextBlock1, 0, ciphertext, 0, 16);
+         System.arraycopy(ciphertextBlock2, 0, ciphertext, 16, 16);
+         byte[] privateKeyBytes = Aes.decryptCbc(parameters.aesKey, IV, ciphertext);
 
          // Create key
          InMemoryPrivateKey key = new InMemoryPrivateKey(privateKeyBytes, header.compressed);
@@ -497,37 +478,12 @@ public class MrdExport {
          byte[] hash = HashUtils.sha256(parameters.salt, checksum).getBytes();
          System.arraycopy(hash, 0, IV, 0, V1_BLOCK_CIPHER_LENGTH);
 
-         // Initialize AES key
-         Rijndael aes = new Rijndael();
-         aes.makeKey(parameters.aesKey, V1_CIPHER_KEY_LENGTH * 8);
-
-         // Get private key bytes and copy to blocks
-         byte[] complete = key.getPrivateKeyBytes();
-         byte[] plaintextBlock1 = new byte[16];
-         System.arraycopy(complete, 0, plaintextBlock1, 0, 16);
-         byte[] plaintextBlock2 = new byte[16];
-         System.arraycopy(complete, 16, plaintextBlock2, 0, 16);
-
-         // Apply IV to plaintext block 1 (Cipher block chaining)
-         xorBytes(IV, plaintextBlock1);
-
-         // Encrypt block 1
-         byte[] ciphertextBlock1 = new byte[16];
-         aes.encrypt(plaintextBlock1, ciphertextBlock1);
-
-         // Apply ciphertext block 1 on plaintext block 2 (Cipher block
-         // chaining)
-         xorBytes(ciphertextBlock1, plaintextBlock2);
-
-         // Encrypt block 2
-         byte[] ciphertextBlock2 = new byte[16];
-         aes.encrypt(plaintextBlock2, ciphertextBlock2);
+         // Encrypt the private key bytes in CBC mode
+         byte[] ciphertext = Aes.encryptCbc(parameters.aesKey, IV, key.getPrivateKeyBytes());
 
          // Copy encrypted form to encoding
-         System.arraycopy(ciphertextBlock1, 0, encoded, index, 16);
-         index += 16;
-         System.arraycopy(ciphertextBlock2, 0, encoded, index, 16);
-         index += 16;
+         System.arraycopy(ciphertext, 0, encoded, index, 32);
+         index += 32;
 
          // Add checksum
          System.arraycopy(checksum, 0, encoded, index, checksum.length);
@@ -627,15 +583,6 @@ public class MrdExport {
 
    }
 
-   private static void xorBytes(byte[] toApply, byte[] target) {
-      if (toApply.length != target.length) {
-         throw new RuntimeException();
-      }
-      for (int i = 0; i < toApply.length; i++) {
-         target[i] = (byte) (target[i] ^ toApply[i]);
-      }
-   }
-
    private static String base64UrlEncode(byte[] data) {
       return BaseEncoding.base64Url().omitPadding().encode(data);
    }
@@ -40,6 +40,14 @@ public class PublicKey implements Serializable {
       _pubKeyBytes = publicKeyBytes;
    }
 
+   /**
+    * Construct with an already calculated public key hash
+    */
+   PublicKey(byte[] publicKeyBytes, byte[] publicKeyHash) {
+      _pubKeyBytes = publicKeyBytes;
+      _pubKeyHash = publicKeyHash;
+   }
+
    public Address toAddress(NetworkParameters networkParameters) {
       byte[] hashedPublicKey = getPublicKeyHash();
       return Address.fromStandardBytes(hashedPublicKey, networkParameters);
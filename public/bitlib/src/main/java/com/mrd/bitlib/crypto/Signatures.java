@@ -27,6 +27,8 @@ import com.mrd.bitlib.crypto.ec.Parameters;
 import com.mrd.bitlib.crypto.ec.Point;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.Metrics;
+import com.mrd.bitlib.util.Metrics.Operation;
 
 public class Signatures {
 
@@ -110,6 +112,13 @@ public class Signatures {
    }
 
    static boolean verifySignature(byte[] message, Signature signature, Point Q) {
+      long start = Metrics.start();
+      boolean valid = verifySignatureInternal(message, signature, Q);
+      Metrics.stop(Operation.VERIFY, start);
+      return valid;
+   }
+
+   private static boolean verifySignatureInternal(byte[] message, Signature signature, Point Q) {
       BigInteger n = Parameters.n;
       BigInteger e = calculateE(n, message);
       BigInteger r = signature.r;
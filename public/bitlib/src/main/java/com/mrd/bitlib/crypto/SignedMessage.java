@@ -29,6 +29,14 @@ import com.mrd.bitlib.util.Sha256Hash;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class SignedMessage implements Serializable {
    private static final long serialVersionUID = 1188125594280603453L;
@@ -46,22 +54,111 @@ public class SignedMessage implements Serializable {
    public static PublicKey recoverFromSignature(String message, String signatureBase64) throws WrongSignatureException {
       final byte[] signatureEncoded = Base64.decode(signatureBase64);
       final Signature sig = decodeSignature(signatureEncoded);
-      return recoverFromSignature(message, signatureEncoded, sig).publicKey;
+      return recoverFromSignature(hashMessage(message), signatureEncoded, sig).publicKey;
+   }
+
+   private static Sha256Hash hashMessage(String message) {
+      byte[] messageBytes = Signatures.formatMessageForSigning(message);
+      // Note that the C++ code doesn't actually seem to specify any character
+      // encoding. Presumably it's whatever
+      // JSON-SPIRIT hands back. Assume UTF-8 for now.
+      return HashUtils.doubleSha256(messageBytes);
    }
 
    public static SignedMessage validate(Address address, String message, String signatureBase64)
          throws WrongSignatureException {
+      return validate(address, hashMessage(message), signatureBase64);
+   }
+
+   private static SignedMessage validate(Address address, Sha256Hash messageHash, String signatureBase64)
+         throws WrongSignatureException {
       final byte[] signatureEncoded = Base64.decode(signatureBase64);
       if (signatureEncoded == null) {
          // Invalid or truncated base64
          throw new WrongSignatureException(String.format("given signature is not valid base64 %s", signatureBase64));
       }
       final Signature sig = decodeSignature(signatureEncoded);
-      final RecoveryInfo info = recoverFromSignature(message, signatureEncoded, sig);
+      final RecoveryInfo info = recoverFromSignature(messageHash, signatureEncoded, sig);
       validateAddressMatches(address, info.publicKey);
       return new SignedMessage(sig, info.publicKey, info.recId);
    }
 
+   /**
+    * An address, a message and a signature that is claimed to be made by the
+    * key of the address
+    */
+   public static class Claim {
+      public final Address address;
+      public final String message;
+      public final String signatureBase64;
+
+      public Claim(Address address, String message, String signatureBase64) {
+         this.address = address;
+         this.message = message;
+         this.signatureBase64 = signatureBase64;
+      }
+   }
+
+   /**
+    * Validate many signed messages, such as the responses to a login challenge.
+    * Messages that occur more than once are only hashed once.
+    * 
+    * @return the validated message for each claim in the same order, or null
+    *         where the signature is not valid for the address and message
+    */
+   public static List<SignedMessage> validate(List<Claim> claims) {
+      Map<String, Sha256Hash> hashes = new HashMap<String, Sha256Hash>();
+      List<SignedMessage> result = new ArrayList<SignedMessage>(claims.size());
+      for (Claim claim : claims) {
+         Sha256Hash messageHash = hashes.get(claim.message);
+         if (messageHash == null) {
+            messageHash = hashMessage(claim.message);
+            hashes.put(claim.message, messageHash);
+         }
+         try {
+            result.add(validate(claim.address, messageHash, claim.signatureBase64));
+         } catch (WrongSignatureException e) {
+            result.add(null);
+         }
+      }
+      return result;
+   }
+
+   private static final int VALIDATION_CHUNK_SIZE = 64;
+
+   /**
+    * Validate many signed messages in chunks on the given executor
+    * 
+    * @return the validated message for each claim in the same order, or null
+    *         where the signature is not valid for the address and message
+    */
+   public static List<SignedMessage> validate(List<Claim> claims, ExecutorService executor)
+         throws InterruptedException {
+      List<Future<List<SignedMessage>>> futures = new ArrayList<Future<List<SignedMessage>>>();
+      for (int i = 0; i < claims.size(); i += VALIDATION_CHUNK_SIZE) {
+         final List<Claim> chunk = claims.subList(i, Math.min(claims.size(), i + VALIDATION_CHUNK_SIZE));
+         futures.add(executor.submit(new Callable<List<SignedMessage>>() {
+            @Override
+            public List<SignedMessage> call() {
+               return validate(chunk);
+            }
+         }));
+      }
+      List<SignedMessage> result = new ArrayList<SignedMessage>(claims.size());
+      try {
+         for (Future<List<SignedMessage>> future : futures) {
+            result.addAll(future.get());
+         }
+      } catch (ExecutionException e) {
+         throw new RuntimeException(e.getCause());
+      } finally {
+         for (Future<List<SignedMessage>> future : futures) {
+            future.cancel(true);
+         }
+      }
+      return result;
+   }
+
    public static void validateAddressMatches(Address address, PublicKey key) throws WrongSignatureException {
       Address recoveredAddress = key.toAddress(address.getNetwork());
       if (!address.equals(recoveredAddress)) {
@@ -74,7 +171,7 @@ public class SignedMessage implements Serializable {
     * to avoid extracting Signature sig twice, the parsed version is also passed
     * in here. it must be obtained from signatureEncoded
     */
-   private static RecoveryInfo recoverFromSignature(String message, byte[] signatureEncoded, Signature sig)
+   private static RecoveryInfo recoverFromSignature(Sha256Hash messageHash, byte[] signatureEncoded, Signature sig)
          throws WrongSignatureException {
       int header = signatureEncoded[0] & 0xFF;
       // The header byte: 0x1B = first key with even y, 0x1C = first key with
@@ -83,11 +180,6 @@ public class SignedMessage implements Serializable {
       if (header < 27 || header > 34)
          throw new WrongSignatureException("Header byte out of range: " + header);
 
-      byte[] messageBytes = Signatures.formatMessageForSigning(message);
-      // Note that the C++ code doesn't actually seem to specify any character
-      // encoding. Presumably it's whatever
-      // JSON-SPIRIT hands back. Assume UTF-8 for now.
-      Sha256Hash messageHash = HashUtils.doubleSha256(messageBytes);
       boolean compressed = false;
       if (header >= 31) {
          compressed = true;
@@ -156,6 +248,9 @@ public class SignedMessage implements Serializable {
       // 1.1 Let x = r + jn
 
       BigInteger n = Parameters.n; // Curve order.
+      if (sig.r.signum() == 0 || sig.s.signum() == 0) {
+         return null;
+      }
       BigInteger i = BigInteger.valueOf((long) recId / 2);
       BigInteger x = sig.r.add(i.multiply(n));
       // 1.2. Convert the integer x to an octet string X of length mlen using
@@ -182,11 +277,18 @@ public class SignedMessage implements Serializable {
       // Compressed keys require you to know an extra bit of data about the
       // y-coord as there are two possibilities.
       // So it's encoded in the recId.
-      Point R = EcTools.decompressKey(x, (recId & 1) == 1);
+      Point R;
+      try {
+         R = EcTools.decompressKey(x, (recId & 1) == 1);
+      } catch (RuntimeException e) {
+         // x is not the x-coordinate of a curve point
+         return null;
+      }
       // 1.4. If nR != point at infinity, then do another iteration of Step 1
       // (callers responsibility).
-      if (!R.multiply(n).isInfinity())
-         return null;
+      // secp256k1 has cofactor 1, so every point on the curve has order n and
+      // nR is always the point at infinity. Decompression only returns points
+      // on the curve, so the costly multiplication by n is skipped.
       // 1.5. Compute e from M using Steps 2 and 3 of ECDSA signature
       // verification.
       BigInteger e = new BigInteger(1, message.getBytes());
@@ -22,6 +22,9 @@ package com.mrd.bitlib.crypto.ec;
 
 import java.math.BigInteger;
 
+import com.mrd.bitlib.util.Metrics;
+import com.mrd.bitlib.util.Metrics.Operation;
+
 /**
  * Various tools for elliptic curves
  */
@@ -60,6 +63,7 @@ public class EcTools {
     * Multiply a point with a big integer
     */
    public static Point multiply(Point p, BigInteger k) {
+      long start = Metrics.start();
       BigInteger e = k;
       BigInteger h = e.multiply(BigInteger.valueOf(3));
 
@@ -77,10 +81,176 @@ public class EcTools {
          }
       }
 
+      Metrics.stop(Operation.EC_MULTIPLY, start);
+      return R;
+   }
+
+   /**
+    * Multiply the generator G with a big integer 0 <= k < 2^256 using a table
+    * of precomputed multiples of G. This takes at most 64 point additions and
+    * no doublings.
+    */
+   public static Point multiplyG(BigInteger k) {
+      if (k.signum() < 0 || k.bitLength() > GTable.WINDOWS * GTable.WINDOW_BITS) {
+         return multiply(Parameters.G, k);
+      }
+      long start = Metrics.start();
+      byte[] bytes = integerToBytes(k, GTable.WINDOWS * GTable.WINDOW_BITS / 8);
+      Point R = Parameters.curve.getInfinity();
+      for (int i = 0; i < GTable.WINDOWS; i++) {
+         // Window i holds bits 4i to 4i + 3, counting from the least
+         // significant end
+         int b = bytes[bytes.length - 1 - i / 2] & 0xFF;
+         int nibble = (i & 1) == 0 ? b & 0x0F : b >>> 4;
+         if (nibble != 0) {
+            R = R.add(GTable.TABLE[i][nibble]);
+         }
+      }
+      Metrics.stop(Operation.EC_MULTIPLY, start);
       return R;
    }
 
+   /**
+    * Multiply the generator G with many big integers. The sums are kept in
+    * Jacobian coordinates and converted to affine coordinates with a single
+    * shared field inversion, rather than one inversion per point addition.
+    * 
+    * @return the point k * G for each k, in the same order
+    */
+   public static Point[] multiplyG(BigInteger[] ks) {
+      BigInteger p = Parameters.curve.getQ();
+      int count = ks.length;
+      BigInteger[][] jacobian = new BigInteger[count][];
+      for (int i = 0; i < count; i++) {
+         BigInteger k = ks[i];
+         if (k.signum() < 0 || k.bitLength() > GTable.WINDOWS * GTable.WINDOW_BITS) {
+            jacobian[i] = toJacobian(multiply(Parameters.G, k));
+            continue;
+         }
+         byte[] bytes = integerToBytes(k, GTable.WINDOWS * GTable.WINDOW_BITS / 8);
+         BigInteger[] R = JACOBIAN_INFINITY;
+         for (int w = 0; w < GTable.WINDOWS; w++) {
+            int b = bytes[bytes.length - 1 - w / 2] & 0xFF;
+            int nibble = (w & 1) == 0 ? b & 0x0F : b >>> 4;
+            if (nibble != 0) {
+               R = addMixed(R, GTable.TABLE[w][nibble], p);
+            }
+         }
+         jacobian[i] = R;
+      }
+
+      // Montgomery's trick: invert the product of all Z and recover each
+      // inverse from it with two multiplications
+      BigInteger[] prefix = new BigInteger[count];
+      BigInteger product = BigInteger.ONE;
+      for (int i = 0; i < count; i++) {
+         prefix[i] = product;
+         if (jacobian[i][2].signum() != 0) {
+            product = product.multiply(jacobian[i][2]).mod(p);
+         }
+      }
+      BigInteger inverse = product.modInverse(p);
+      Point[] result = new Point[count];
+      for (int i = count - 1; i >= 0; i--) {
+         BigInteger[] R = jacobian[i];
+         if (R[2].signum() == 0) {
+            result[i] = Parameters.curve.getInfinity();
+            continue;
+         }
+         BigInteger zInv = inverse.multiply(prefix[i]).mod(p);
+         inverse = inverse.multiply(R[2]).mod(p);
+         BigInteger zInv2 = zInv.multiply(zInv).mod(p);
+         BigInteger x = R[0].multiply(zInv2).mod(p);
+         BigInteger y = R[1].multiply(zInv2).mod(p).multiply(zInv).mod(p);
+         result[i] = new Point(Parameters.curve, new FieldElement(p, x), new FieldElement(p, y));
+      }
+      return result;
+   }
+
+   /**
+    * Jacobian coordinates {X, Y, Z} represent the affine point (X / Z^2, Y /
+    * Z^3). Z = 0 is the point at infinity.
+    */
+   private static final BigInteger[] JACOBIAN_INFINITY = { BigInteger.ONE, BigInteger.ONE, BigInteger.ZERO };
+
+   private static BigInteger[] toJacobian(Point a) {
+      if (a.isInfinity()) {
+         return JACOBIAN_INFINITY;
+      }
+      return new BigInteger[] { a.getX().toBigInteger(), a.getY().toBigInteger(), BigInteger.ONE };
+   }
+
+   /**
+    * Add an affine point to a point in Jacobian coordinates, for a curve with
+    * a = 0
+    */
+   private static BigInteger[] addMixed(BigInteger[] a, Point b, BigInteger p) {
+      if (a[2].signum() == 0) {
+         return toJacobian(b);
+      }
+      BigInteger x2 = b.getX().toBigInteger();
+      BigInteger y2 = b.getY().toBigInteger();
+      BigInteger z1z1 = a[2].multiply(a[2]).mod(p);
+      BigInteger u2 = x2.multiply(z1z1).mod(p);
+      BigInteger s2 = y2.multiply(a[2]).mod(p).multiply(z1z1).mod(p);
+      BigInteger h = u2.subtract(a[0]).mod(p);
+      BigInteger r = s2.subtract(a[1]).mod(p);
+      if (h.signum() == 0) {
+         // Same x coordinate, so either the same point or its negation
+         return r.signum() == 0 ? twiceJacobian(a, p) : JACOBIAN_INFINITY;
+      }
+      BigInteger hh = h.multiply(h).mod(p);
+      BigInteger hhh = h.multiply(hh).mod(p);
+      BigInteger v = a[0].multiply(hh).mod(p);
+      BigInteger x3 = r.multiply(r).subtract(hhh).subtract(v.shiftLeft(1)).mod(p);
+      BigInteger y3 = r.multiply(v.subtract(x3)).subtract(a[1].multiply(hhh)).mod(p);
+      BigInteger z3 = a[2].multiply(h).mod(p);
+      return new BigInteger[] { x3, y3, z3 };
+   }
+
+   /**
+    * Double a point in Jacobian coordinates, for a curve with a = 0
+    */
+   private static BigInteger[] twiceJacobian(BigInteger[] a, BigInteger p) {
+      if (a[2].signum() == 0 || a[1].signum() == 0) {
+         return JACOBIAN_INFINITY;
+      }
+      BigInteger xx = a[0].multiply(a[0]).mod(p);
+      BigInteger yy = a[1].multiply(a[1]).mod(p);
+      BigInteger yyyy = yy.multiply(yy).mod(p);
+      BigInteger xPlusYy = a[0].add(yy);
+      BigInteger d = xPlusYy.multiply(xPlusYy).subtract(xx).subtract(yyyy).shiftLeft(1).mod(p);
+      BigInteger e = xx.multiply(BigInteger.valueOf(3)).mod(p);
+      BigInteger x3 = e.multiply(e).subtract(d.shiftLeft(1)).mod(p);
+      BigInteger y3 = e.multiply(d.subtract(x3)).subtract(yyyy.shiftLeft(3)).mod(p);
+      BigInteger z3 = a[1].multiply(a[2]).shiftLeft(1).mod(p);
+      return new BigInteger[] { x3, y3, z3 };
+   }
+
+   /**
+    * TABLE[i][j] is j * 16^i * G. Built on first use.
+    */
+   private static class GTable {
+      private static final int WINDOW_BITS = 4;
+      private static final int WINDOWS = 64;
+      private static final Point[][] TABLE = build();
+
+      private static Point[][] build() {
+         Point[][] table = new Point[WINDOWS][1 << WINDOW_BITS];
+         Point base = Parameters.G;
+         for (int i = 0; i < WINDOWS; i++) {
+            table[i][1] = base;
+            for (int j = 2; j < table[i].length; j++) {
+               table[i][j] = table[i][j - 1].add(base);
+            }
+            base = table[i][table[i].length - 1].add(base);
+         }
+         return table;
+      }
+   }
+
    public static Point sumOfTwoMultiplies(Point P, BigInteger k, Point Q, BigInteger l) {
+      long start = Metrics.start();
       int m = Math.max(k.bitLength(), l.bitLength());
       Point Z = P.add(Q);
       Point R = P.getCurve().getInfinity();
@@ -101,6 +271,7 @@ public class EcTools {
          }
       }
 
+      Metrics.stop(Operation.EC_MULTIPLY, start);
       return R;
    }
 
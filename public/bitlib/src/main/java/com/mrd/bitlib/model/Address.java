@@ -17,20 +17,27 @@
 package com.mrd.bitlib.model;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.bitcoinj.Base58;
 
 import com.mrd.bitlib.util.BitUtils;
-import com.mrd.bitlib.util.HashUtils;
-import com.mrd.bitlib.util.Sha256Hash;
 
 public class Address implements Serializable, Comparable<Address> {
 
    private static final long serialVersionUID = 1L;
    public static final int NUM_ADDRESS_BYTES = 21;
+   private static final int CHECKSUM_LENGTH = 4;
+   private static final int MIN_LINES_PER_THREAD = 2000;
    private byte[] _bytes;
    private String _address;
 
@@ -62,6 +69,188 @@ public class Address implements Serializable, Comparable<Address> {
       return addressStrings;
    }
 
+   /**
+    * Reasons why a line passed to {@link #parseAll} did not yield an address
+    */
+   public enum ParseError {
+      EMPTY, INVALID_CHARACTER, INVALID_LENGTH, INVALID_CHECKSUM, WRONG_NETWORK
+   }
+
+   /**
+    * The outcome of {@link #parseAll}, with one address or one error for each input line
+    */
+   public static class ParseResult {
+      private final Address[] _addresses;
+      private final ParseError[] _errors;
+      private int _errorCount;
+
+      private ParseResult(int size) {
+         _addresses = new Address[size];
+         _errors = new ParseError[size];
+      }
+
+      public int size() {
+         return _addresses.length;
+      }
+
+      /**
+       * @return the address parsed from the given line, or null if the line was rejected
+       */
+      public Address getAddress(int line) {
+         return _addresses[line];
+      }
+
+      /**
+       * @return the reason the given line was rejected, or null if it was parsed
+       */
+      public ParseError getError(int line) {
+         return _errors[line];
+      }
+
+      public int getErrorCount() {
+         return _errorCount;
+      }
+
+      /**
+       * @return the successfully parsed addresses in input order
+       */
+      public List<Address> getAddresses() {
+         List<Address> list = new ArrayList<Address>(_addresses.length - _errorCount);
+         for (Address address : _addresses) {
+            if (address != null) {
+               list.add(address);
+            }
+         }
+         return list;
+      }
+
+      private void parse(List<? extends CharSequence> lines, int from, int to, NetworkParameters network) {
+         // one decode buffer for the whole range
+         byte[] buffer = new byte[NUM_ADDRESS_BYTES + CHECKSUM_LENGTH];
+         for (int i = from; i < to; i++) {
+            _errors[i] = parseLine(lines.get(i), network, buffer, i);
+         }
+      }
+
+      private ParseError parseLine(CharSequence line, NetworkParameters network, byte[] buffer, int index) {
+         if (line == null) {
+            return ParseError.EMPTY;
+         }
+         int start = 0;
+         int end = line.length();
+         while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+         }
+         while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+         }
+         if (start == end) {
+            return ParseError.EMPTY;
+         }
+         CharSequence trimmed = start == 0 && end == line.length() ? line : line.subSequence(start, end);
+         switch (Base58.decodeChecked(trimmed, buffer)) {
+            case Base58.DECODE_OK:
+               break;
+            case Base58.DECODE_INVALID_CHARACTER:
+               return ParseError.INVALID_CHARACTER;
+            case Base58.DECODE_INVALID_CHECKSUM:
+               return ParseError.INVALID_CHECKSUM;
+            default:
+               return ParseError.INVALID_LENGTH;
+         }
+         byte version = buffer[0];
+         if (((byte) (network.getStandardAddressHeader() & 0xFF)) != version
+               && ((byte) (network.getMultisigAddressHeader() & 0xFF)) != version) {
+            return ParseError.WRONG_NETWORK;
+         }
+         byte[] bytes = new byte[NUM_ADDRESS_BYTES];
+         System.arraycopy(buffer, 0, bytes, 0, NUM_ADDRESS_BYTES);
+         _addresses[index] = new Address(bytes, trimmed.toString());
+         return null;
+      }
+
+      private void countErrors() {
+         for (ParseError error : _errors) {
+            if (error != null) {
+               _errorCount++;
+            }
+         }
+      }
+   }
+
+   /**
+    * Parse and validate many addresses at once, for instance the lines of a payout file. Invalid lines are reported
+    * per line in the result instead of failing the whole batch. Surrounding whitespace on a line is ignored.
+    * <p>
+    * Large inputs are split across a temporary thread pool with one thread per processor.
+    */
+   public static ParseResult parseAll(Iterable<? extends CharSequence> lines, NetworkParameters network) {
+      List<CharSequence> list = toList(lines);
+      int threads = Math.min(Runtime.getRuntime().availableProcessors(), list.size() / MIN_LINES_PER_THREAD);
+      if (threads <= 1) {
+         return parseAll(list, network, null, 1);
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         return parseAll(list, network, executor, threads);
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   /**
+    * Like {@link #parseAll(Iterable, NetworkParameters)}, but runs on the given executor, splitting the input into
+    * as many parts as the given parallelism
+    */
+   public static ParseResult parseAll(Iterable<? extends CharSequence> lines, NetworkParameters network,
+         ExecutorService executor, int parallelism) {
+      final List<CharSequence> list = toList(lines);
+      final ParseResult result = new ParseResult(list.size());
+      final NetworkParameters net = network;
+      int parts = Math.max(1, Math.min(parallelism, list.size() / MIN_LINES_PER_THREAD));
+      if (executor == null || parts == 1) {
+         result.parse(list, 0, list.size(), net);
+      } else {
+         List<Future<Void>> futures = new ArrayList<Future<Void>>(parts);
+         int partSize = (list.size() + parts - 1) / parts;
+         for (int from = 0; from < list.size(); from += partSize) {
+            final int start = from;
+            final int end = Math.min(list.size(), from + partSize);
+            futures.add(executor.submit(new Callable<Void>() {
+               @Override
+               public Void call() {
+                  result.parse(list, start, end, net);
+                  return null;
+               }
+            }));
+         }
+         try {
+            for (Future<Void> future : futures) {
+               future.get();
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+         } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+         }
+      }
+      result.countErrors();
+      return result;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static List<CharSequence> toList(Iterable<? extends CharSequence> lines) {
+      if (lines instanceof List && lines instanceof RandomAccess) {
+         return (List<CharSequence>) lines;
+      }
+      List<CharSequence> list = new ArrayList<CharSequence>();
+      for (CharSequence line : lines) {
+         list.add(line);
+      }
+      return list;
+   }
+
    public static Address fromString(String address, NetworkParameters network) {
       Address addr = Address.fromString(address);
       if (addr == null) {
@@ -80,8 +269,8 @@ public class Address implements Serializable, Comparable<Address> {
       if (address.length() == 0) {
          return null;
       }
-      byte[] bytes = Base58.decodeChecked(address);
-      if (bytes == null || bytes.length != NUM_ADDRESS_BYTES) {
+      byte[] bytes = Base58.decodeChecked(address, NUM_ADDRESS_BYTES);
+      if (bytes == null) {
          return null;
       }
       return new Address(bytes);
@@ -174,12 +363,7 @@ public class Address implements Serializable, Comparable<Address> {
    @Override
    public String toString() {
       if (_address == null) {
-         byte[] addressBytes = new byte[1 + 20 + 4];
-         addressBytes[0] = _bytes[0];
-         System.arraycopy(_bytes, 0, addressBytes, 0, NUM_ADDRESS_BYTES);
-         Sha256Hash checkSum = HashUtils.doubleSha256(addressBytes, 0, NUM_ADDRESS_BYTES);
-         System.arraycopy(checkSum.getBytes(), 0, addressBytes, NUM_ADDRESS_BYTES, 4);
-         _address = Base58.encode(addressBytes);
+         _address = Base58.encodeWithChecksum(_bytes);
       }
       return _address;
    }
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.model;
+
+import com.mrd.bitlib.crypto.PublicKey;
+import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.HashUtils;
+
+/**
+ * A BIP37 bloom filter over the data pushed by transaction scripts, such as
+ * the hash160 of wallet addresses, public keys and serialized outpoints.
+ * <p>
+ * Transactions are matched directly on their serialized form, only the
+ * positions of the scripts are parsed. Matching may insert the outpoints of
+ * matching outputs as selected by the {@link Update} flags, so an instance
+ * that is used for matching must not be shared between threads.
+ */
+public class BloomFilter {
+
+   /**
+    * The largest filter in bytes that peers accept
+    */
+   public static final int MAX_FILTER_SIZE = 36000;
+
+   /**
+    * The largest number of hash functions that peers accept
+    */
+   public static final int MAX_HASH_FUNCTIONS = 50;
+
+   private static final double LN2 = Math.log(2);
+   private static final int OUTPOINT_LENGTH = 36;
+
+   /**
+    * What to insert into the filter when an output matches
+    */
+   public enum Update {
+      /**
+       * Never insert anything
+       */
+      NONE,
+      /**
+       * Insert the outpoint of every matching output
+       */
+      ALL,
+      /**
+       * Insert the outpoint of matching pay-to-pubkey and multisig outputs
+       */
+      P2PUBKEY_ONLY
+   }
+
+   private final byte[] _data;
+   private final int _hashFunctions;
+   private final int _tweak;
+   private final Update _update;
+
+   /**
+    * Create a filter sized for the given number of elements and false
+    * positive rate
+    * 
+    * @param elements
+    *           the number of elements that will be inserted
+    * @param falsePositiveRate
+    *           the desired false positive rate between 0 and 1
+    * @param tweak
+    *           a random value that makes the filter differ from those of other
+    *           wallets with the same elements
+    * @param update
+    *           what to insert when an output matches
+    */
+   public BloomFilter(int elements, double falsePositiveRate, int tweak, Update update) {
+      _data = new byte[optimalSize(elements, falsePositiveRate)];
+      _hashFunctions = optimalHashFunctions(_data.length, elements);
+      _tweak = tweak;
+      _update = update;
+   }
+
+   private BloomFilter(byte[] data, int hashFunctions, int tweak, Update update) {
+      _data = data;
+      _hashFunctions = hashFunctions;
+      _tweak = tweak;
+      _update = update;
+   }
+
+   /**
+    * @return the size in bytes of a filter with the given false positive rate
+    *         for the given number of elements, at most
+    *         {@link #MAX_FILTER_SIZE}
+    */
+   public static int optimalSize(int elements, double falsePositiveRate) {
+      double bits = -1 / (LN2 * LN2) * Math.max(elements, 1) * Math.log(falsePositiveRate);
+      return (int) Math.max(1, Math.min(bits / 8, MAX_FILTER_SIZE));
+   }
+
+   /**
+    * @return the number of hash functions that minimize the false positive
+    *         rate of a filter of the given size with the given number of
+    *         elements, at most {@link #MAX_HASH_FUNCTIONS}
+    */
+   public static int optimalHashFunctions(int size, int elements) {
+      double functions = size * 8 / Math.max(elements, 1) * LN2;
+      return (int) Math.max(1, Math.min(functions, MAX_HASH_FUNCTIONS));
+   }
+
+   /**
+    * @return the expected false positive rate once the given number of
+    *         elements have been inserted
+    */
+   public double getFalsePositiveRate(int elements) {
+      double bits = _data.length * 8.0;
+      return Math.pow(1 - Math.exp(-_hashFunctions * elements / bits), _hashFunctions);
+   }
+
+   public int getHashFunctions() {
+      return _hashFunctions;
+   }
+
+   public int getTweak() {
+      return _tweak;
+   }
+
+   public Update getUpdate() {
+      return _update;
+   }
+
+   public void insert(byte[] data) {
+      insert(data, 0, data.length);
+   }
+
+   public void insert(byte[] data, int offset, int length) {
+      int bits = _data.length * 8;
+      for (int i = 0; i < _hashFunctions; i++) {
+         int bit = bitIndex(i, data, offset, length, bits);
+         _data[bit >>> 3] |= 1 << (bit & 7);
+      }
+   }
+
+   public boolean contains(byte[] data) {
+      return contains(data, 0, data.length);
+   }
+
+   public boolean contains(byte[] data, int offset, int length) {
+      int bits = _data.length * 8;
+      for (int i = 0; i < _hashFunctions; i++) {
+         int bit = bitIndex(i, data, offset, length, bits);
+         if ((_data[bit >>> 3] & (1 << (bit & 7))) == 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Insert the hash160 of the address, which is what pay-to-address and
+    * pay-to-script-hash outputs push
+    */
+   public void insert(Address address) {
+      insert(address.getTypeSpecificBytes());
+   }
+
+   public boolean contains(Address address) {
+      return contains(address.getTypeSpecificBytes());
+   }
+
+   /**
+    * Insert the public key and its hash160, so that both the outputs paying
+    * to the key and the inputs signed by it match
+    */
+   public void insert(PublicKey publicKey) {
+      insert(publicKey.getPublicKeyBytes());
+      insert(publicKey.getPublicKeyHash());
+   }
+
+   public void insert(OutPoint outPoint) {
+      insert(serialize(outPoint));
+   }
+
+   public boolean contains(OutPoint outPoint) {
+      return contains(serialize(outPoint));
+   }
+
+   /**
+    * @return the outpoint as it appears in a serialized transaction input
+    */
+   private static byte[] serialize(OutPoint outPoint) {
+      ByteWriter writer = new ByteWriter(OUTPOINT_LENGTH);
+      writer.putSha256Hash(outPoint.hash, true);
+      writer.putIntLE(outPoint.index);
+      return writer.toBytes();
+   }
+
+   /**
+    * Determine whether a transaction is relevant to this filter, updating
+    * the filter as selected by its {@link Update} flags.
+    */
+   public boolean isRelevant(Transaction transaction) {
+      try {
+         return isRelevant(transaction.toBytes());
+      } catch (TransactionParsingException e) {
+         // A transaction we serialized ourselves is well formed
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * Determine whether a serialized transaction is relevant to this filter
+    * without parsing it. As in BIP37 it is relevant if
+    * <ul>
+    * <li>its id is in the filter,</li>
+    * <li>any data pushed by an output script is in the filter, or</li>
+    * <li>the outpoint or any data pushed by the script of an input is in the
+    * filter.</li>
+    * </ul>
+    * The outpoints of matching outputs are inserted as selected by the
+    * {@link Update} flags.
+    */
+   public boolean isRelevant(byte[] transaction) throws TransactionParsingException {
+      try {
+         byte[] id = HashUtils.doubleSha256(transaction).getBytes();
+         boolean relevant = contains(id);
+         if (relevant && _update == Update.NONE) {
+            return true;
+         }
+
+         ByteReader reader = new ByteReader(transaction);
+         reader.skip(4);
+         int inputCount = (int) reader.getCompactInt();
+         int inputsStart = reader.getPosition();
+         for (int i = 0; i < inputCount; i++) {
+            reader.skip(OUTPOINT_LENGTH);
+            reader.skip((int) reader.getCompactInt());
+            reader.skip(4);
+         }
+
+         int outputCount = (int) reader.getCompactInt();
+         for (int i = 0; i < outputCount; i++) {
+            reader.skip(8);
+            int scriptLength = (int) reader.getCompactInt();
+            int scriptStart = reader.getPosition();
+            reader.skip(scriptLength);
+            if (!pushesFilteredData(transaction, scriptStart, scriptLength)) {
+               continue;
+            }
+            relevant = true;
+            if (_update == Update.ALL
+                  || (_update == Update.P2PUBKEY_ONLY && isPayToPubkeyOrMultisig(transaction, scriptStart,
+                        scriptLength))) {
+               ByteWriter writer = new ByteWriter(OUTPOINT_LENGTH);
+               writer.putBytes(id);
+               writer.putIntLE(i);
+               insert(writer.toBytes());
+            } else if (_update == Update.NONE) {
+               return true;
+            }
+         }
+         if (relevant) {
+            return true;
+         }
+
+         reader.setPosition(inputsStart);
+         for (int i = 0; i < inputCount; i++) {
+            if (contains(transaction, reader.getPosition(), OUTPOINT_LENGTH)) {
+               return true;
+            }
+            reader.skip(OUTPOINT_LENGTH);
+            int scriptLength = (int) reader.getCompactInt();
+            if (pushesFilteredData(transaction, reader.getPosition(), scriptLength)) {
+               return true;
+            }
+            reader.skip(scriptLength);
+            reader.skip(4);
+         }
+         return false;
+      } catch (InsufficientBytesException e) {
+         throw new TransactionParsingException("Unable to scan transaction: " + e.getMessage());
+      }
+   }
+
+   /**
+    * @return true if the script pushes data that is in the filter. A
+    *         malformed push ends the script.
+    */
+   private boolean pushesFilteredData(byte[] script, int offset, int length) {
+      int end = offset + length;
+      int pos = offset;
+      while (pos < end) {
+         int opcode = script[pos++] & 0xFF;
+         int size;
+         if (opcode < Script.OP_PUSHDATA1) {
+            size = opcode;
+         } else if (opcode == Script.OP_PUSHDATA1) {
+            if (end - pos < 1) {
+               return false;
+            }
+            size = script[pos] & 0xFF;
+            pos += 1;
+         } else if (opcode == Script.OP_PUSHDATA2) {
+            if (end - pos < 2) {
+               return false;
+            }
+            size = (script[pos] & 0xFF) | (script[pos + 1] & 0xFF) << 8;
+            pos += 2;
+         } else if (opcode == Script.OP_PUSHDATA4) {
+            if (end - pos < 4) {
+               return false;
+            }
+            size = (script[pos] & 0xFF) | (script[pos + 1] & 0xFF) << 8 | (script[pos + 2] & 0xFF) << 16
+                  | script[pos + 3] << 24;
+            pos += 4;
+         } else {
+            continue;
+         }
+         if (size < 0 || size > end - pos) {
+            return false;
+         }
+         if (size > 0 && contains(script, pos, size)) {
+            return true;
+         }
+         pos += size;
+      }
+      return false;
+   }
+
+   private static boolean isPayToPubkeyOrMultisig(byte[] script, int offset, int length) {
+      if (length == 0) {
+         return false;
+      }
+      int first = script[offset] & 0xFF;
+      int last = script[offset + length - 1] & 0xFF;
+      if (last == Script.OP_CHECKSIG) {
+         return (length == 35 && first == 33) || (length == 67 && first == 65);
+      }
+      return last == Script.OP_CHECKMULTISIG && first >= Script.OP_TRUE && first <= Script.OP_16;
+   }
+
+   private int bitIndex(int hashNumber, byte[] data, int offset, int length, int bits) {
+      int hash = murmurHash3(hashNumber * 0xFBA4C795 + _tweak, data, offset, length);
+      return (int) ((hash & 0xFFFFFFFFL) % bits);
+   }
+
+   /**
+    * The 32 bit MurmurHash3 of x86 platforms
+    */
+   @SuppressWarnings("fallthrough")
+   static int murmurHash3(int seed, byte[] data, int offset, int length) {
+      final int c1 = 0xcc9e2d51;
+      final int c2 = 0x1b873593;
+      int h1 = seed;
+      int blocksEnd = offset + (length & ~3);
+      for (int i = offset; i < blocksEnd; i += 4) {
+         int k1 = (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF) << 16 | data[i + 3] << 24;
+         k1 *= c1;
+         k1 = Integer.rotateLeft(k1, 15);
+         k1 *= c2;
+         h1 ^= k1;
+         h1 = Integer.rotateLeft(h1, 13);
+         h1 = h1 * 5 + 0xe6546b64;
+      }
+      int k1 = 0;
+      switch (length & 3) {
+      case 3:
+         k1 ^= (data[blocksEnd + 2] & 0xFF) << 16;
+         // fall through
+      case 2:
+         k1 ^= (data[blocksEnd + 1] & 0xFF) << 8;
+         // fall through
+      case 1:
+         k1 ^= data[blocksEnd] & 0xFF;
+         k1 *= c1;
+         k1 = Integer.rotateLeft(k1, 15);
+         k1 *= c2;
+         h1 ^= k1;
+         break;
+      default:
+         break;
+      }
+      h1 ^= length;
+      h1 ^= h1 >>> 16;
+      h1 *= 0x85ebca6b;
+      h1 ^= h1 >>> 13;
+      h1 *= 0xc2b2ae35;
+      h1 ^= h1 >>> 16;
+      return h1;
+   }
+
+   /**
+    * Serialize the filter as the payload of a filterload message
+    */
+   public byte[] toBytes() {
+      ByteWriter writer = new ByteWriter(_data.length + 18);
+      writer.putCompactInt(_data.length);
+      writer.putBytes(_data);
+      writer.putIntLE(_hashFunctions);
+      writer.putIntLE(_tweak);
+      writer.put((byte) _update.ordinal());
+      return writer.toBytes();
+   }
+
+   public static BloomFilter fromByteReader(ByteReader reader) throws InsufficientBytesException {
+      int size = (int) reader.getCompactInt();
+      if (size < 0 || size > MAX_FILTER_SIZE) {
+         throw new IllegalArgumentException("Invalid bloom filter size: " + size);
+      }
+      byte[] data = reader.getBytes(size);
+      int hashFunctions = reader.getIntLE();
+      if (hashFunctions < 1 || hashFunctions > MAX_HASH_FUNCTIONS) {
+         throw new IllegalArgumentException("Invalid number of hash functions: " + hashFunctions);
+      }
+      int tweak = reader.getIntLE();
+      int flags = reader.get() & 0xFF;
+      if (flags >= Update.values().length) {
+         throw new IllegalArgumentException("Invalid bloom filter flags: " + flags);
+      }
+      return new BloomFilter(data, hashFunctions, tweak, Update.values()[flags]);
+   }
+
+}
@@ -20,8 +20,6 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.mrd.bitlib.util.ByteReader;
-import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
 import com.mrd.bitlib.util.HexUtils;
 
 public abstract class Script implements Serializable {
@@ -48,6 +46,7 @@ public abstract class Script implements Serializable {
    public static final int OP_TRUE = 81;
    public static final int OP_2 = 82;
    public static final int OP_3 = 83;
+   public static final int OP_16 = 96;
    public static final int OP_NOP = 97;
    public static final int OP_IF = 99;
    public static final int OP_VERIFY = 105;
@@ -117,84 +116,11 @@ public abstract class Script implements Serializable {
    }
 
    protected static final byte[][] chunksFromScriptBytes(byte[] script) throws ScriptParsingException {
-      try {
-         ByteReader reader = new ByteReader(script);
-         int numChunks = countChuks(reader);
-         if (numChunks == -1) {
-            throw new ScriptParsingException(script);
-         }
-         byte[][] chunks = new byte[numChunks][];
-         int index = 0;
-         reader.reset();
-         while (reader.available() > 0) {
-
-            // Get opcode
-            int opcode = reader.get();
-            if (opcode >= 0xF0) {
-               opcode = (opcode << 8) | reader.get();
-            }
-
-            if (opcode > 0 && opcode < OP_PUSHDATA1) {
-               chunks[index++] = reader.getBytes(opcode);
-            } else if (opcode == OP_PUSHDATA1) {
-               int size = ((int) reader.get()) & 0xFF;
-               chunks[index++] = reader.getBytes(size);
-            } else if (opcode == OP_PUSHDATA2) {
-               int size = reader.getShortLE();
-               chunks[index++] = reader.getBytes(size);
-            } else if (opcode == OP_PUSHDATA4) {
-               int size = reader.getIntLE();
-               if (size < 0) {
-                  // We do not support chunks larger than what we can hold in a
-                  // signed integer
-                  throw new ScriptParsingException(script);
-               }
-               chunks[index++] = reader.getBytes(size);
-            } else {
-               chunks[index++] = new byte[] { (byte) opcode };
-            }
-         }
-         return chunks;
-      } catch (InsufficientBytesException e) {
+      ScriptTokens tokens = ScriptTokens.tokenize(script);
+      if (tokens == null) {
          throw new ScriptParsingException(script);
       }
-   }
-
-   private static int countChuks(ByteReader reader) throws InsufficientBytesException {
-      int chunks = 0;
-      while (reader.available() > 0) {
-
-         // Get opcode
-         int opcode = reader.get();
-         if (opcode >= 0xF0) {
-            opcode = (opcode << 8) | reader.get();
-         }
-
-         if (opcode > 0 && opcode < OP_PUSHDATA1) {
-            chunks++;
-            reader.skip(opcode);
-         } else if (opcode == OP_PUSHDATA1) {
-            int size = ((int) reader.get()) & 0xFF;
-            chunks++;
-            reader.skip(size);
-         } else if (opcode == OP_PUSHDATA2) {
-            int size = reader.getShortLE();
-            chunks++;
-            reader.skip(size);
-         } else if (opcode == OP_PUSHDATA4) {
-            int size = reader.getIntLE();
-            if (size < 0) {
-               // The size is larger than what we can handle in a signed integer
-               // We do not support chunks this big
-               return -1;
-            }
-            chunks++;
-            reader.skip(size);
-         } else {
-            chunks++;
-         }
-      }
-      return chunks;
+      return tokens.toChunks();
    }
 
    public String dump(int maxLen) {
@@ -20,29 +20,40 @@ public abstract class ScriptOutput extends Script {
    private static final long serialVersionUID = 1L;
 
    public static ScriptOutput fromScriptBytes(byte[] scriptBytes) {
-      byte[][] chunks;
-      try {
-         chunks = Script.chunksFromScriptBytes(scriptBytes);
-      } catch (ScriptParsingException e) {
-         return new ScriptOutputError(scriptBytes);
+      // Almost all outputs use the canonical encoding of a template, match those on the raw bytes
+      if (ScriptOutputStandard.isScriptOutputStandard(scriptBytes)) {
+         return new ScriptOutputStandard(scriptBytes, copyOfRange(scriptBytes, 3, 20));
+      } else if (ScriptOutputMultisig.isScriptOutputMultisig(scriptBytes)) {
+         return new ScriptOutputMultisig(scriptBytes, copyOfRange(scriptBytes, 2, 20));
+      } else if (ScriptOutputPubkey.isScriptOutputPubkey(scriptBytes)) {
+         return new ScriptOutputPubkey(scriptBytes, copyOfRange(scriptBytes, 1, scriptBytes.length - 2));
       }
-      if (chunks == null) {
-         return null;
+
+      // Fall back to matching the templates on the chunks of the script
+      ScriptTokens tokens = ScriptTokens.tokenize(scriptBytes);
+      if (tokens == null) {
+         return new ScriptOutputError(scriptBytes);
       }
-      if (ScriptOutputStandard.isScriptOutputStandard(chunks)) {
-         return new ScriptOutputStandard(chunks, scriptBytes);
-      } else if (ScriptOutputPubkey.isScriptOutputPubkey(chunks)) {
-         return new ScriptOutputPubkey(chunks, scriptBytes);
-      } else if (ScriptOutputMultisig.isScriptOutputMultisig(chunks)) {
-         return new ScriptOutputMultisig(chunks, scriptBytes);
-      } else if (ScriptOutputMsg.isScriptOutputMsg(chunks)) {
-         return new ScriptOutputMsg(chunks, scriptBytes);
+      if (ScriptOutputStandard.isScriptOutputStandard(tokens)) {
+         return new ScriptOutputStandard(scriptBytes, tokens.chunk(2));
+      } else if (ScriptOutputPubkey.isScriptOutputPubkey(tokens)) {
+         return new ScriptOutputPubkey(scriptBytes, tokens.chunk(0));
+      } else if (ScriptOutputMultisig.isScriptOutputMultisig(tokens)) {
+         return new ScriptOutputMultisig(scriptBytes, tokens.chunk(1));
+      } else if (ScriptOutputMsg.isScriptOutputMsg(tokens)) {
+         return new ScriptOutputMsg(scriptBytes, tokens.chunk(0), tokens.chunk(2));
       } else {
-         return new ScriptOutputStrange(chunks, scriptBytes);
+         return new ScriptOutputStrange(scriptBytes);
       }
 
    }
 
+   private static byte[] copyOfRange(byte[] bytes, int offset, int length) {
+      byte[] copy = new byte[length];
+      System.arraycopy(bytes, offset, copy, 0, length);
+      return copy;
+   }
+
    protected ScriptOutput(byte[] scriptBytes) {
       super(scriptBytes, false);
    }
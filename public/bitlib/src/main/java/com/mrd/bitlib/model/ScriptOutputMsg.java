@@ -27,20 +27,20 @@ public class ScriptOutputMsg extends ScriptOutput implements Serializable {
    private byte[] _messageBytes;
    private byte[] _publicKeyBytes;
 
-   protected ScriptOutputMsg(byte[][] chunks, byte[] scriptBytes) {
+   protected ScriptOutputMsg(byte[] scriptBytes, byte[] messageBytes, byte[] publicKeyBytes) {
       super(scriptBytes);
-      _messageBytes = chunks[0];
-      _publicKeyBytes = chunks[2];
+      _messageBytes = messageBytes;
+      _publicKeyBytes = publicKeyBytes;
    }
 
-   protected static boolean isScriptOutputMsg(byte[][] chunks) {
-      if (chunks.length != 4) {
+   static boolean isScriptOutputMsg(ScriptTokens tokens) {
+      if (tokens.count() != 4) {
          return false;
       }
-      if (!Script.isOP(chunks[1], OP_DROP)) {
+      if (!tokens.isOP(1, OP_DROP)) {
          return false;
       }
-      if (!Script.isOP(chunks[3], OP_CHECKSIG)) {
+      if (!tokens.isOP(3, OP_CHECKSIG)) {
          return false;
       }
       return true;
@@ -21,24 +21,33 @@ import java.io.Serializable;
 public class ScriptOutputMultisig extends ScriptOutput implements Serializable {
    private static final long serialVersionUID = 1L;
 
-   protected ScriptOutputMultisig(byte[][] chunks, byte[] scriptBytes) {
+   protected ScriptOutputMultisig(byte[] scriptBytes, byte[] multisigAddressBytes) {
       super(scriptBytes);
-      _multisigAddressBytes = chunks[1];
+      _multisigAddressBytes = multisigAddressBytes;
    }
 
    private byte[] _multisigAddressBytes;
 
-   protected static boolean isScriptOutputMultisig(byte[][] chunks) {
-      if (chunks.length != 3) {
+   /**
+    * Match the canonical P2SH encoding OP_HASH160 &lt;20 bytes&gt; OP_EQUAL directly on the script bytes. The address
+    * bytes start at offset 2.
+    */
+   protected static boolean isScriptOutputMultisig(byte[] script) {
+      return script.length == 23 && (script[0] & 0xFF) == OP_HASH160 && script[1] == 20
+            && (script[22] & 0xFF) == OP_EQUAL;
+   }
+
+   static boolean isScriptOutputMultisig(ScriptTokens tokens) {
+      if (tokens.count() != 3) {
          return false;
       }
-      if (!Script.isOP(chunks[0], OP_HASH160)) {
+      if (!tokens.isOP(0, OP_HASH160)) {
          return false;
       }
-      if (chunks[1].length != 20) {
+      if (tokens.length(1) != 20) {
          return false;
       }
-      if (!Script.isOP(chunks[2], OP_EQUAL)) {
+      if (!tokens.isOP(2, OP_EQUAL)) {
          return false;
       }
       return true;
@@ -25,16 +25,27 @@ public class ScriptOutputPubkey extends ScriptOutput implements Serializable {
 
    private byte[] _publicKeyBytes;
 
-   protected ScriptOutputPubkey(byte[][] chunks, byte[] scriptBytes) {
+   protected ScriptOutputPubkey(byte[] scriptBytes, byte[] publicKeyBytes) {
       super(scriptBytes);
-      _publicKeyBytes = chunks[0];
+      _publicKeyBytes = publicKeyBytes;
    }
 
-   protected static boolean isScriptOutputPubkey(byte[][] chunks) {
-      if (chunks.length != 2) {
+   /**
+    * Match the canonical encoding &lt;33 or 65 byte public key&gt; OP_CHECKSIG directly on the script bytes. The
+    * public key starts at offset 1.
+    */
+   protected static boolean isScriptOutputPubkey(byte[] script) {
+      if (script.length != 35 && script.length != 67) {
+         return false;
+      }
+      return (script[0] & 0xFF) == script.length - 2 && (script[script.length - 1] & 0xFF) == OP_CHECKSIG;
+   }
+
+   static boolean isScriptOutputPubkey(ScriptTokens tokens) {
+      if (tokens.count() != 2) {
          return false;
       }
-      if (!Script.isOP(chunks[1], OP_CHECKSIG)) {
+      if (!tokens.isOP(1, OP_CHECKSIG)) {
          return false;
       }
       return true;
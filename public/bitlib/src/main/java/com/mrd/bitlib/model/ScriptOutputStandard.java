@@ -23,31 +23,52 @@ public class ScriptOutputStandard extends ScriptOutput implements Serializable {
 
    private byte[] _addressBytes;
 
-   protected ScriptOutputStandard(byte[][] chunks, byte[] scriptBytes) {
+   protected ScriptOutputStandard(byte[] scriptBytes, byte[] addressBytes) {
       super(scriptBytes);
-      _addressBytes = chunks[2];
+      _addressBytes = addressBytes;
+   }
+
+   /**
+    * Match the canonical encoding OP_DUP OP_HASH160 &lt;20 bytes&gt; OP_EQUALVERIFY OP_CHECKSIG [OP_NOP] directly on
+    * the script bytes. The address bytes start at offset 3.
+    */
+   protected static boolean isScriptOutputStandard(byte[] script) {
+      if (script.length != 25 && script.length != 26) {
+         return false;
+      }
+      if ((script[0] & 0xFF) != OP_DUP || (script[1] & 0xFF) != OP_HASH160 || script[2] != 20) {
+         return false;
+      }
+      if ((script[23] & 0xFF) != OP_EQUALVERIFY || (script[24] & 0xFF) != OP_CHECKSIG) {
+         return false;
+      }
+      if (script.length == 26 && (script[25] & 0xFF) != OP_NOP) {
+         // Variant that has a NOP at the end
+         return false;
+      }
+      return true;
    }
 
-   protected static boolean isScriptOutputStandard(byte[][] chunks) {
-      if (chunks.length != 5 && chunks.length != 6) {
+   static boolean isScriptOutputStandard(ScriptTokens tokens) {
+      if (tokens.count() != 5 && tokens.count() != 6) {
          return false;
       }
-      if (!Script.isOP(chunks[0], OP_DUP)) {
+      if (!tokens.isOP(0, OP_DUP)) {
          return false;
       }
-      if (!Script.isOP(chunks[1], OP_HASH160)) {
+      if (!tokens.isOP(1, OP_HASH160)) {
          return false;
       }
-      if (chunks[2].length != 20) {
+      if (tokens.length(2) != 20) {
          return false;
       }
-      if (!Script.isOP(chunks[3], OP_EQUALVERIFY)) {
+      if (!tokens.isOP(3, OP_EQUALVERIFY)) {
          return false;
       }
-      if (!Script.isOP(chunks[4], OP_CHECKSIG)) {
+      if (!tokens.isOP(4, OP_CHECKSIG)) {
          return false;
       }
-      if (chunks.length == 6 && !Script.isOP(chunks[5], OP_NOP)) {
+      if (tokens.count() == 6 && !tokens.isOP(5, OP_NOP)) {
          // Variant that has a NOP at the end
          return false;
       }
@@ -24,7 +24,7 @@ import java.io.Serializable;
 public class ScriptOutputStrange extends ScriptOutput implements Serializable {
    private static final long serialVersionUID = 1L;
 
-   protected ScriptOutputStrange(byte[][] chunks, byte[] scriptBytes) {
+   protected ScriptOutputStrange(byte[] scriptBytes) {
       super(scriptBytes);
    }
 
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.model;
+
+/**
+ * The chunks of a script recorded as positions into the script bytes, produced in a single pass without copying
+ * any pushed data.
+ * <p>
+ * Chunk i is the range [offset(i), offset(i) + length(i)) of the script. For push operations this is the pushed
+ * data, for all other operations it is the single opcode byte. This mirrors the byte[][] chunks produced by
+ * {@link Script#chunksFromScriptBytes(byte[])}, including the fact that a one byte push compares equal to an opcode
+ * with the same value.
+ */
+final class ScriptTokens {
+
+   private final byte[] _script;
+   private int[] _offsets;
+   private int[] _lengths;
+   private int _count;
+
+   private ScriptTokens(byte[] script) {
+      _script = script;
+      int capacity = Math.max(4, Math.min(script.length, 16));
+      _offsets = new int[capacity];
+      _lengths = new int[capacity];
+   }
+
+   /**
+    * Tokenize a script.
+    * 
+    * @return the tokens, or null if the script cannot be parsed
+    */
+   static ScriptTokens tokenize(byte[] script) {
+      ScriptTokens tokens = new ScriptTokens(script);
+      int index = 0;
+      int end = script.length;
+      while (index < end) {
+         int opcode = script[index] & 0xFF;
+         int size;
+         int dataStart;
+         if (opcode > 0 && opcode < Script.OP_PUSHDATA1) {
+            size = opcode;
+            dataStart = index + 1;
+         } else if (opcode == Script.OP_PUSHDATA1) {
+            if (end - index < 2) {
+               return null;
+            }
+            size = script[index + 1] & 0xFF;
+            dataStart = index + 2;
+         } else if (opcode == Script.OP_PUSHDATA2) {
+            if (end - index < 3) {
+               return null;
+            }
+            size = (script[index + 1] & 0xFF) | ((script[index + 2] & 0xFF) << 8);
+            dataStart = index + 3;
+         } else if (opcode == Script.OP_PUSHDATA4) {
+            if (end - index < 5) {
+               return null;
+            }
+            size = (script[index + 1] & 0xFF) | ((script[index + 2] & 0xFF) << 8)
+                  | ((script[index + 3] & 0xFF) << 16) | ((script[index + 4] & 0xFF) << 24);
+            if (size < 0) {
+               // We do not support chunks larger than what we can hold in a signed integer
+               return null;
+            }
+            dataStart = index + 5;
+         } else {
+            // The chunk of a plain opcode is the opcode byte itself
+            tokens.add(index, 1);
+            index++;
+            continue;
+         }
+         if (end - dataStart < size) {
+            return null;
+         }
+         tokens.add(dataStart, size);
+         index = dataStart + size;
+      }
+      return tokens;
+   }
+
+   private void add(int offset, int length) {
+      if (_count == _offsets.length) {
+         int[] offsets = new int[_count * 2];
+         int[] lengths = new int[_count * 2];
+         System.arraycopy(_offsets, 0, offsets, 0, _count);
+         System.arraycopy(_lengths, 0, lengths, 0, _count);
+         _offsets = offsets;
+         _lengths = lengths;
+      }
+      _offsets[_count] = offset;
+      _lengths[_count] = length;
+      _count++;
+   }
+
+   int count() {
+      return _count;
+   }
+
+   int offset(int i) {
+      return _offsets[i];
+   }
+
+   int length(int i) {
+      return _lengths[i];
+   }
+
+   /**
+    * Same as {@link Script#isOP(byte[], int)} on the chunk
+    */
+   boolean isOP(int i, int op) {
+      return _lengths[i] == 1 && (_script[_offsets[i]] & 0xFF) == op;
+   }
+
+   /**
+    * @return a copy of the bytes of chunk i
+    */
+   byte[] chunk(int i) {
+      byte[] chunk = new byte[_lengths[i]];
+      System.arraycopy(_script, _offsets[i], chunk, 0, chunk.length);
+      return chunk;
+   }
+
+   byte[][] toChunks() {
+      byte[][] chunks = new byte[_count][];
+      for (int i = 0; i < _count; i++) {
+         chunks[i] = chunk(i);
+      }
+      return chunks;
+   }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.model;
+
+import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
+import com.mrd.bitlib.util.Hash160Set;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.OutPointSet;
+import com.mrd.bitlib.util.Sha256Hash;
+
+/**
+ * Finds the transactions that pay to or spend from a wallet in serialized
+ * transactions, such as those of a block, without parsing them into objects.
+ * <p>
+ * Only the positions of the inputs and outputs are parsed. The hash160 of
+ * pay-to-address and pay-to-script-hash outputs is looked up in a set of
+ * wallet address hashes, and the outpoint of every input in a set of wallet
+ * outpoints, both in place. Matches are reported to a {@link Listener} as
+ * offsets into the scanned buffer.
+ * <p>
+ * A scanner keeps buffers between scans and must not be shared between
+ * threads. The sets may be changed between scans, for instance to add the
+ * outpoints of the matching outputs of a scanned transaction.
+ */
+public class TransactionScanner {
+
+   private static final int OUTPOINT_LENGTH = 36;
+   private static final int BLOCK_HEADER_LENGTH = 80;
+
+   /**
+    * Receives the matches of a transaction once all of it has been scanned.
+    * The transaction id can be calculated with
+    * {@link TransactionScanner#transactionHash}.
+    */
+   public interface Listener {
+      /**
+       * An input spends a wallet outpoint
+       * 
+       * @param outPointOffset
+       *           the offset of the serialized outpoint of the input
+       */
+      void onInput(byte[] buffer, int transactionOffset, int transactionLength, int inputIndex, int outPointOffset);
+
+      /**
+       * An output pays to a wallet address
+       * 
+       * @param hashOffset
+       *           the offset of the 20 byte address hash in the output script
+       */
+      void onOutput(byte[] buffer, int transactionOffset, int transactionLength, int outputIndex, int hashOffset);
+   }
+
+   private final Hash160Set _addresses;
+   private final OutPointSet _outPoints;
+
+   // Index and offset of each match in the current transaction
+   private int[] _inputMatches = new int[8];
+   private int[] _outputMatches = new int[8];
+
+   /**
+    * @param addresses
+    *           the hash160 of the wallet addresses
+    * @param outPoints
+    *           the unspent outputs of the wallet, may be null to only match
+    *           outputs
+    */
+   public TransactionScanner(Hash160Set addresses, OutPointSet outPoints) {
+      _addresses = addresses;
+      _outPoints = outPoints;
+   }
+
+   /**
+    * @return the id of the serialized transaction at the given offset
+    */
+   public static Sha256Hash transactionHash(byte[] buffer, int transactionOffset, int transactionLength) {
+      return HashUtils.doubleSha256(buffer, transactionOffset, transactionLength).reverse();
+   }
+
+   /**
+    * Scan the transactions of a serialized block
+    * 
+    * @return the number of transactions with matches
+    */
+   public int scanBlock(byte[] block, Listener listener) throws TransactionParsingException {
+      try {
+         ByteReader reader = new ByteReader(block, BLOCK_HEADER_LENGTH);
+         int count = (int) reader.getCompactInt();
+         return scan(block, reader.getPosition(), count, listener);
+      } catch (InsufficientBytesException e) {
+         throw new TransactionParsingException("Unable to scan block: " + e.getMessage());
+      }
+   }
+
+   /**
+    * Scan consecutive serialized transactions
+    * 
+    * @return the number of transactions with matches
+    */
+   public int scan(byte[] buffer, int offset, int count, Listener listener) throws TransactionParsingException {
+      int relevant = 0;
+      int position = offset;
+      for (int i = 0; i < count; i++) {
+         int end = scan(buffer, position, listener);
+         if (end < 0) {
+            relevant++;
+            end = ~end;
+         }
+         position = end;
+      }
+      return relevant;
+   }
+
+   /**
+    * Scan a single serialized transaction
+    * 
+    * @return the offset right after the transaction if it has no matches,
+    *         otherwise the bitwise complement of that offset
+    */
+   public int scan(byte[] buffer, int offset, Listener listener) throws TransactionParsingException {
+      try {
+         ByteReader reader = new ByteReader(buffer, offset);
+         reader.skip(4);
+         int inputMatches = 0;
+         int inputCount = (int) reader.getCompactInt();
+         for (int i = 0; i < inputCount; i++) {
+            int outPointOffset = reader.getPosition();
+            reader.skip(OUTPOINT_LENGTH);
+            reader.skip((int) reader.getCompactInt());
+            reader.skip(4);
+            if (_outPoints != null && _outPoints.containsSerialized(buffer, outPointOffset)) {
+               _inputMatches = addMatch(_inputMatches, inputMatches++, i, outPointOffset);
+            }
+         }
+         int outputMatches = 0;
+         int outputCount = (int) reader.getCompactInt();
+         for (int i = 0; i < outputCount; i++) {
+            reader.skip(8);
+            int scriptLength = (int) reader.getCompactInt();
+            int scriptOffset = reader.getPosition();
+            reader.skip(scriptLength);
+            int hashOffset = addressHashOffset(buffer, scriptOffset, scriptLength);
+            if (hashOffset != -1 && _addresses.contains(buffer, hashOffset)) {
+               _outputMatches = addMatch(_outputMatches, outputMatches++, i, hashOffset);
+            }
+         }
+         reader.skip(4);
+         int end = reader.getPosition();
+         if (inputMatches == 0 && outputMatches == 0) {
+            return end;
+         }
+         int length = end - offset;
+         for (int i = 0; i < inputMatches; i++) {
+            listener.onInput(buffer, offset, length, _inputMatches[2 * i], _inputMatches[2 * i + 1]);
+         }
+         for (int i = 0; i < outputMatches; i++) {
+            listener.onOutput(buffer, offset, length, _outputMatches[2 * i], _outputMatches[2 * i + 1]);
+         }
+         return ~end;
+      } catch (InsufficientBytesException e) {
+         throw new TransactionParsingException("Unable to scan transaction: " + e.getMessage());
+      }
+   }
+
+   private static int[] addMatch(int[] matches, int match, int index, int offset) {
+      if (2 * match + 1 >= matches.length) {
+         int[] grown = new int[matches.length * 2];
+         System.arraycopy(matches, 0, grown, 0, matches.length);
+         matches = grown;
+      }
+      matches[2 * match] = index;
+      matches[2 * match + 1] = offset;
+      return matches;
+   }
+
+   /**
+    * Recognize the scripts of {@link ScriptOutputStandard} and
+    * {@link ScriptOutputMultisig} on the serialized bytes
+    * 
+    * @return the offset of the address hash in the script, or -1 if the
+    *         script does not pay to an address
+    */
+   private static int addressHashOffset(byte[] script, int offset, int length) {
+      if (length == 25 || length == 26) {
+         if ((script[offset] & 0xFF) == Script.OP_DUP && (script[offset + 1] & 0xFF) == Script.OP_HASH160
+               && script[offset + 2] == 20 && (script[offset + 23] & 0xFF) == Script.OP_EQUALVERIFY
+               && (script[offset + 24] & 0xFF) == Script.OP_CHECKSIG
+               && (length == 25 || (script[offset + 25] & 0xFF) == Script.OP_NOP)) {
+            return offset + 3;
+         }
+      } else if (length == 23) {
+         if ((script[offset] & 0xFF) == Script.OP_HASH160 && script[offset + 1] == 20
+               && (script[offset + 22] & 0xFF) == Script.OP_EQUAL) {
+            return offset + 2;
+         }
+      }
+      return -1;
+   }
+
+}
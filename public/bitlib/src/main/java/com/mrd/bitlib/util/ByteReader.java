@@ -100,7 +100,9 @@ public class ByteReader {
 
    public Sha256Hash getSha256Hash() throws InsufficientBytesException {
       checkAvailable(Sha256Hash.HASH_LENGTH);
-      return Sha256Hash.of(getBytes(Sha256Hash.HASH_LENGTH));
+      Sha256Hash hash = Sha256Hash.copyOf(_buf, _index);
+      _index += Sha256Hash.HASH_LENGTH;
+      return hash;
    }
 
    public int getPosition() {
@@ -116,7 +118,7 @@ public class ByteReader {
    }
 
    private final void checkAvailable(int num) throws InsufficientBytesException {
-      if (_buf.length - _index < num) {
+      if (num < 0 || _buf.length - _index < num) {
          throw new InsufficientBytesException();
       }
    }
@@ -113,14 +113,19 @@ final public class ByteWriter {
    }
 
    public void putSha256Hash(Sha256Hash hash) {
-      putBytes(hash.getBytes());
+      putSha256Hash(hash, false);
    }
 
    public void putSha256Hash(Sha256Hash hash, boolean reverse) {
       if (reverse) {
-         putBytes(BitUtils.reverseBytes(hash.getBytes()));
+         putLongLE(hash.getWord(3));
+         putLongLE(hash.getWord(2));
+         putLongLE(hash.getWord(1));
+         putLongLE(hash.getWord(0));
       } else {
-         putBytes(hash.getBytes());
+         ensureCapacity(Sha256Hash.HASH_LENGTH);
+         hash.getBytes(_buf, _index);
+         _index += Sha256Hash.HASH_LENGTH;
       }
    }
 
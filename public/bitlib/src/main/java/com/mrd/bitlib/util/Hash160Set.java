@@ -0,0 +1,178 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+import com.google.common.base.Preconditions;
+import com.mrd.bitlib.model.Address;
+
+/**
+ * A set of 20 byte hashes, such as the hash160 of the addresses of a wallet, stored inline in primitive arrays.
+ * <p>
+ * Lookups take the hash as a range of a larger buffer, so a serialized transaction can be tested without copying any
+ * bytes. Collisions are resolved with linear probing. This class is not thread safe.
+ */
+public class Hash160Set {
+
+   public static final int HASH_LENGTH = 20;
+
+   private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+   private static final int MIN_CAPACITY = 16;
+
+   private long[] _w0;
+   private long[] _w1;
+   private int[] _w2;
+   private boolean[] _used;
+   private int _size;
+   private int _mask;
+   private int _shift;
+   private int _threshold;
+
+   public Hash160Set() {
+      this(0);
+   }
+
+   public Hash160Set(int expectedSize) {
+      int capacity = MIN_CAPACITY;
+      // keep the load factor at or below 3/4
+      while (capacity - (capacity >>> 2) < expectedSize) {
+         capacity <<= 1;
+      }
+      allocate(capacity);
+   }
+
+   private void allocate(int capacity) {
+      _w0 = new long[capacity];
+      _w1 = new long[capacity];
+      _w2 = new int[capacity];
+      _used = new boolean[capacity];
+      _mask = capacity - 1;
+      _shift = 64 - Integer.numberOfTrailingZeros(capacity);
+      _threshold = capacity - (capacity >>> 2);
+   }
+
+   public int size() {
+      return _size;
+   }
+
+   private int home(long w0, int w2) {
+      return (int) (((w0 ^ w2) * GOLDEN) >>> _shift);
+   }
+
+   /**
+    * Add the hash160 of the address, which is what pay-to-address and pay-to-script-hash outputs contain
+    * 
+    * @return true if the hash was not present before
+    */
+   public boolean add(Address address) {
+      return add(address.getTypeSpecificBytes(), 0);
+   }
+
+   public boolean add(byte[] hash) {
+      Preconditions.checkArgument(hash.length == HASH_LENGTH);
+      return add(hash, 0);
+   }
+
+   /**
+    * Add the 20 bytes at the given offset
+    * 
+    * @return true if the hash was not present before
+    */
+   public boolean add(byte[] buffer, int offset) {
+      if (contains(buffer, offset)) {
+         return false;
+      }
+      if (_size >= _threshold) {
+         rehash(_used.length << 1);
+      }
+      long w0 = longBE(buffer, offset);
+      long w1 = longBE(buffer, offset + 8);
+      int w2 = intBE(buffer, offset + 16);
+      int slot = home(w0, w2);
+      while (_used[slot]) {
+         slot = (slot + 1) & _mask;
+      }
+      _w0[slot] = w0;
+      _w1[slot] = w1;
+      _w2[slot] = w2;
+      _used[slot] = true;
+      _size++;
+      return true;
+   }
+
+   public boolean contains(Address address) {
+      return contains(address.getTypeSpecificBytes(), 0);
+   }
+
+   public boolean contains(byte[] hash) {
+      return hash.length == HASH_LENGTH && contains(hash, 0);
+   }
+
+   /**
+    * Determine whether the set contains the 20 bytes at the given offset
+    */
+   public boolean contains(byte[] buffer, int offset) {
+      long w0 = longBE(buffer, offset);
+      long w1 = longBE(buffer, offset + 8);
+      int w2 = intBE(buffer, offset + 16);
+      int slot = home(w0, w2);
+      while (_used[slot]) {
+         if (_w0[slot] == w0 && _w1[slot] == w1 && _w2[slot] == w2) {
+            return true;
+         }
+         slot = (slot + 1) & _mask;
+      }
+      return false;
+   }
+
+   public void clear() {
+      for (int i = 0; i < _used.length; i++) {
+         _used[i] = false;
+      }
+      _size = 0;
+   }
+
+   private void rehash(int newCapacity) {
+      long[] w0 = _w0;
+      long[] w1 = _w1;
+      int[] w2 = _w2;
+      boolean[] used = _used;
+      allocate(newCapacity);
+      for (int i = 0; i < used.length; i++) {
+         if (!used[i]) {
+            continue;
+         }
+         int slot = home(w0[i], w2[i]);
+         while (_used[slot]) {
+            slot = (slot + 1) & _mask;
+         }
+         _w0[slot] = w0[i];
+         _w1[slot] = w1[i];
+         _w2[slot] = w2[i];
+         _used[slot] = true;
+      }
+   }
+
+   private static long longBE(byte[] b, int o) {
+      return ((long) intBE(b, o) << 32) | (intBE(b, o + 4) & 0xFFFFFFFFL);
+   }
+
+   private static int intBE(byte[] b, int o) {
+      return b[o] << 24 | (b[o + 1] & 0xFF) << 16 | (b[o + 2] & 0xFF) << 8 | (b[o + 3] & 0xFF);
+   }
+
+}
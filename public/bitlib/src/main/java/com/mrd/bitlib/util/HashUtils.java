@@ -120,4 +120,24 @@ public class HashUtils {
       // next use
       return out;
    }
+
+   /**
+    * Calculate the address hashes of many public keys, reusing the digests
+    * between keys
+    *
+    * @param pubkeyBytes Bitcoin public keys as arrays of bytes.
+    * @return The address hash of each public key, in the same order.
+    */
+   public static byte[][] addressHashes(byte[][] pubkeyBytes) {
+      MessageDigest sha256 = getSha256Digest();
+      RIPEMD160Digest ripeMD160 = new RIPEMD160Digest();
+      byte[][] result = new byte[pubkeyBytes.length][];
+      for (int i = 0; i < pubkeyBytes.length; i++) {
+         byte[] hash = sha256.digest(pubkeyBytes[i]);
+         result[i] = new byte[20];
+         ripeMD160.update(hash, 0, hash.length);
+         ripeMD160.doFinal(result[i], 0); // Resets for the next key
+      }
+      return result;
+   }
 }
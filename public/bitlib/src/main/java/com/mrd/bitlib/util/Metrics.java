@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+/**
+ * Optional instrumentation of the expensive operations in bitlib. By default
+ * no sink is installed, and an instrumented operation costs a single volatile
+ * read. An embedding application may install a sink, for instance a
+ * {@link MetricsRecorder}, and export what it records.
+ * <p>
+ * Operations may nest, a signature for instance includes an EC
+ * multiplication, and each is reported on its own. Only operations that
+ * complete without an exception are reported.
+ */
+public final class Metrics {
+
+   /**
+    * The instrumented operations
+    */
+   public enum Operation {
+      /**
+       * Multiplication of a point on the curve with a scalar
+       */
+      EC_MULTIPLY,
+      /**
+       * Creation of an ECDSA signature
+       */
+      SIGN,
+      /**
+       * Verification of an ECDSA signature
+       */
+      VERIFY,
+      /**
+       * Derivation of a BIP32 child key
+       */
+      DERIVE,
+      /**
+       * Key stretching with scrypt
+       */
+      SCRYPT,
+      /**
+       * Creation of an unsigned transaction
+       */
+      TX_BUILD
+   }
+
+   /**
+    * Receives the duration of each completed operation. Called on the thread
+    * that did the operation, so implementations must be thread safe and fast.
+    */
+   public interface Sink {
+      void record(Operation operation, long nanos);
+   }
+
+   private static volatile Sink _sink;
+
+   private Metrics() {
+   }
+
+   /**
+    * Install a sink, or null to stop instrumentation
+    */
+   public static void setSink(Sink sink) {
+      _sink = sink;
+   }
+
+   public static Sink getSink() {
+      return _sink;
+   }
+
+   /**
+    * Call before an operation and hand the result to
+    * {@link #stop(Operation, long)} after it
+    * 
+    * @return the current time in nanoseconds, or 0 if no sink is installed
+    */
+   public static long start() {
+      return _sink == null ? 0 : System.nanoTime();
+   }
+
+   /**
+    * Report an operation that began with {@link #start()}
+    */
+   public static void stop(Operation operation, long start) {
+      Sink sink = _sink;
+      if (sink == null || start == 0) {
+         return;
+      }
+      sink.record(operation, System.nanoTime() - start);
+   }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.mrd.bitlib.util.Metrics.Operation;
+
+/**
+ * A {@link Metrics.Sink} that counts operations and keeps a latency histogram
+ * for each of them. Bucket i of a histogram counts the operations that took
+ * from 2^i up to 2^(i+1) nanoseconds, bucket 0 also those that took no time.
+ */
+public class MetricsRecorder implements Metrics.Sink {
+
+   public static final int BUCKETS = 64;
+
+   private static final int OPERATIONS = Operation.values().length;
+
+   private final AtomicLongArray _counts = new AtomicLongArray(OPERATIONS);
+   private final AtomicLongArray _totalNanos = new AtomicLongArray(OPERATIONS);
+   private final AtomicLongArray _histograms = new AtomicLongArray(OPERATIONS * BUCKETS);
+
+   @Override
+   public void record(Operation operation, long nanos) {
+      int o = operation.ordinal();
+      long duration = Math.max(nanos, 0);
+      _counts.incrementAndGet(o);
+      _totalNanos.addAndGet(o, duration);
+      _histograms.incrementAndGet(o * BUCKETS + bucket(duration));
+   }
+
+   /**
+    * @return the histogram bucket for the given duration
+    */
+   public static int bucket(long nanos) {
+      return nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+   }
+
+   public long getCount(Operation operation) {
+      return _counts.get(operation.ordinal());
+   }
+
+   public long getTotalNanos(Operation operation) {
+      return _totalNanos.get(operation.ordinal());
+   }
+
+   /**
+    * @return a copy of the latency histogram of the given operation
+    */
+   public long[] getHistogram(Operation operation) {
+      long[] histogram = new long[BUCKETS];
+      int base = operation.ordinal() * BUCKETS;
+      for (int i = 0; i < BUCKETS; i++) {
+         histogram[i] = _histograms.get(base + i);
+      }
+      return histogram;
+   }
+
+   /**
+    * Estimate a percentile of the latency of an operation from its histogram
+    * 
+    * @param percentile
+    *           between 0 and 100
+    * @return the upper bound in nanoseconds of the bucket holding the
+    *         percentile, or 0 if the operation has not been recorded
+    */
+   public long getPercentileNanos(Operation operation, double percentile) {
+      long[] histogram = getHistogram(operation);
+      long total = 0;
+      for (long count : histogram) {
+         total += count;
+      }
+      if (total == 0) {
+         return 0;
+      }
+      long rank = (long) Math.ceil(total * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS - 1; i++) {
+         seen += histogram[i];
+         if (seen >= rank) {
+            return (1L << (i + 1)) - 1;
+         }
+      }
+      return Long.MAX_VALUE;
+   }
+
+   /**
+    * Forget everything recorded so far. Operations recorded concurrently may
+    * be partly cleared.
+    */
+   public void reset() {
+      for (int i = 0; i < OPERATIONS; i++) {
+         _counts.set(i, 0);
+         _totalNanos.set(i, 0);
+      }
+      for (int i = 0; i < OPERATIONS * BUCKETS; i++) {
+         _histograms.set(i, 0);
+      }
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (Operation operation : Operation.values()) {
+         long count = getCount(operation);
+         if (count == 0) {
+            continue;
+         }
+         sb.append(operation).append(": count=").append(count);
+         sb.append(" avg=").append(getTotalNanos(operation) / count).append("ns");
+         sb.append(" p50<=").append(getPercentileNanos(operation, 50)).append("ns");
+         sb.append(" p99<=").append(getPercentileNanos(operation, 99)).append("ns\n");
+      }
+      return sb.toString();
+   }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.mrd.bitlib.model.OutPoint;
+
+/**
+ * A map keyed on outpoints that stores transaction ids and output indexes inline in primitive arrays.
+ * <p>
+ * Use it in place of a HashMap&lt;OutPoint, V&gt; for large unspent output sets. OutPoint instances are only created
+ * when iterating over keys or entries. Null values are not supported. This class is not thread safe.
+ */
+public class OutPointMap<V> extends AbstractMap<OutPoint, V> {
+
+   private final OutPointTable _table;
+   private Set<Map.Entry<OutPoint, V>> _entrySet;
+
+   public OutPointMap() {
+      this(0);
+   }
+
+   public OutPointMap(int expectedSize) {
+      _table = new OutPointTable(expectedSize, true);
+   }
+
+   @Override
+   public int size() {
+      return _table._size;
+   }
+
+   @Override
+   public boolean containsKey(Object key) {
+      return _table.find(key) != -1;
+   }
+
+   public boolean containsKey(Sha256Hash hash, int index) {
+      return _table.find(hash, index) != -1;
+   }
+
+   @Override
+   public V get(Object key) {
+      return valueAt(_table.find(key));
+   }
+
+   public V get(Sha256Hash hash, int index) {
+      return valueAt(_table.find(hash, index));
+   }
+
+   @SuppressWarnings("unchecked")
+   private V valueAt(int slot) {
+      return slot == -1 ? null : (V) _table._values[slot];
+   }
+
+   @Override
+   public V put(OutPoint key, V value) {
+      return put(key.hash, key.index, value);
+   }
+
+   public V put(Sha256Hash hash, int index, V value) {
+      if (value == null) {
+         throw new NullPointerException("null values are not supported");
+      }
+      int slot = _table.insert(hash, index);
+      if (slot < 0) {
+         slot = ~slot;
+      }
+      V old = valueAt(slot);
+      _table._values[slot] = value;
+      return old;
+   }
+
+   @Override
+   public V remove(Object key) {
+      return removeAt(_table.find(key));
+   }
+
+   public V remove(Sha256Hash hash, int index) {
+      return removeAt(_table.find(hash, index));
+   }
+
+   private V removeAt(int slot) {
+      if (slot == -1) {
+         return null;
+      }
+      V old = valueAt(slot);
+      _table.removeAt(slot);
+      return old;
+   }
+
+   @Override
+   public void clear() {
+      _table.clear();
+   }
+
+   @Override
+   public Set<Map.Entry<OutPoint, V>> entrySet() {
+      if (_entrySet == null) {
+         _entrySet = new EntrySet();
+      }
+      return _entrySet;
+   }
+
+   private class EntrySet extends AbstractSet<Map.Entry<OutPoint, V>> {
+
+      @Override
+      public int size() {
+         return _table._size;
+      }
+
+      @Override
+      public void clear() {
+         _table.clear();
+      }
+
+      @Override
+      public Iterator<Map.Entry<OutPoint, V>> iterator() {
+         final OutPointTable.Cursor cursor = _table.new Cursor();
+         return new Iterator<Map.Entry<OutPoint, V>>() {
+
+            @Override
+            public boolean hasNext() {
+               return cursor.hasNext();
+            }
+
+            @Override
+            public Map.Entry<OutPoint, V> next() {
+               int slot = cursor.next();
+               return new Entry(_table.outPointAt(slot), valueAt(slot));
+            }
+
+            @Override
+            public void remove() {
+               cursor.remove();
+            }
+         };
+      }
+   }
+
+   private class Entry extends AbstractMap.SimpleEntry<OutPoint, V> {
+      private static final long serialVersionUID = 1L;
+
+      private Entry(OutPoint key, V value) {
+         super(key, value);
+      }
+
+      @Override
+      public V setValue(V value) {
+         OutPointMap.this.put(getKey(), value);
+         return super.setValue(value);
+      }
+   }
+
+}
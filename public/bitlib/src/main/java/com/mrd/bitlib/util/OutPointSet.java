@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+import com.mrd.bitlib.model.OutPoint;
+
+/**
+ * A set of outpoints that stores transaction ids and output indexes inline in primitive arrays.
+ * <p>
+ * Use it in place of a HashSet&lt;OutPoint&gt; for large unspent output sets. OutPoint instances are only created
+ * when iterating. This class is not thread safe.
+ */
+public class OutPointSet extends AbstractSet<OutPoint> {
+
+   private final OutPointTable _table;
+
+   public OutPointSet() {
+      this(0);
+   }
+
+   public OutPointSet(int expectedSize) {
+      _table = new OutPointTable(expectedSize, false);
+   }
+
+   public OutPointSet(Collection<OutPoint> outPoints) {
+      this(outPoints.size());
+      addAll(outPoints);
+   }
+
+   @Override
+   public int size() {
+      return _table._size;
+   }
+
+   @Override
+   public boolean contains(Object o) {
+      return _table.find(o) != -1;
+   }
+
+   public boolean contains(Sha256Hash hash, int index) {
+      return _table.find(hash, index) != -1;
+   }
+
+   /**
+    * Determine whether the set contains an outpoint as serialized in a transaction input, without creating any
+    * objects.
+    * 
+    * @param buffer
+    *           the buffer holding the 36 bytes of the serialized outpoint
+    * @param offset
+    *           the offset of the outpoint in the buffer
+    */
+   public boolean containsSerialized(byte[] buffer, int offset) {
+      return _table.findSerialized(buffer, offset) != -1;
+   }
+
+   @Override
+   public boolean add(OutPoint outPoint) {
+      return add(outPoint.hash, outPoint.index);
+   }
+
+   public boolean add(Sha256Hash hash, int index) {
+      return _table.insert(hash, index) >= 0;
+   }
+
+   @Override
+   public boolean remove(Object o) {
+      int slot = _table.find(o);
+      if (slot == -1) {
+         return false;
+      }
+      _table.removeAt(slot);
+      return true;
+   }
+
+   public boolean remove(Sha256Hash hash, int index) {
+      int slot = _table.find(hash, index);
+      if (slot == -1) {
+         return false;
+      }
+      _table.removeAt(slot);
+      return true;
+   }
+
+   @Override
+   public void clear() {
+      _table.clear();
+   }
+
+   @Override
+   public Iterator<OutPoint> iterator() {
+      final OutPointTable.Cursor cursor = _table.new Cursor();
+      return new Iterator<OutPoint>() {
+
+         @Override
+         public boolean hasNext() {
+            return cursor.hasNext();
+         }
+
+         @Override
+         public OutPoint next() {
+            return _table.outPointAt(cursor.next());
+         }
+
+         @Override
+         public void remove() {
+            cursor.remove();
+         }
+      };
+   }
+
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2013 Megion Research & Development GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mrd.bitlib.util;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+import com.mrd.bitlib.model.OutPoint;
+
+/**
+ * Open addressing hash table keyed on outpoints, shared by {@link OutPointSet} and {@link OutPointMap}.
+ * <p>
+ * The transaction id words and the output index of each entry are stored inline in parallel primitive arrays, so a
+ * lookup never dereferences an OutPoint or Sha256Hash instance. Collisions are resolved with linear probing and
+ * removal uses backward shifting, so there are no tombstones.
+ */
+final class OutPointTable {
+
+   private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+   private static final int MIN_CAPACITY = 16;
+
+   long[] _w0;
+   long[] _w1;
+   long[] _w2;
+   long[] _w3;
+   int[] _index;
+   boolean[] _used;
+   Object[] _values;
+   int _size;
+   int _modCount;
+   private final boolean _withValues;
+   private int _mask;
+   private int _shift;
+   private int _threshold;
+
+   OutPointTable(int expectedSize, boolean withValues) {
+      _withValues = withValues;
+      allocate(capacityFor(expectedSize));
+   }
+
+   private static int capacityFor(int expectedSize) {
+      int capacity = MIN_CAPACITY;
+      // keep the load factor at or below 3/4
+      while (capacity - (capacity >>> 2) < expectedSize) {
+         capacity <<= 1;
+      }
+      return capacity;
+   }
+
+   private void allocate(int capacity) {
+      _w0 = new long[capacity];
+      _w1 = new long[capacity];
+      _w2 = new long[capacity];
+      _w3 = new long[capacity];
+      _index = new int[capacity];
+      _used = new boolean[capacity];
+      _values = _withValues ? new Object[capacity] : null;
+      _mask = capacity - 1;
+      _shift = 64 - Integer.numberOfTrailingZeros(capacity);
+      _threshold = capacity - (capacity >>> 2);
+   }
+
+   int capacity() {
+      return _used.length;
+   }
+
+   private int home(long w3, int index) {
+      return (int) (((w3 ^ (index * GOLDEN)) * GOLDEN) >>> _shift);
+   }
+
+   /**
+    * @return the slot holding the given outpoint, or -1 if it is not present
+    */
+   int find(Sha256Hash hash, int index) {
+      return find(hash.getWord(0), hash.getWord(1), hash.getWord(2), hash.getWord(3), index);
+   }
+
+   /**
+    * Find an outpoint as serialized in a transaction input, that is the transaction id in reverse byte order followed
+    * by the output index in little endian byte order.
+    * 
+    * @return the slot holding the given outpoint, or -1 if it is not present
+    */
+   int findSerialized(byte[] buffer, int offset) {
+      int index = (buffer[offset + 32] & 0xFF) | (buffer[offset + 33] & 0xFF) << 8 | (buffer[offset + 34] & 0xFF) << 16
+            | buffer[offset + 35] << 24;
+      return find(longLE(buffer, offset + 24), longLE(buffer, offset + 16), longLE(buffer, offset + 8),
+            longLE(buffer, offset), index);
+   }
+
+   private static long longLE(byte[] b, int o) {
+      return (b[o] & 0xFFL) | ((b[o + 1] & 0xFFL) << 8) | ((b[o + 2] & 0xFFL) << 16) | ((b[o + 3] & 0xFFL) << 24)
+            | ((b[o + 4] & 0xFFL) << 32) | ((b[o + 5] & 0xFFL) << 40) | ((b[o + 6] & 0xFFL) << 48)
+            | ((b[o + 7] & 0xFFL) << 56);
+   }
+
+   private int find(long w0, long w1, long w2, long w3, int index) {
+      int slot = home(w3, index);
+      while (_used[slot]) {
+         if (_w3[slot] == w3 && _index[slot] == index && _w0[slot] == w0 && _w1[slot] == w1 && _w2[slot] == w2) {
+            return slot;
+         }
+         slot = (slot + 1) & _mask;
+      }
+      return -1;
+   }
+
+   int find(Object o) {
+      if (!(o instanceof OutPoint)) {
+         return -1;
+      }
+      OutPoint outPoint = (OutPoint) o;
+      return find(outPoint.hash, outPoint.index);
+   }
+
+   /**
+    * Insert the outpoint unless it is already present.
+    * 
+    * @return the slot of the new entry, or the bitwise complement of the slot of the existing entry
+    */
+   int insert(Sha256Hash hash, int index) {
+      int existing = find(hash, index);
+      if (existing != -1) {
+         return ~existing;
+      }
+      if (_size >= _threshold) {
+         rehash(capacity() << 1);
+      }
+      long w3 = hash.getWord(3);
+      int slot = home(w3, index);
+      while (_used[slot]) {
+         slot = (slot + 1) & _mask;
+      }
+      _w0[slot] = hash.getWord(0);
+      _w1[slot] = hash.getWord(1);
+      _w2[slot] = hash.getWord(2);
+      _w3[slot] = w3;
+      _index[slot] = index;
+      _used[slot] = true;
+      _size++;
+      _modCount++;
+      return slot;
+   }
+
+   private void rehash(int newCapacity) {
+      long[] w0 = _w0;
+      long[] w1 = _w1;
+      long[] w2 = _w2;
+      long[] w3 = _w3;
+      int[] index = _index;
+      boolean[] used = _used;
+      Object[] values = _values;
+      allocate(newCapacity);
+      for (int i = 0; i < used.length; i++) {
+         if (!used[i]) {
+            continue;
+         }
+         int slot = home(w3[i], index[i]);
+         while (_used[slot]) {
+            slot = (slot + 1) & _mask;
+         }
+         _w0[slot] = w0[i];
+         _w1[slot] = w1[i];
+         _w2[slot] = w2[i];
+         _w3[slot] = w3[i];
+         _index[slot] = index[i];
+         _used[slot] = true;
+         if (values != null) {
+            _values[slot] = values[i];
+         }
+      }
+   }
+
+   /**
+    * Remove the entry in the given slot. Entries further down the probe sequence are shifted back to close the gap,
+    * which means that a later entry of the same cluster may end up in this slot.
+    */
+   void removeAt(int slot) {
+      int gap = slot;
+      int i = slot;
+      while (true) {
+         i = (i + 1) & _mask;
+         if (!_used[i]) {
+            break;
+         }
+         int home = home(_w3[i], _index[i]);
+         // the entry at i may move to the gap if its home slot is not cyclically within (gap, i]
+         if (((i - home) & _mask) >= ((i - gap) & _mask)) {
+            _w0[gap] = _w0[i];
+            _w1[gap] = _w1[i];
+            _w2[gap] = _w2[i];
+            _w3[gap] = _w3[i];
+            _index[gap] = _index[i];
+            if (_withValues) {
+               _values[gap] = _values[i];
+            }
+            gap = i;
+         }
+      }
+      _used[gap] = false;
+      if (_withValues) {
+         _values[gap] = null;
+      }
+      _size--;
+      _modCount++;
+   }
+
+   void clear() {
+      if (_size == 0) {
+         return;
+      }
+      for (int i = 0; i < _used.length; i++) {
+         _used[i] = false;
+      }
+      if (_withValues) {
+         for (int i = 0; i < _values.length; i++) {
+            _values[i] = null;
+         }
+      }
+      _size = 0;
+      _modCount++;
+   }
+
+   Sha256Hash hashAt(int slot) {
+      return Sha256Hash.fromWords(_w0[slot], _w1[slot], _w2[slot], _w3[slot]);
+   }
+
+   OutPoint outPointAt(int slot) {
+      return new OutPoint(hashAt(slot), _index[slot]);
+   }
+
+   /**
+    * Walks the occupied slots and supports removal of the current slot.
+    * <p>
+    * The walk starts right after an empty slot and follows the probe order, so no cluster straddles the starting point.
+    * Backward shifting then only ever moves entries that have not been visited yet into the removed slot, which is
+    * therefore looked at again.
+    */
+   final class Cursor {
+      private final int _start;
+      private int _steps;
+      private int _current = -1;
+      private int _expectedModCount = _modCount;
+
+      Cursor() {
+         int start = 0;
+         while (_used[start]) {
+            start++;
+         }
+         _start = start;
+      }
+
+      boolean hasNext() {
+         checkModCount();
+         int capacity = capacity();
+         for (int steps = _steps; steps < capacity; steps++) {
+            if (_used[(_start + 1 + steps) & _mask]) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      int next() {
+         checkModCount();
+         int capacity = capacity();
+         while (_steps < capacity) {
+            int slot = (_start + 1 + _steps) & _mask;
+            _steps++;
+            if (_used[slot]) {
+               _current = slot;
+               return slot;
+            }
+         }
+         throw new NoSuchElementException();
+      }
+
+      void remove() {
+         if (_current == -1) {
+            throw new IllegalStateException();
+         }
+         checkModCount();
+         removeAt(_current);
+         if (_used[_current]) {
+            // an unvisited entry was shifted into this slot
+            _steps--;
+         }
+         _current = -1;
+         _expectedModCount = _modCount;
+      }
+
+      private void checkModCount() {
+         if (_expectedModCount != _modCount) {
+            throw new ConcurrentModificationException();
+         }
+      }
+   }
+
+}
@@ -17,29 +17,58 @@
 package com.mrd.bitlib.util;
 
 import com.google.common.base.Preconditions;
-import com.google.common.primitives.Ints;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigInteger;
-import java.util.Arrays;
 
 /**
  * represents the result of a SHA256 hashing operation
  * prefer to use the static factory methods.
+ * <p>
+ * The 32 bytes are kept as four big-endian longs rather than a byte array. This avoids the array header and
+ * reference for every hash held in transaction id keyed maps and makes equals, hashCode and compareTo
+ * allocation free. Byte arrays are only created when asked for.
  */
 public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
    private static final long serialVersionUID = 1L;
 
+   /**
+    * Keep the serialized form of the byte array based implementation, so that persisted objects remain readable
+    */
+   private static final ObjectStreamField[] serialPersistentFields = {
+         new ObjectStreamField("_bytes", byte[].class),
+         new ObjectStreamField("_hash", int.class)
+   };
+
+   /**
+    * Flips the sign bit of every byte, and the sign bit of the long. Comparing the results as signed longs gives the
+    * same order as comparing the original bytes one by one as signed bytes.
+    */
+   private static final long SIGNED_BYTE_ORDER_MASK = 0x0080808080808080L;
+
    public static final int HASH_LENGTH = 32;
    public static final Sha256Hash ZERO_HASH = of(new byte[HASH_LENGTH]);
 
-   final private byte[] _bytes;
-   private int _hash;
+   private long _w0;
+   private long _w1;
+   private long _w2;
+   private long _w3;
 
    public Sha256Hash(byte[] bytes) {
       Preconditions.checkArgument(bytes.length == HASH_LENGTH);
-      this._bytes = bytes;
-      _hash = -1;
+      setWords(bytes, 0);
+   }
+
+   private Sha256Hash(long w0, long w1, long w2, long w3) {
+      _w0 = w0;
+      _w1 = w1;
+      _w2 = w2;
+      _w3 = w3;
    }
 
    /**
@@ -55,10 +84,54 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
    }
 
    private Sha256Hash(byte[] bytes, int offset) {
-      //defensive copy, since incoming bytes is of arbitrary length
-      _bytes = new byte[HASH_LENGTH];
-       System.arraycopy(bytes, offset, _bytes, 0, HASH_LENGTH);
-      _hash = -1;
+      //no defensive copy needed, we only read the bytes
+      setWords(bytes, offset);
+   }
+
+   private void setWords(byte[] bytes, int offset) {
+      _w0 = wordFromBytes(bytes, offset);
+      _w1 = wordFromBytes(bytes, offset + 8);
+      _w2 = wordFromBytes(bytes, offset + 16);
+      _w3 = wordFromBytes(bytes, offset + 24);
+   }
+
+   private static long wordFromBytes(byte[] b, int o) {
+      return ((b[o] & 0xFFL) << 56) | ((b[o + 1] & 0xFFL) << 48) | ((b[o + 2] & 0xFFL) << 40)
+            | ((b[o + 3] & 0xFFL) << 32) | ((b[o + 4] & 0xFFL) << 24) | ((b[o + 5] & 0xFFL) << 16)
+            | ((b[o + 6] & 0xFFL) << 8) | (b[o + 7] & 0xFFL);
+   }
+
+   private static void wordToBytes(long w, byte[] b, int o) {
+      b[o] = (byte) (w >>> 56);
+      b[o + 1] = (byte) (w >>> 48);
+      b[o + 2] = (byte) (w >>> 40);
+      b[o + 3] = (byte) (w >>> 32);
+      b[o + 4] = (byte) (w >>> 24);
+      b[o + 5] = (byte) (w >>> 16);
+      b[o + 6] = (byte) (w >>> 8);
+      b[o + 7] = (byte) w;
+   }
+
+   static Sha256Hash fromWords(long w0, long w1, long w2, long w3) {
+      return new Sha256Hash(w0, w1, w2, w3);
+   }
+
+   /**
+    * get one of the four big-endian words making up this hash, index 0 holding the first 8 bytes
+    */
+   long getWord(int index) {
+      switch (index) {
+         case 0:
+            return _w0;
+         case 1:
+            return _w1;
+         case 2:
+            return _w2;
+         case 3:
+            return _w3;
+         default:
+            throw new IndexOutOfBoundsException("word index " + index);
+      }
    }
 
    @Override
@@ -68,20 +141,14 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
       }
       if (!(other instanceof Sha256Hash))
          return false;
-      return Arrays.equals(_bytes, ((Sha256Hash) other)._bytes);
+      Sha256Hash o = (Sha256Hash) other;
+      return _w3 == o._w3 && _w2 == o._w2 && _w1 == o._w1 && _w0 == o._w0;
    }
 
    @Override
    public int hashCode() {
-      if (_hash == -1) {
-         final int offset = _bytes.length - 4;
-         _hash = 0;
-         for (int i = 0; i < 4; i++) {
-            _hash <<= 8;
-            _hash |= (((int) _bytes[offset + i]) & 0xFF);
-         }
-      }
-      return _hash;
+      // the bytes are a hash already, folding the last word is enough
+      return (int) (_w3 ^ (_w3 >>> 32));
    }
 
    @Override
@@ -89,25 +156,48 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
       return toHex();
    }
 
+   /**
+    * @return a new array holding the 32 bytes of this hash
+    */
    public byte[] getBytes() {
-      return _bytes;
+      byte[] bytes = new byte[HASH_LENGTH];
+      getBytes(bytes, 0);
+      return bytes;
+   }
+
+   /**
+    * write the 32 bytes of this hash into a caller supplied buffer
+    */
+   public void getBytes(byte[] dest, int offset) {
+      wordToBytes(_w0, dest, offset);
+      wordToBytes(_w1, dest, offset + 8);
+      wordToBytes(_w2, dest, offset + 16);
+      wordToBytes(_w3, dest, offset + 24);
    }
 
    @Override
    public int compareTo(Sha256Hash o) {
-      for (int i = 0; i < HASH_LENGTH; i++) {
-         byte myByte = _bytes[i];
-         byte otherByte = o._bytes[i];
+      int compare = compareWords(_w0, o._w0);
+      if (compare != 0)
+         return compare;
+      compare = compareWords(_w1, o._w1);
+      if (compare != 0)
+         return compare;
+      compare = compareWords(_w2, o._w2);
+      if (compare != 0)
+         return compare;
+      return compareWords(_w3, o._w3);
+   }
 
-         final int compare = Ints.compare(myByte, otherByte);
-         if (compare != 0)
-            return compare;
-      }
-      return 0;
+   private static int compareWords(long a, long b) {
+      a ^= SIGNED_BYTE_ORDER_MASK;
+      b ^= SIGNED_BYTE_ORDER_MASK;
+      return a < b ? -1 : (a == b ? 0 : 1);
    }
 
    public Sha256Hash reverse() {
-      return new Sha256Hash(BitUtils.reverseBytes(_bytes));
+      return new Sha256Hash(Long.reverseBytes(_w3), Long.reverseBytes(_w2), Long.reverseBytes(_w1),
+            Long.reverseBytes(_w0));
    }
 
    public int length() {
@@ -115,27 +205,50 @@ public class Sha256Hash implements Serializable, Comparable<Sha256Hash> {
    }
 
    public BigInteger toPositiveBigInteger() {
-      return new BigInteger(1, _bytes);
+      return new BigInteger(1, getBytes());
    }
 
    public boolean startsWith(byte[] checksum) {
       Preconditions.checkArgument(checksum.length < HASH_LENGTH); //typcially 4
       for (int i = 0, checksumLength = checksum.length; i < checksumLength; i++) {
-         if (_bytes[i] != checksum[i]) {
+         if (byteAt(i) != checksum[i]) {
             return false;
          }
       }
       return true;
    }
 
+   private byte byteAt(int i) {
+      return (byte) (getWord(i >> 3) >>> (56 - ((i & 7) << 3)));
+   }
+
    public byte[] firstFourBytes() {
       byte[] ret = new byte[4];
-      System.arraycopy(_bytes, 0, ret, 0, 4);
+      ret[0] = (byte) (_w0 >>> 56);
+      ret[1] = (byte) (_w0 >>> 48);
+      ret[2] = (byte) (_w0 >>> 40);
+      ret[3] = (byte) (_w0 >>> 32);
       return ret;
    }
 
    public String toHex() {
-      return HexUtils.toHex(_bytes);
+      return HexUtils.toHex(getBytes());
+   }
+
+   private void writeObject(ObjectOutputStream out) throws IOException {
+      ObjectOutputStream.PutField fields = out.putFields();
+      fields.put("_bytes", getBytes());
+      fields.put("_hash", -1);
+      out.writeFields();
+   }
+
+   private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+      ObjectInputStream.GetField fields = in.readFields();
+      byte[] bytes = (byte[]) fields.get("_bytes", null);
+      if (bytes == null || bytes.length != HASH_LENGTH) {
+         throw new InvalidObjectException("invalid hash length");
+      }
+      setWords(bytes, 0);
    }
 
 }
@@ -1,17 +1,21 @@
 package se.grunka.fortuna;
 
-import Rijndael.Rijndael;
+import com.mrd.bitlib.crypto.Aes;
 
 public class Encryption {
-    private final Rijndael rijndael = new Rijndael();
+    private Aes.BlockEncryptor encryptor;
 
     public void setKey(byte[] key) {
-        rijndael.makeKey(key, key.length * 8, Rijndael.DIR_ENCRYPT);
+        if (encryptor == null) {
+            encryptor = Aes.createEncryptor(key);
+        } else {
+            encryptor.setKey(key);
+        }
     }
 
     public byte[] encrypt(byte[] data) {
         byte[] result = new byte[data.length];
-        rijndael.encrypt(data, result);
+        encryptor.encrypt(data, result);
         return result;
     }
 }
@@ -23,16 +23,65 @@ public class Fortuna extends Random {
       return result;
    }
 
-   private long lastReseedTime = 0;
-   private long reseedCount = 0;
-   private final Generator generator;
+   private static final long RESEED_INTERVAL_MS = 100;
+   private static final int MAX_REQUEST_BYTES = 1048576;
+
+   /**
+    * The seed produced by the latest reseed from the pools
+    */
+   private static final class Seed {
+      private final long count;
+      private final long time;
+      private final byte[] data;
+
+      private Seed(long count, long time, byte[] data) {
+         this.count = count;
+         this.time = time;
+         this.data = data;
+      }
+   }
+
+   /**
+    * A generator together with the seed it was last reseeded from
+    */
+   private static final class GeneratorState {
+      private final Generator generator = new Generator();
+      private final byte[] personalization;
+      private long seedCount = 0;
+
+      private GeneratorState(byte[] personalization) {
+         this.personalization = personalization;
+      }
+
+      private byte[] randomData(Seed seed, int bytes) {
+         if (seedCount != seed.count) {
+            seedCount = seed.count;
+            byte[] input = new byte[seed.data.length + personalization.length];
+            System.arraycopy(seed.data, 0, input, 0, seed.data.length);
+            System.arraycopy(personalization, 0, input, seed.data.length, personalization.length);
+            generator.reseed(input);
+         }
+         return generator.pseudoRandomData(bytes);
+      }
+   }
+
    private final Pool[] pools;
+   private final ReentrantLock reseedLock = new ReentrantLock();
+   private long reseedCount = 0;
+   private volatile Seed seed;
+   private volatile long lastReseedNanos = 0;
    private final ReentrantLock lock = new ReentrantLock();
+   private final GeneratorState sharedState;
+   private final ThreadLocal<GeneratorState> threadState;
 
    public static Fortuna createInstance() {
       return createInstance(defaultSources());
    }
 
+   public static Fortuna createPerThreadInstance() {
+      return createPerThreadInstance(defaultSources());
+   }
+
    private static Iterable<EntropySource> defaultSources() {
       ImmutableList.Builder<EntropySource> b = ImmutableList.builder();
       b.add(new SchedulingEntropySource()
@@ -49,6 +98,19 @@ public class Fortuna extends Random {
    }
 
    public static Fortuna createInstance(Iterable<EntropySource> sources) {
+      return createInstance(sources, false);
+   }
+
+   /**
+    * Create an instance that gives every thread its own generator, so threads
+    * drawing random data do not contend on a lock. All generators are reseeded
+    * from the shared pools, each mixing in data that is unique to its thread.
+    */
+   public static Fortuna createPerThreadInstance(Iterable<EntropySource> sources) {
+      return createInstance(sources, true);
+   }
+
+   private static Fortuna createInstance(Iterable<EntropySource> sources, boolean perThread) {
       Pool[] pools = new Pool[32];
       for (int pool = 0; pool < pools.length; pool++) {
          pools[pool] = new Pool();
@@ -64,41 +126,133 @@ public class Fortuna extends Random {
             throw new Error("Interrupted while waiting for initialization", e);
          }
       }
-      return new Fortuna(new Generator(), pools);
+      return new Fortuna(pools, perThread);
    }
 
-   private Fortuna(Generator generator, Pool[] pools) {
-      this.generator = generator;
+   private Fortuna(Pool[] pools, boolean perThread) {
       this.pools = pools;
+      if (perThread) {
+         sharedState = null;
+         threadState = new ThreadLocal<GeneratorState>() {
+            @Override
+            protected GeneratorState initialValue() {
+               return new GeneratorState(threadPersonalization());
+            }
+         };
+      } else {
+         sharedState = new GeneratorState(new byte[0]);
+         threadState = null;
+      }
    }
 
-   private byte[] randomData(int bytes) {
-      lock.lock();
+   private static byte[] threadPersonalization() {
+      Thread thread = Thread.currentThread();
+      long[] values = { thread.getId(), System.identityHashCode(thread), System.nanoTime() };
+      byte[] result = new byte[values.length * 8];
+      for (int i = 0; i < result.length; i++) {
+         result[i] = (byte) (values[i / 8] >>> (8 * (i % 8)));
+      }
+      return result;
+   }
+
+   private Seed currentSeed() {
+      Seed current = seed;
+      long now = System.currentTimeMillis();
+      if (current != null && now - current.time <= RESEED_INTERVAL_MS) {
+         // Reseeded recently, no need to look at the pools
+         return current;
+      }
+      if (current != null && pools[0].size() < MIN_POOL_SIZE) {
+         return current;
+      }
+      long start = System.nanoTime();
+      if (current == null) {
+         reseedLock.lock();
+      } else if (!reseedLock.tryLock()) {
+         // Another thread is reseeding, use the current seed meanwhile
+         return current;
+      }
       try {
-         long now = System.currentTimeMillis();
-         if (pools[0].size() >= MIN_POOL_SIZE && now - lastReseedTime > 100) {
-            lastReseedTime = now;
-            reseedCount++;
-            byte[] seed = new byte[pools.length * 32]; // Maximum potential length
-            int seedLength = 0;
-            for (int pool = 0; pool < pools.length; pool++) {
-               if (reseedCount % POWERS_OF_TWO[pool] == 0) {
-                  System.arraycopy(pools[pool].getAndClear(), 0, seed, seedLength, 32);
-                  seedLength += 32;
-               }
-            }
-            generator.reseed(Util.arrayCopyOf(seed, seedLength));
+         if (seed != current) {
+            return seed;
          }
-         if (reseedCount == 0) {
-            throw new IllegalStateException("Generator not reseeded yet");
-         } else {
-            return generator.pseudoRandomData(bytes);
+         // Checked under the lock for the first seed, as another thread may
+         // have just emptied the pool to create it
+         if (pools[0].size() < MIN_POOL_SIZE) {
+            return current;
          }
+         reseedCount++;
+         byte[] data = new byte[pools.length * 32]; // Maximum potential length
+         int seedLength = 0;
+         for (int pool = 0; pool < pools.length; pool++) {
+            if (reseedCount % POWERS_OF_TWO[pool] == 0) {
+               System.arraycopy(pools[pool].getAndClear(), 0, data, seedLength, 32);
+               seedLength += 32;
+            }
+         }
+         seed = new Seed(reseedCount, now, Util.arrayCopyOf(data, seedLength));
+         lastReseedNanos = System.nanoTime() - start;
+         return seed;
+      } finally {
+         reseedLock.unlock();
+      }
+   }
+
+   /**
+    * @return the number of events each pool has received so far
+    */
+   public long[] getPoolEventCounts() {
+      long[] counts = new long[pools.length];
+      for (int pool = 0; pool < pools.length; pool++) {
+         counts[pool] = pools[pool].getEventCount();
+      }
+      return counts;
+   }
+
+   /**
+    * @return the number of reseeds from the pools so far
+    */
+   public long getReseedCount() {
+      Seed current = seed;
+      return current == null ? 0 : current.count;
+   }
+
+   /**
+    * @return the time in nanoseconds the latest reseed took, including waiting
+    *         for the reseed lock
+    */
+   public long getLastReseedNanos() {
+      return lastReseedNanos;
+   }
+
+   private byte[] randomData(int bytes) {
+      Seed current = currentSeed();
+      if (current == null) {
+         throw new IllegalStateException("Generator not reseeded yet");
+      }
+      if (threadState != null) {
+         return threadState.get().randomData(current, bytes);
+      }
+      lock.lock();
+      try {
+         return sharedState.randomData(current, bytes);
       } finally {
          lock.unlock();
       }
    }
 
+   /**
+    * Fill the array with many generator blocks per reseed check, rather than
+    * one reseed check per four bytes as {@link Random#nextBytes} does.
+    */
+   @Override
+   public void nextBytes(byte[] bytes) {
+      for (int offset = 0; offset < bytes.length; offset += MAX_REQUEST_BYTES) {
+         int length = Math.min(MAX_REQUEST_BYTES, bytes.length - offset);
+         System.arraycopy(randomData(length), 0, bytes, offset, length);
+      }
+   }
+
    @Override
    protected int next(int bits) {
       byte[] bytes = randomData(Util.ceil(bits, 8));
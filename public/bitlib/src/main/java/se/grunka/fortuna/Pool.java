@@ -11,6 +11,7 @@ public class Pool {
     private final Lock writeLock = lock.writeLock();
     private final MessageDigest poolDigest = createDigest();
     private long size = 0;
+    private long eventCount = 0;
 
     private MessageDigest createDigest() {
         try {
@@ -29,23 +30,54 @@ public class Pool {
         }
     }
 
+    /**
+     * @return the total number of events added to this pool
+     */
+    public long getEventCount() {
+        readLock.lock();
+        try {
+            return eventCount;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     public void add(int source, byte[] event) {
         writeLock.lock();
         try {
-            if (source < 0 || source > 255) {
-                throw new IllegalArgumentException("Source needs to be in the range 0 to 255, it was " + source);
-            }
-            if (event.length < 1 || event.length > 32) {
-                throw new IllegalArgumentException("The length of the event need to be in the range 1 to 32, it was " + event.length);
+            addEvent(source, event);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Add the first count events with one lock acquisition
+     */
+    public void add(int[] sources, byte[][] events, int count) {
+        writeLock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                addEvent(sources[i], events[i]);
             }
-            size += event.length + 2;
-            poolDigest.update(new byte[]{(byte) source, (byte) event.length});
-            poolDigest.update(event);
         } finally {
             writeLock.unlock();
         }
     }
 
+    private void addEvent(int source, byte[] event) {
+        if (source < 0 || source > 255) {
+            throw new IllegalArgumentException("Source needs to be in the range 0 to 255, it was " + source);
+        }
+        if (event.length < 1 || event.length > 32) {
+            throw new IllegalArgumentException("The length of the event need to be in the range 1 to 32, it was " + event.length);
+        }
+        size += event.length + 2;
+        eventCount++;
+        poolDigest.update(new byte[]{(byte) source, (byte) event.length});
+        poolDigest.update(event);
+    }
+
     public byte[] getAndClear() {
         writeLock.lock();
         try {
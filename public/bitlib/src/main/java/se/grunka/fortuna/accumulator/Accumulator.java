@@ -11,28 +11,43 @@ import java.util.concurrent.atomic.AtomicInteger;
 import se.grunka.fortuna.Pool;
 
 public class Accumulator {
-    private final Map<Integer, Context> eventContexts = new ConcurrentHashMap<Integer, Context>();
-    private final AtomicInteger sourceCount = new AtomicInteger(0);
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    /**
+     * One daemon thread polls the sources of all accumulators
+     */
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
         private final ThreadFactory delegate = Executors.defaultThreadFactory();
 
         @Override
         public Thread newThread(Runnable r) {
             Thread thread = delegate.newThread(r);
+            thread.setName("fortuna-accumulator");
             thread.setDaemon(true);
             return thread;
         }
     });
+
+    private final Map<Integer, Context> eventContexts = new ConcurrentHashMap<Integer, Context>();
+    private final AtomicInteger sourceCount = new AtomicInteger(0);
     private final Pool[] pools;
+    private final EventBatch batch;
 
     public Accumulator(Pool[] pools) {
         this.pools = pools;
+        batch = new EventBatch(pools);
+        // Sources may be backed off for a long time, so events never wait in
+        // the batch for much longer than its maximum age
+        SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                batch.flush();
+            }
+        }, EventBatch.MAX_AGE_NANOS, EventBatch.MAX_AGE_NANOS, TimeUnit.NANOSECONDS);
     }
 
     public void addSource(EntropySource entropySource) {
         int sourceId = sourceCount.getAndIncrement();
-        EventAdder eventAdder = new EventAdderImpl(sourceId, pools);
-        EventScheduler eventScheduler = new EventSchedulerImpl(sourceId, eventContexts, scheduler);
+        EventAdderImpl eventAdder = new EventAdderImpl(sourceId, pools, batch);
+        EventScheduler eventScheduler = new EventSchedulerImpl(sourceId, eventContexts, SCHEDULER, eventAdder, batch);
         Context context = new Context(entropySource, eventAdder, eventScheduler);
         eventContexts.put(sourceId, context);
         eventScheduler.schedule(0, TimeUnit.MILLISECONDS);
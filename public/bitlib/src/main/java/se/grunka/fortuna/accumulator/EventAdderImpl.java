@@ -1,21 +1,55 @@
 package se.grunka.fortuna.accumulator;
 
+import java.util.Arrays;
+
 import se.grunka.fortuna.Pool;
 
 public class EventAdderImpl implements EventAdder {
+    /**
+     * Pool 0 size in bytes at which further events are of little use until
+     * the next reseed drains it
+     */
+    static final long SATURATED_POOL_SIZE = 1024;
+
     private int pool;
     private final int sourceId;
     private final Pool[] pools;
+    private final EventBatch batch;
+    private byte[] lastEvent;
+    private boolean changed = true;
 
     public EventAdderImpl(int sourceId, Pool[] pools) {
+        this(sourceId, pools, null);
+    }
+
+    EventAdderImpl(int sourceId, Pool[] pools, EventBatch batch) {
         this.sourceId = sourceId;
         this.pools = pools;
+        this.batch = batch;
         pool = 0;
     }
 
     @Override
     public void add(byte[] event) {
         pool = (pool + 1) % pools.length;
-        pools[pool].add(sourceId, event);
+        if (lastEvent == null || !Arrays.equals(lastEvent, event)) {
+            changed = true;
+            lastEvent = event.clone();
+        }
+        if (batch == null) {
+            pools[pool].add(sourceId, event);
+        } else {
+            batch.add(pool, sourceId, event);
+        }
+    }
+
+    /**
+     * @return true if the source produced a new value since the last call and
+     *         the pools still need entropy
+     */
+    boolean isProductive() {
+        boolean result = changed;
+        changed = false;
+        return result && pools[0].size() < SATURATED_POOL_SIZE;
     }
 }
@@ -0,0 +1,75 @@
+package se.grunka.fortuna.accumulator;
+
+import se.grunka.fortuna.Pool;
+
+/**
+ * Collects events for the pools and adds them in batches, so that each pool
+ * lock is taken once per batch rather than once per event. The batch is
+ * flushed once it holds {@link #MAX_EVENTS} events or its oldest event is
+ * {@link #MAX_AGE_NANOS} old when a source fires, and in any case by the
+ * periodic {@link #flush()} of the accumulator. Only used from the
+ * accumulator scheduler thread.
+ */
+class EventBatch {
+    static final int MAX_EVENTS = 32;
+    static final long MAX_AGE_NANOS = 100000000L;
+
+    private final Pool[] pools;
+    private final int[][] sources;
+    private final byte[][][] events;
+    private final int[] counts;
+    private int total = 0;
+    private long oldest = 0;
+
+    EventBatch(Pool[] pools) {
+        this.pools = pools;
+        sources = new int[pools.length][MAX_EVENTS];
+        events = new byte[pools.length][MAX_EVENTS][];
+        counts = new int[pools.length];
+    }
+
+    void add(int pool, int source, byte[] event) {
+        if (counts[pool] == MAX_EVENTS) {
+            flush(pool);
+        }
+        if (total == 0) {
+            oldest = System.nanoTime();
+        }
+        // Sources may reuse their event buffer
+        sources[pool][counts[pool]] = source;
+        events[pool][counts[pool]] = event.clone();
+        counts[pool]++;
+        total++;
+    }
+
+    void flushIfDue() {
+        if (total >= MAX_EVENTS || (total > 0 && System.nanoTime() - oldest >= MAX_AGE_NANOS)) {
+            flush();
+        }
+    }
+
+    /**
+     * Add all collected events to their pools
+     */
+    void flush() {
+        for (int pool = 0; pool < pools.length; pool++) {
+            flush(pool);
+        }
+    }
+
+    private void flush(int pool) {
+        int count = counts[pool];
+        if (count == 0) {
+            return;
+        }
+        counts[pool] = 0;
+        total -= count;
+        try {
+            pools[pool].add(sources[pool], events[pool], count);
+        } finally {
+            for (int i = 0; i < count; i++) {
+                events[pool][i] = null;
+            }
+        }
+    }
+}
@@ -5,31 +5,57 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Schedules a source at the delay it asks for, multiplied by a backoff factor
+ * that doubles every time the source yields nothing new or the pools are
+ * saturated, and resets as soon as it yields something new again.
+ */
 public class EventSchedulerImpl implements EventScheduler {
+    static final int MAX_BACKOFF = 32;
+
     private final AtomicBoolean scheduled = new AtomicBoolean(false);
     private final int sourceId;
     private final Map<Integer, Context> eventContexts;
     private final ScheduledExecutorService scheduler;
+    private final EventAdderImpl adder;
+    private final EventBatch batch;
+    private int backoff = 1;
 
     public EventSchedulerImpl(int sourceId, Map<Integer, Context> eventContexts, ScheduledExecutorService scheduler) {
+        this(sourceId, eventContexts, scheduler, null, null);
+    }
+
+    EventSchedulerImpl(int sourceId, Map<Integer, Context> eventContexts, ScheduledExecutorService scheduler,
+                       EventAdderImpl adder, EventBatch batch) {
         this.sourceId = sourceId;
         this.eventContexts = eventContexts;
         this.scheduler = scheduler;
+        this.adder = adder;
+        this.batch = batch;
     }
 
     @Override
     public void schedule(long delay, TimeUnit timeUnit) {
         scheduled.set(true);
+        if (adder != null) {
+            backoff = adder.isProductive() ? 1 : Math.min(backoff * 2, MAX_BACKOFF);
+        }
         scheduler.schedule(new Runnable() {
             @Override
             public void run() {
                 Context context = eventContexts.get(sourceId);
                 scheduled.set(false);
-                context.source.event(context.scheduler, context.adder);
+                try {
+                    context.source.event(context.scheduler, context.adder);
+                } finally {
+                    if (batch != null) {
+                        batch.flushIfDue();
+                    }
+                }
                 if (!scheduled.get()) {
                     scheduler.schedule(this, 0, TimeUnit.MILLISECONDS);
                 }
             }
-        }, delay, timeUnit);
+        }, timeUnit.toNanos(delay) * backoff, TimeUnit.NANOSECONDS);
     }
 }
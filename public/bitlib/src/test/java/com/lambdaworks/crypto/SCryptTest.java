@@ -0,0 +1,71 @@
+// Copyright (C) 2011 - Will Glozer.  All rights reserved.
+
+package com.lambdaworks.crypto;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mrd.bitlib.util.HexUtils;
+
+public class SCryptTest {
+
+   // Test vector from RFC 7914
+   private static final byte[] PASSWORD = "password".getBytes();
+   private static final byte[] SALT = "NaCl".getBytes();
+   private static final String EXPECTED = "fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b3731622eaf30d92e22a"
+         + "3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640";
+
+   @Test
+   public void scryptJTest() throws Exception {
+      byte[] derived = SCrypt.scryptJ(PASSWORD, SALT, 1024, 8, 16, 64, null);
+      Assert.assertEquals(EXPECTED, HexUtils.toHex(derived));
+   }
+
+   @Test
+   public void layoutTest() throws Exception {
+      for (SCryptMemory.Layout layout : SCryptMemory.Layout.values()) {
+         byte[] derived = SCrypt.scryptJ(PASSWORD, SALT, 1024, 8, 16, 64, null, layout);
+         Assert.assertEquals(layout.name(), EXPECTED, HexUtils.toHex(derived));
+      }
+   }
+
+   @Test
+   public void scryptParallelTest() throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         SCryptProgress progress = new SCryptProgress(1024, 8, 16);
+         byte[] derived = SCrypt.scryptParallel(PASSWORD, SALT, 1024, 8, 16, 64, progress, executor, 4);
+         Assert.assertEquals(EXPECTED, HexUtils.toHex(derived));
+         Assert.assertEquals(1.0, progress.getProgress(), 0.0001);
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void progressTest() throws Exception {
+      // N smaller than the report interval still completes the progress
+      SCryptProgress progress = new SCryptProgress(16, 1, 2);
+      SCrypt.scryptJ(PASSWORD, SALT, 16, 1, 2, 64, progress);
+      Assert.assertEquals(1.0, progress.getProgress(), 0.0001);
+   }
+
+   @Test(expected = InterruptedException.class)
+   public void terminateTest() throws Exception {
+      SCryptProgress progress = new SCryptProgress(1024, 8, 16);
+      progress.terminate();
+      SCrypt.scryptJ(PASSWORD, SALT, 1024, 8, 16, 64, progress);
+   }
+
+   @Test
+   public void concurrentLanesTest() {
+      long lane = SCrypt.laneMemory(16384, 8);
+      Assert.assertEquals(1, SCrypt.concurrentLanes(16384, 8, 8, 0));
+      Assert.assertEquals(3, SCrypt.concurrentLanes(16384, 8, 8, lane * 3 + 1));
+      Assert.assertEquals(8, SCrypt.concurrentLanes(16384, 8, 8, Long.MAX_VALUE));
+   }
+
+}
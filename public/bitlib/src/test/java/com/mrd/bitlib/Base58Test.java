@@ -36,10 +36,14 @@ package com.mrd.bitlib;
 
 import com.google.bitcoinj.Base58;
 
+import java.math.BigInteger;
+import java.util.Random;
+
 import org.junit.Test;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class Base58Test {
 
@@ -58,4 +62,50 @@ public class Base58Test {
       Base58.decode(null);
    }
 
+   @Test
+   public void testMatchesBigIntegerReference() {
+      Random random = new Random(58);
+      for (int i = 0; i < 2000; i++) {
+         byte[] bytes = new byte[random.nextInt(80)];
+         random.nextBytes(bytes);
+         // leading zeros are encoded as '1'
+         for (int j = 0; j < bytes.length && random.nextInt(4) == 0; j++) {
+            bytes[j] = 0;
+         }
+         String encoded = Base58.encode(bytes);
+         assertEquals(referenceEncode(bytes), encoded);
+         assertArrayEquals(bytes, Base58.decode(encoded));
+      }
+   }
+
+   @Test
+   public void testChecked() {
+      String address = "1AGNa15ZQXAZUgFiqJ2i7Z2DPU2J6hW62i";
+      byte[] payload = Base58.decodeChecked(address);
+      assertEquals(21, payload.length);
+      assertArrayEquals(payload, Base58.decodeChecked(address, 21));
+      assertEquals(address, Base58.encodeWithChecksum(payload));
+      assertNull(Base58.decodeChecked(address, 20));
+      assertNull(Base58.decodeChecked("1AGNa15ZQXAZUgFiqJ2i7Z2DPU2J6hW62j"));
+      assertNull(Base58.decodeChecked("1AGNa15ZQXAZUgFiqJ2i7Z2DPU2J6hW62I"));
+      String wif = "5HueCGU8rMjxEXxiPuD5BDku4MkFqeZyd4dZ1jvhTVqvbTLvyTJ";
+      assertEquals(33, Base58.decodeChecked(wif).length);
+      assertEquals(wif, Base58.encodeWithChecksum(Base58.decodeChecked(wif)));
+   }
+
+   private static String referenceEncode(byte[] bytes) {
+      StringBuilder sb = new StringBuilder();
+      BigInteger value = new BigInteger(1, bytes);
+      BigInteger base = BigInteger.valueOf(58);
+      while (value.signum() > 0) {
+         BigInteger[] divmod = value.divideAndRemainder(base);
+         sb.append(Base58.ALPHABET[divmod[1].intValue()]);
+         value = divmod[0];
+      }
+      for (int i = 0; i < bytes.length && bytes[i] == 0; i++) {
+         sb.append(Base58.ALPHABET[0]);
+      }
+      return sb.reverse().toString();
+   }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.crypto;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.util.HexUtils;
+
+public class AesTest {
+
+   // FIPS-197 appendix C.3
+   private static final byte[] KEY = HexUtils.toBytes("000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f");
+   private static final byte[] PLAINTEXT = HexUtils.toBytes("00112233445566778899aabbccddeeff");
+   private static final String CIPHERTEXT = "8ea2b7ca516745bfeafc49904b496089";
+
+   @Test
+   public void fipsVectorTest() {
+      assertEquals(CIPHERTEXT, HexUtils.toHex(Aes.encryptEcb(KEY, PLAINTEXT)));
+      assertEquals(CIPHERTEXT, HexUtils.toHex(Aes.rijndaelEncrypt(KEY, null, PLAINTEXT)));
+      assertEquals(HexUtils.toHex(PLAINTEXT), HexUtils.toHex(Aes.decryptEcb(KEY, HexUtils.toBytes(CIPHERTEXT))));
+      byte[] ciphertext = new byte[16];
+      Aes.createEncryptor(KEY).encrypt(PLAINTEXT, ciphertext);
+      assertEquals(CIPHERTEXT, HexUtils.toHex(ciphertext));
+   }
+
+   @Test
+   public void encryptorRekeyTest() {
+      byte[] otherKey = new byte[16];
+      new Random(42).nextBytes(otherKey);
+      byte[] ciphertext = new byte[16];
+      Aes.BlockEncryptor encryptor = Aes.createEncryptor(otherKey);
+      encryptor.encrypt(PLAINTEXT, ciphertext);
+      assertEquals(HexUtils.toHex(Aes.encryptEcb(otherKey, PLAINTEXT)), HexUtils.toHex(ciphertext));
+      encryptor.setKey(KEY);
+      encryptor.encrypt(PLAINTEXT, ciphertext);
+      assertEquals(CIPHERTEXT, HexUtils.toHex(ciphertext));
+      encryptor.setKey(otherKey);
+      encryptor.encrypt(PLAINTEXT, ciphertext);
+      assertEquals(HexUtils.toHex(Aes.encryptEcb(otherKey, PLAINTEXT)), HexUtils.toHex(ciphertext));
+   }
+
+   @Test
+   public void cbcMatchesFallbackTest() {
+      Random random = new Random(42);
+      byte[] iv = new byte[Aes.BLOCK_SIZE];
+      random.nextBytes(iv);
+      for (int blocks = 0; blocks < 5; blocks++) {
+         byte[] plaintext = new byte[blocks * Aes.BLOCK_SIZE];
+         random.nextBytes(plaintext);
+         byte[] ciphertext = Aes.encryptCbc(KEY, iv, plaintext);
+         assertEquals(HexUtils.toHex(Aes.rijndaelEncrypt(KEY, iv, plaintext)), HexUtils.toHex(ciphertext));
+         assertEquals(HexUtils.toHex(plaintext), HexUtils.toHex(Aes.decryptCbc(KEY, iv, ciphertext)));
+         assertEquals(HexUtils.toHex(plaintext), HexUtils.toHex(Aes.rijndaelDecrypt(KEY, iv, ciphertext)));
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void partialBlockTest() {
+      Aes.encryptEcb(KEY, new byte[17]);
+   }
+
+}
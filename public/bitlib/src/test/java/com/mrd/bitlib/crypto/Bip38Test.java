@@ -35,12 +35,16 @@
 package com.mrd.bitlib.crypto;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
+import com.lambdaworks.crypto.SCryptProgress;
 import com.mrd.bitlib.model.NetworkParameters;
 import com.mrd.bitlib.util.HexUtils;
 
@@ -173,4 +177,43 @@ public class Bip38Test {
             NetworkParameters.productionNetwork);
       assertEquals(decoded, "5KMKKuUmAkiNbA3DazMQiLfDq47qs8MAEThm4yL8R2PhV1ov33D");
    }
+
+   @Test
+   public void decryptEcMultiplyBatch() throws InterruptedException {
+      List<Bip38.Bip38PrivateKey> keys = new ArrayList<Bip38.Bip38PrivateKey>();
+      keys.add(Bip38.parseBip38PrivateKey("6PgNBNNzDkKdhkT6uJntUXwwzQV8Rr2tZcbkDcuC9DZRsS6AtHts4Ypo1j"));
+      // Encrypted with the greek version of the passphrase
+      keys.add(Bip38.parseBip38PrivateKey("6PgGWtx25kUg8QWvwuJAgorN6k9FbE25rv5dMRwu5SKMnfpfVe5mar2ngH"));
+      keys.add(Bip38.parseBip38PrivateKey("6PgNBNNzDkKdhkT6uJntUXwwzQV8Rr2tZcbkDcuC9DZRsS6AtHts4Ypo1j"));
+      SCryptProgress progress = Bip38.getScryptProgressTracker(keys);
+      List<String> decoded = Bip38.decryptEcMultiply(keys, "MOLON LABE", progress, NetworkParameters.productionNetwork);
+      assertEquals(3, decoded.size());
+      assertEquals("5JLdxTtcTHcfYcmJsNVy1v2PMDx432JPoYcBTVVRHpPaxUrdtf8", decoded.get(0));
+      assertNull(decoded.get(1));
+      assertEquals("5JLdxTtcTHcfYcmJsNVy1v2PMDx432JPoYcBTVVRHpPaxUrdtf8", decoded.get(2));
+      assertEquals(1.0, progress.getProgress(), 0.0001);
+   }
+
+   @Test
+   public void encryptBatch() throws InterruptedException {
+      List<InMemoryPrivateKey> keys = new ArrayList<InMemoryPrivateKey>();
+      keys.add(new InMemoryPrivateKey("5KN7MzqK5wt2TP1fQCYyHBtDrXdJuXbUzm4A9rKAteGu3Qi5CVR",
+            NetworkParameters.productionNetwork));
+      keys.add(new InMemoryPrivateKey("L44B5gGEpqEDRS9vVPz7QT35jcBG2r3CZwSwQ4fCewXAhAhqGVpP",
+            NetworkParameters.productionNetwork));
+      final List<String> encoded = new ArrayList<String>();
+      Bip38BatchEncryptor encryptor = new Bip38BatchEncryptor("TestingOneTwoThree", keys.size(),
+            NetworkParameters.productionNetwork, Long.MAX_VALUE);
+      encryptor.encrypt(keys.iterator(), new Bip38BatchEncryptor.Receiver() {
+         @Override
+         public void onEncrypted(int index, InMemoryPrivateKey key, String bip38PrivateKey) {
+            assertEquals(encoded.size(), index);
+            encoded.add(bip38PrivateKey);
+         }
+      });
+      assertEquals(2, encoded.size());
+      assertEquals("6PRVWUbkzzsbcVac2qwfssoUJAN1Xhrg6bNk8J7Nzm5H7kxEbn2Nh2ZoGg", encoded.get(0));
+      assertEquals("6PYNKZ1EAgYgmQfmNVamxyXVWHzK5s6DGhwP4J5o44cvXdoY7sRzhtpUeo", encoded.get(1));
+      assertEquals(1.0, encryptor.getProgress(), 0.0001);
+   }
 }
@@ -1,7 +1,12 @@
 package com.mrd.bitlib.crypto;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -51,6 +56,62 @@ public class Gf256Test {
       testAllShareCombinations(secret, 5);
    }
 
+   /**
+    * Test streaming shares of a secret spanning several blocks
+    */
+   @Test
+   public void streamingShares() throws IOException {
+      byte[] secret = new byte[200000];
+      Random random = new Random(42);
+      random.nextBytes(secret);
+      Gf256 gf = new Gf256();
+      List<ByteArrayOutputStream> outs = new ArrayList<ByteArrayOutputStream>();
+      for (int i = 0; i < 5; i++) {
+         outs.add(new ByteArrayOutputStream());
+      }
+      gf.makeShares(new ByteArrayInputStream(secret), 3, outs, random);
+
+      List<ByteArrayInputStream> ins = new ArrayList<ByteArrayInputStream>();
+      for (int i : new int[] { 1, 3, 4 }) {
+         Assert.assertEquals(secret.length, outs.get(i).size());
+         ins.add(new ByteArrayInputStream(outs.get(i).toByteArray()));
+      }
+      ByteArrayOutputStream combined = new ByteArrayOutputStream();
+      gf.combineShares(new byte[] { 2, 4, 5 }, ins, combined);
+      Assert.assertArrayEquals(secret, combined.toByteArray());
+
+      // The same shares combine in memory too
+      List<Share> shares = new ArrayList<Share>();
+      shares.add(new Share((byte) 5, outs.get(4).toByteArray()));
+      shares.add(new Share((byte) 1, outs.get(0).toByteArray()));
+      shares.add(new Share((byte) 2, outs.get(1).toByteArray()));
+      Assert.assertArrayEquals(secret, gf.combineShares(shares));
+   }
+
+   /**
+    * Shares made in memory can be combined as streams
+    */
+   @Test
+   public void streamingCombineOfShares() throws IOException {
+      byte[] secret = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+      Gf256 gf = new Gf256();
+      List<Share> shares = gf.makeShares(secret, 2, 3);
+      List<ByteArrayInputStream> ins = new ArrayList<ByteArrayInputStream>();
+      ins.add(new ByteArrayInputStream(shares.get(2).data));
+      ins.add(new ByteArrayInputStream(shares.get(0).data));
+      ByteArrayOutputStream combined = new ByteArrayOutputStream();
+      gf.combineShares(new byte[] { shares.get(2).index, shares.get(0).index }, ins, combined);
+      Assert.assertArrayEquals(secret, combined.toByteArray());
+   }
+
+   @Test(expected = IOException.class)
+   public void streamingSharesOfDifferentLength() throws IOException {
+      List<ByteArrayInputStream> ins = new ArrayList<ByteArrayInputStream>();
+      ins.add(new ByteArrayInputStream(new byte[10]));
+      ins.add(new ByteArrayInputStream(new byte[11]));
+      new Gf256().combineShares(new byte[] { 1, 2 }, ins, new ByteArrayOutputStream());
+   }
+
    private int testAllShareCombinations(byte[] secret, int maxN) {
       int tests = 0;
       for (int n = 1; n <= maxN; n++) {
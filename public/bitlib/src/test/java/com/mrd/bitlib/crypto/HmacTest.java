@@ -34,8 +34,14 @@
 
 package com.mrd.bitlib.crypto;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Arrays;
 
 import org.junit.Test;
@@ -71,4 +77,46 @@ public class HmacTest {
       assertTrue(Arrays.equals(TEST_3_RESULT, Hmac.hmacSha512(TEST_3_KEY, TEST_3_DATA)));
    }
 
+   @Test
+   public void hmacContextTest() {
+      HmacContext context = HmacContext.sha512(TEST_2_KEY);
+      assertEquals(64, context.getMacLength());
+      // Reusing the context gives the same MAC every time
+      assertTrue(Arrays.equals(TEST_2_RESULT, context.mac(TEST_2_DATA)));
+      assertTrue(Arrays.equals(TEST_2_RESULT, context.mac(TEST_2_DATA)));
+
+      // Message slice into a caller buffer
+      byte[] message = new byte[TEST_2_DATA.length + 3];
+      System.arraycopy(TEST_2_DATA, 0, message, 2, TEST_2_DATA.length);
+      byte[] out = new byte[70];
+      assertEquals(64, context.mac(message, 2, TEST_2_DATA.length, out, 5));
+      assertTrue(Arrays.equals(TEST_2_RESULT, Arrays.copyOfRange(out, 5, 69)));
+
+      // Keys longer than the block size are hashed first
+      byte[] longKey = new byte[200];
+      Arrays.fill(longKey, (byte) 0xaa);
+      assertTrue(Arrays.equals(Hmac.hmacSha256(longKey, TEST_3_DATA),
+            HmacContext.sha256(longKey).mac(TEST_3_DATA)));
+      assertTrue(Hmac.testTestVectors());
+   }
+
+   @Test
+   public void hmacPrngSerializationTest() throws Exception {
+      HmacPRNG prng = new HmacPRNG(TEST_1_KEY);
+      prng.nextBytes(new byte[20]);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.writeObject(prng);
+      out.close();
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+      HmacPRNG copy = (HmacPRNG) in.readObject();
+
+      // The copy continues the sequence of the original
+      byte[] expected = new byte[40];
+      byte[] actual = new byte[40];
+      prng.nextBytes(expected);
+      copy.nextBytes(actual);
+      assertArrayEquals(expected, actual);
+   }
+
 }
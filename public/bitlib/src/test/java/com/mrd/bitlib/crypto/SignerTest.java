@@ -0,0 +1,137 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.crypto;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.crypto.ec.EcTools;
+import com.mrd.bitlib.crypto.ec.Parameters;
+import com.mrd.bitlib.crypto.ec.Point;
+import com.mrd.bitlib.model.NetworkParameters;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.Sha256Hash;
+
+public class SignerTest {
+
+   private static final RandomSource RANDOM = new RandomSource() {
+      private final Random _random = new Random(42);
+
+      @Override
+      public void nextBytes(byte[] bytes) {
+         _random.nextBytes(bytes);
+      }
+   };
+
+   @Test
+   public void multiplyGTest() {
+      Random random = new Random(1);
+      BigInteger[] scalars = { BigInteger.ONE, BigInteger.valueOf(15), BigInteger.valueOf(16),
+            Parameters.n.subtract(BigInteger.ONE), new BigInteger(256, random), new BigInteger(255, random),
+            new BigInteger(64, random) };
+      for (BigInteger k : scalars) {
+         assertEquals(EcTools.multiply(Parameters.G, k), EcTools.multiplyG(k));
+      }
+   }
+
+   @Test
+   public void multiplyGBatchTest() {
+      Random random = new Random(2);
+      BigInteger[] scalars = { BigInteger.ONE, BigInteger.ZERO, BigInteger.valueOf(2),
+            Parameters.n.subtract(BigInteger.ONE), new BigInteger(256, random), new BigInteger(200, random) };
+      Point[] points = EcTools.multiplyG(scalars);
+      for (int i = 0; i < scalars.length; i++) {
+         Point expected = scalars[i].signum() == 0 ? Parameters.curve.getInfinity() : EcTools.multiply(
+               Parameters.G, scalars[i]);
+         assertEquals(expected, points[i]);
+      }
+   }
+
+   @Test
+   public void generateBatchTest() {
+      RandomSource batchRandom = new FixedRandomSource(7);
+      RandomSource singleRandom = new FixedRandomSource(7);
+      List<InMemoryPrivateKey> keys = InMemoryPrivateKey.generateBatch(20, batchRandom, true);
+      assertEquals(20, keys.size());
+      for (InMemoryPrivateKey key : keys) {
+         InMemoryPrivateKey expected = new InMemoryPrivateKey(singleRandom, true);
+         assertArrayEquals(expected.getPrivateKeyBytes(), key.getPrivateKeyBytes());
+         assertArrayEquals(expected.getPublicKey().getPublicKeyBytes(), key.getPublicKey().getPublicKeyBytes());
+         assertEquals(expected.getPublicKey().toAddress(NetworkParameters.productionNetwork), key.getPublicKey()
+               .toAddress(NetworkParameters.productionNetwork));
+      }
+   }
+
+   private static class FixedRandomSource implements RandomSource {
+      private final Random _random;
+
+      private FixedRandomSource(long seed) {
+         _random = new Random(seed);
+      }
+
+      @Override
+      public void nextBytes(byte[] bytes) {
+         _random.nextBytes(bytes);
+      }
+   }
+
+   @Test
+   public void signManyTest() {
+      InMemoryPrivateKey key = new InMemoryPrivateKey(RANDOM, true);
+      List<Sha256Hash> hashes = new ArrayList<Sha256Hash>();
+      for (int i = 0; i < 10; i++) {
+         hashes.add(HashUtils.sha256(new byte[] { (byte) i }));
+      }
+      InMemoryPrivateKey.Signer signer = key.createSigner();
+      List<Signature> signatures = signer.signMany(hashes, RANDOM);
+      assertEquals(hashes.size(), signatures.size());
+      for (int i = 0; i < hashes.size(); i++) {
+         Signature sig = signatures.get(i);
+         assertTrue(sig.s.compareTo(Parameters.MAX_SIG_S) <= 0);
+         assertTrue(Signatures.verifySignature(hashes.get(i).getBytes(), sig, key.getPublicKey().getQ()));
+      }
+      Signature single = signer.sign(hashes.get(0), RANDOM);
+      assertTrue(Signatures.verifySignature(hashes.get(0).getBytes(), single, key.getPublicKey().getQ()));
+   }
+
+}
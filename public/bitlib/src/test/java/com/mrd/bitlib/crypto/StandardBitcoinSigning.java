@@ -1,6 +1,10 @@
 package com.mrd.bitlib.crypto;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
@@ -51,6 +55,35 @@ public class StandardBitcoinSigning {
 
    }
 
+   @Test
+   public void testBatchVerification() throws InterruptedException {
+      String message = "Hello, this is Mycelium";
+      String signature = "H9MwYMb/ctDd6BcFvtQKUjwq990y3xSm2K6WFZpMx5+7e+G5Ffqm/imFig0VKtiPL1GDryArVJcoEemLAN4+Z9Q=";
+      List<SignedMessage.Claim> claims = new ArrayList<SignedMessage.Claim>();
+      for (int i = 0; i < 100; i++) {
+         claims.add(new SignedMessage.Claim(address, message, signature));
+      }
+      claims.set(10, new SignedMessage.Claim(address, "Hello, this is NOT Mycelium", signature));
+      claims.set(20, new SignedMessage.Claim(address, message, "aaaa"));
+      claims.set(30, new SignedMessage.Claim(address, message,
+            "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa="));
+
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+         List<SignedMessage> results = SignedMessage.validate(claims, executor);
+         assertEquals(claims.size(), results.size());
+         for (int i = 0; i < results.size(); i++) {
+            if (i == 10 || i == 20 || i == 30) {
+               Assert.assertNull(results.get(i));
+            } else {
+               assertEquals(privKey.getPublicKey(), results.get(i).getPublicKey());
+            }
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
    private void assertFailingSig(String message, String signature) {
       try {
          SignedMessage.validate(address, message, signature);
@@ -35,6 +35,11 @@
 package com.mrd.bitlib.model;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -87,4 +92,45 @@ public class AddressTest {
       Assert.assertTrue(pAddr.getNetwork().isProdnet());
    }
 
+   @Test
+   public void parseAllTest() {
+      List<String> lines = Arrays.asList("1NiKrdcsiat3NVRu5XCmGkzZhZDTGXabU5", " 31qh3GkM3RLPfMy86XjisS7bVkz7Pz8wee\r",
+            "", "muvtKjWtqcxrsDYfvFCgGnkmB4EqEcU8Bk", "1NiKrdcsiat3NVRu5XCmGkzZhZDTGXabU6",
+            "1NiKrdcsiat3NVRu5XCmGkzZhZDTGXab0O", "1NiKrdcsiat3NVRu5XCmGkzZhZDTGXabU5U5");
+      Address.ParseResult result = Address.parseAll(lines, NetworkParameters.productionNetwork);
+      Assert.assertEquals(7, result.size());
+      Assert.assertEquals(Address.fromString("1NiKrdcsiat3NVRu5XCmGkzZhZDTGXabU5"), result.getAddress(0));
+      Assert.assertEquals("31qh3GkM3RLPfMy86XjisS7bVkz7Pz8wee", result.getAddress(1).toString());
+      Assert.assertEquals(Address.ParseError.EMPTY, result.getError(2));
+      Assert.assertEquals(Address.ParseError.WRONG_NETWORK, result.getError(3));
+      Assert.assertEquals(Address.ParseError.INVALID_CHECKSUM, result.getError(4));
+      Assert.assertEquals(Address.ParseError.INVALID_CHARACTER, result.getError(5));
+      Assert.assertEquals(Address.ParseError.INVALID_LENGTH, result.getError(6));
+      Assert.assertNull(result.getAddress(6));
+      Assert.assertEquals(5, result.getErrorCount());
+      Assert.assertEquals(2, result.getAddresses().size());
+   }
+
+   @Test
+   public void parseAllParallelTest() {
+      List<String> lines = new ArrayList<String>();
+      List<Address> expected = new ArrayList<Address>();
+      for (int i = 0; i < 10000; i++) {
+         byte[] bytes = new byte[20];
+         bytes[0] = (byte) i;
+         bytes[1] = (byte) (i >> 8);
+         Address address = Address.fromStandardBytes(bytes, NetworkParameters.productionNetwork);
+         lines.add(address.toString());
+         expected.add(address);
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         Address.ParseResult result = Address.parseAll(lines, NetworkParameters.productionNetwork, executor, 4);
+         Assert.assertEquals(0, result.getErrorCount());
+         Assert.assertEquals(expected, result.getAddresses());
+      } finally {
+         executor.shutdown();
+      }
+   }
+
 }
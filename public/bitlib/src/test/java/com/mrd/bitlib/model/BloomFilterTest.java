@@ -0,0 +1,219 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.StandardTransactionBuilder;
+import com.mrd.bitlib.StandardTransactionBuilder.UnsignedTransaction;
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PrivateKeyRing;
+import com.mrd.bitlib.crypto.RandomSource;
+import com.mrd.bitlib.model.BloomFilter.Update;
+import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.util.ByteReader;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.HexUtils;
+
+public class BloomFilterTest {
+
+   private static final NetworkParameters NETWORK = NetworkParameters.productionNetwork;
+
+   private static final RandomSource RANDOM = new RandomSource() {
+      private final Random _random = new Random(42);
+
+      @Override
+      public void nextBytes(byte[] bytes) {
+         _random.nextBytes(bytes);
+      }
+   };
+
+   @Test
+   public void murmurHash3Test() {
+      assertMurmur(0x00000000, 0x00000000, "");
+      assertMurmur(0x6a396f08, 0xFBA4C795, "");
+      assertMurmur(0x81f16f39, 0xffffffff, "");
+      assertMurmur(0x514e28b7, 0x00000000, "00");
+      assertMurmur(0xea3f0b17, 0xFBA4C795, "00");
+      assertMurmur(0xfd6cf10d, 0x00000000, "ff");
+      assertMurmur(0x16c6b7ab, 0x00000000, "0011");
+      assertMurmur(0x8eb51c3d, 0x00000000, "001122");
+      assertMurmur(0xb4471bf8, 0x00000000, "00112233");
+      assertMurmur(0xe2301fa8, 0x00000000, "0011223344");
+   }
+
+   private static void assertMurmur(int expected, int seed, String hex) {
+      byte[] data = HexUtils.toBytes(hex);
+      assertEquals(expected, BloomFilter.murmurHash3(seed, data, 0, data.length));
+      // The same data at an offset
+      byte[] padded = new byte[data.length + 3];
+      System.arraycopy(data, 0, padded, 2, data.length);
+      assertEquals(expected, BloomFilter.murmurHash3(seed, padded, 2, data.length));
+   }
+
+   @Test
+   public void serializeTest() throws Exception {
+      assertFilter("03614e9b050000000000000001", 0);
+      assertFilter("03ce4299050000000100008001", 0x80000001);
+   }
+
+   private static void assertFilter(String expected, int tweak) throws Exception {
+      BloomFilter filter = new BloomFilter(3, 0.01, tweak, Update.ALL);
+      filter.insert(HexUtils.toBytes("99108ad8ed9bb6274d3980bab5a85c048f0950c8"));
+      assertTrue(filter.contains(HexUtils.toBytes("99108ad8ed9bb6274d3980bab5a85c048f0950c8")));
+      assertFalse(filter.contains(HexUtils.toBytes("19108ad8ed9bb6274d3980bab5a85c048f0950c8")));
+      filter.insert(HexUtils.toBytes("b5a2c786d9ef4658287ced5914b37a1b4aa32eee"));
+      assertTrue(filter.contains(HexUtils.toBytes("b5a2c786d9ef4658287ced5914b37a1b4aa32eee")));
+      filter.insert(HexUtils.toBytes("b9300670b4c5366e95b2699e8b18bc75e5f729c5"));
+      assertTrue(filter.contains(HexUtils.toBytes("b9300670b4c5366e95b2699e8b18bc75e5f729c5")));
+      assertEquals(expected, HexUtils.toHex(filter.toBytes()));
+
+      BloomFilter copy = BloomFilter.fromByteReader(new ByteReader(filter.toBytes()));
+      assertEquals(expected, HexUtils.toHex(copy.toBytes()));
+      assertTrue(copy.contains(HexUtils.toBytes("99108ad8ed9bb6274d3980bab5a85c048f0950c8")));
+   }
+
+   @Test
+   public void sizingTest() {
+      assertEquals(BloomFilter.MAX_FILTER_SIZE, BloomFilter.optimalSize(1000000, 0.0001));
+      assertEquals(BloomFilter.MAX_HASH_FUNCTIONS, BloomFilter.optimalHashFunctions(1000, 1));
+      BloomFilter filter = new BloomFilter(1000, 0.001, 0, Update.NONE);
+      assertEquals(0.001, filter.getFalsePositiveRate(1000), 0.0002);
+      assertTrue(filter.getFalsePositiveRate(2000) > 0.01);
+
+      // The measured rate is close to the requested one
+      Random random = new Random(1);
+      byte[] element = new byte[20];
+      for (int i = 0; i < 1000; i++) {
+         random.nextBytes(element);
+         filter.insert(element);
+      }
+      int falsePositives = 0;
+      for (int i = 0; i < 100000; i++) {
+         random.nextBytes(element);
+         if (filter.contains(element)) {
+            falsePositives++;
+         }
+      }
+      assertTrue(falsePositives < 200);
+   }
+
+   @Test
+   public void transactionTest() throws Exception {
+      List<InMemoryPrivateKey> keys = InMemoryPrivateKey.generateBatch(4, RANDOM, true);
+      Address receiver = keys.get(1).getPublicKey().toAddress(NETWORK);
+      Transaction funding = createTransaction(keys.get(0), new OutPoint(HashUtils.sha256(new byte[] { 1 }), 0),
+            receiver);
+      Transaction spending = createTransaction(keys.get(1), new OutPoint(funding.getHash(), 0), keys.get(2)
+            .getPublicKey().toAddress(NETWORK));
+      Address unrelated = keys.get(3).getPublicKey().toAddress(NETWORK);
+
+      // Matching outputs insert their outpoints, so that spends match too
+      BloomFilter filter = new BloomFilter(10, 0.0001, 5, Update.ALL);
+      filter.insert(receiver);
+      assertFalse(filter.contains(new OutPoint(funding.getHash(), 0)));
+      assertTrue(filter.isRelevant(funding));
+      assertTrue(filter.contains(new OutPoint(funding.getHash(), 0)));
+      assertTrue(filter.isRelevant(spending));
+
+      // Without updates the spend does not push the address
+      filter = new BloomFilter(10, 0.0001, 5, Update.NONE);
+      filter.insert(receiver);
+      assertTrue(filter.isRelevant(funding.toBytes()));
+      assertFalse(filter.isRelevant(spending.toBytes()));
+
+      // Pay to address outputs are not inserted with P2PUBKEY_ONLY
+      filter = new BloomFilter(10, 0.0001, 5, Update.P2PUBKEY_ONLY);
+      filter.insert(receiver);
+      assertTrue(filter.isRelevant(funding));
+      assertFalse(filter.contains(new OutPoint(funding.getHash(), 0)));
+
+      // Spends match on the public key
+      filter = new BloomFilter(10, 0.0001, 5, Update.NONE);
+      filter.insert(keys.get(1).getPublicKey());
+      assertTrue(filter.isRelevant(funding));
+      assertTrue(filter.isRelevant(spending));
+
+      // Transactions match on their id
+      filter = new BloomFilter(10, 0.0001, 5, Update.NONE);
+      filter.insert(funding.getHash().reverse().getBytes());
+      assertTrue(filter.isRelevant(funding));
+      assertFalse(filter.isRelevant(spending));
+
+      filter = new BloomFilter(10, 0.0001, 5, Update.ALL);
+      filter.insert(unrelated);
+      assertFalse(filter.isRelevant(funding));
+      assertFalse(filter.isRelevant(spending));
+   }
+
+   @Test(expected = TransactionParsingException.class)
+   public void truncatedTransactionTest() throws Exception {
+      InMemoryPrivateKey key = new InMemoryPrivateKey(RANDOM, true);
+      Transaction transaction = createTransaction(key, new OutPoint(HashUtils.sha256(new byte[] { 2 }), 1), key
+            .getPublicKey().toAddress(NETWORK));
+      byte[] bytes = transaction.toBytes();
+      BloomFilter filter = new BloomFilter(10, 0.0001, 5, Update.NONE);
+      filter.isRelevant(Arrays.copyOf(bytes, bytes.length - 10));
+   }
+
+   /**
+    * Create a signed transaction that spends an output of 1 BTC of the given
+    * key, paying half of it to the receiver and the rest as change to the
+    * receiver as well
+    */
+   static Transaction createTransaction(InMemoryPrivateKey key, OutPoint outPoint, Address receiver)
+         throws Exception {
+      PrivateKeyRing keyRing = new PrivateKeyRing();
+      keyRing.addPrivateKey(key, NETWORK);
+      Address address = key.getPublicKey().toAddress(NETWORK);
+      List<UnspentTransactionOutput> unspent = Arrays.asList(new UnspentTransactionOutput(outPoint, 1, 100000000,
+            new ScriptOutputStandard(address.getTypeSpecificBytes())));
+      StandardTransactionBuilder builder = new StandardTransactionBuilder(NETWORK);
+      builder.addOutput(receiver, 50000000);
+      UnsignedTransaction unsigned = builder.createUnsignedTransaction(unspent, receiver, keyRing, NETWORK);
+      List<byte[]> signatures = StandardTransactionBuilder.generateSignatures(unsigned.getSignatureInfo(), keyRing,
+            RANDOM);
+      return StandardTransactionBuilder.finalizeTransaction(unsigned, signatures);
+   }
+
+}
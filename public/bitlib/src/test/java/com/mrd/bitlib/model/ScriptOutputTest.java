@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mrd.bitlib.util.HexUtils;
+
+public class ScriptOutputTest {
+
+   private static final String HASH = "89abcdefabbaabbaabbaabbaabbaabbaabbaabba";
+   private static final String PUBKEY = "0250863ad64a87ae8a2fe83c1af1a8403cb53f53e486d8511dad8a04887e5b2352";
+
+   private static ScriptOutput parse(String hex) {
+      return ScriptOutput.fromScriptBytes(HexUtils.toBytes(hex));
+   }
+
+   @Test
+   public void canonicalTemplatesTest() {
+      ScriptOutput standard = parse("76a914" + HASH + "88ac");
+      Assert.assertTrue(standard instanceof ScriptOutputStandard);
+      Assert.assertEquals(HASH, HexUtils.toHex(((ScriptOutputStandard) standard).getAddressBytes()));
+      Assert.assertTrue(parse("76a914" + HASH + "88ac61") instanceof ScriptOutputStandard);
+
+      ScriptOutput p2sh = parse("a914" + HASH + "87");
+      Assert.assertTrue(p2sh instanceof ScriptOutputMultisig);
+      Assert.assertEquals(HASH, HexUtils.toHex(((ScriptOutputMultisig) p2sh).getMultisigAddressBytes()));
+
+      ScriptOutput pubkey = parse("21" + PUBKEY + "ac");
+      Assert.assertTrue(pubkey instanceof ScriptOutputPubkey);
+      Assert.assertEquals(PUBKEY, HexUtils.toHex(((ScriptOutputPubkey) pubkey).getPublicKeyBytes()));
+   }
+
+   @Test
+   public void nonCanonicalTemplatesTest() {
+      // address pushed with OP_PUSHDATA1
+      ScriptOutput standard = parse("76a94c14" + HASH + "88ac");
+      Assert.assertTrue(standard instanceof ScriptOutputStandard);
+      Assert.assertEquals(HASH, HexUtils.toHex(((ScriptOutputStandard) standard).getAddressBytes()));
+
+      // a one byte push of the opcode value matches the opcode, as with byte[][] chunks
+      Assert.assertTrue(parse("0176a914" + HASH + "88ac") instanceof ScriptOutputStandard);
+
+      ScriptOutput msg = parse("0568656c6c6f75" + "21" + PUBKEY + "ac");
+      Assert.assertTrue(msg instanceof ScriptOutputMsg);
+      Assert.assertEquals("hello", ((ScriptOutputMsg) msg).getMessage());
+      Assert.assertEquals(PUBKEY, HexUtils.toHex(((ScriptOutputMsg) msg).getPublicKeyBytes()));
+
+      Assert.assertTrue(parse("76a914" + HASH + "88ad") instanceof ScriptOutputStrange);
+      Assert.assertTrue(parse("6a") instanceof ScriptOutputStrange);
+      Assert.assertTrue(parse("76a915" + HASH + "88ac") instanceof ScriptOutputStrange);
+   }
+
+   @Test
+   public void truncatedScriptTest() {
+      Assert.assertTrue(parse("76a914" + HASH.substring(2)) instanceof ScriptOutputError);
+      Assert.assertTrue(parse("4c") instanceof ScriptOutputError);
+      Assert.assertTrue(parse("4d01") instanceof ScriptOutputError);
+      Assert.assertTrue(parse("4effffffff") instanceof ScriptOutputError);
+   }
+
+   @Test
+   public void chunksTest() throws Script.ScriptParsingException {
+      byte[][] chunks = Script.chunksFromScriptBytes(HexUtils.toBytes("00" + "4c0201024d0300aabbcc" + "ac"));
+      Assert.assertEquals(4, chunks.length);
+      Assert.assertEquals("00", HexUtils.toHex(chunks[0]));
+      Assert.assertEquals("0102", HexUtils.toHex(chunks[1]));
+      Assert.assertEquals("aabbcc", HexUtils.toHex(chunks[2]));
+      Assert.assertEquals("ac", HexUtils.toHex(chunks[3]));
+   }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.RandomSource;
+import com.mrd.bitlib.model.Transaction.TransactionParsingException;
+import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.Hash160Set;
+import com.mrd.bitlib.util.HashUtils;
+import com.mrd.bitlib.util.OutPointSet;
+
+public class TransactionScannerTest {
+
+   private static final NetworkParameters NETWORK = NetworkParameters.productionNetwork;
+
+   private static final RandomSource RANDOM = new RandomSource() {
+      private final Random _random = new Random(7);
+
+      @Override
+      public void nextBytes(byte[] bytes) {
+         _random.nextBytes(bytes);
+      }
+   };
+
+   private static class RecordingListener implements TransactionScanner.Listener {
+      private final List<String> _matches = new ArrayList<String>();
+
+      @Override
+      public void onInput(byte[] buffer, int transactionOffset, int transactionLength, int inputIndex,
+            int outPointOffset) {
+         _matches.add(TransactionScanner.transactionHash(buffer, transactionOffset, transactionLength) + " in "
+               + inputIndex + " " + (outPointOffset - transactionOffset));
+      }
+
+      @Override
+      public void onOutput(byte[] buffer, int transactionOffset, int transactionLength, int outputIndex,
+            int hashOffset) {
+         _matches.add(TransactionScanner.transactionHash(buffer, transactionOffset, transactionLength) + " out "
+               + outputIndex + " " + Address.fromStandardBytes(copy(buffer, hashOffset, 20), NETWORK));
+      }
+   }
+
+   private static byte[] copy(byte[] buffer, int offset, int length) {
+      byte[] copy = new byte[length];
+      System.arraycopy(buffer, offset, copy, 0, length);
+      return copy;
+   }
+
+   @Test
+   public void scanTest() throws Exception {
+      List<InMemoryPrivateKey> keys = InMemoryPrivateKey.generateBatch(4, RANDOM, true);
+      Address wallet = keys.get(1).getPublicKey().toAddress(NETWORK);
+      Address other = keys.get(2).getPublicKey().toAddress(NETWORK);
+      Transaction funding = BloomFilterTest.createTransaction(keys.get(0), new OutPoint(HashUtils.sha256(new byte[] {
+            1 }), 0), wallet);
+      Transaction spending = BloomFilterTest.createTransaction(keys.get(1), new OutPoint(funding.getHash(), 1),
+            other);
+      Transaction unrelated = BloomFilterTest.createTransaction(keys.get(3), new OutPoint(HashUtils.sha256(new byte[] {
+            2 }), 0), other);
+
+      // A block with a zero header
+      ByteWriter writer = new ByteWriter(4096);
+      writer.putBytes(new byte[80]);
+      writer.putCompactInt(3);
+      funding.toByteWriter(writer);
+      unrelated.toByteWriter(writer);
+      spending.toByteWriter(writer);
+      byte[] block = writer.toBytes();
+
+      Hash160Set addresses = new Hash160Set();
+      addresses.add(wallet);
+      OutPointSet outPoints = new OutPointSet();
+      outPoints.add(new OutPoint(funding.getHash(), 1));
+      TransactionScanner scanner = new TransactionScanner(addresses, outPoints);
+      RecordingListener listener = new RecordingListener();
+      assertEquals(2, scanner.scanBlock(block, listener));
+
+      List<String> expected = new ArrayList<String>();
+      expected.add(funding.getHash() + " out 0 " + wallet);
+      expected.add(funding.getHash() + " out 1 " + wallet);
+      expected.add(spending.getHash() + " in 0 5");
+      assertEquals(expected, listener._matches);
+
+      // The offsets of single transactions
+      byte[] bytes = unrelated.toBytes();
+      assertEquals(bytes.length, scanner.scan(bytes, 0, listener));
+      bytes = funding.toBytes();
+      assertEquals(~bytes.length, scanner.scan(bytes, 0, listener));
+
+      // Without outpoints only outputs match
+      scanner = new TransactionScanner(addresses, null);
+      listener = new RecordingListener();
+      assertEquals(1, scanner.scanBlock(block, listener));
+      assertEquals(expected.subList(0, 2), listener._matches);
+   }
+
+   @Test(expected = TransactionParsingException.class)
+   public void truncatedTest() throws Exception {
+      InMemoryPrivateKey key = new InMemoryPrivateKey(RANDOM, true);
+      Address address = key.getPublicKey().toAddress(NETWORK);
+      byte[] bytes = BloomFilterTest.createTransaction(key, new OutPoint(HashUtils.sha256(new byte[] { 3 }), 0),
+            address).toBytes();
+      new TransactionScanner(new Hash160Set(), null).scan(copy(bytes, 0, bytes.length - 1), 0,
+            new RecordingListener());
+   }
+
+}
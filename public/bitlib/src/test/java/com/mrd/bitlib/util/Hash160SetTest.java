@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Hash160SetTest {
+
+   @Test
+   public void addContainsTest() {
+      Hash160Set set = new Hash160Set();
+      Random random = new Random(3);
+      List<byte[]> hashes = new ArrayList<byte[]>();
+      for (int i = 0; i < 1000; i++) {
+         byte[] hash = new byte[Hash160Set.HASH_LENGTH];
+         random.nextBytes(hash);
+         hashes.add(hash);
+         Assert.assertTrue(set.add(hash));
+      }
+      Assert.assertEquals(1000, set.size());
+      byte[] buffer = new byte[25];
+      for (byte[] hash : hashes) {
+         Assert.assertFalse(set.add(hash));
+         // The hash inside a larger buffer, as in an output script
+         System.arraycopy(hash, 0, buffer, 3, Hash160Set.HASH_LENGTH);
+         Assert.assertTrue(set.contains(buffer, 3));
+      }
+      buffer[10]++;
+      Assert.assertFalse(set.contains(buffer, 3));
+      Assert.assertFalse(set.contains(new byte[Hash160Set.HASH_LENGTH]));
+   }
+
+   @Test
+   public void clearTest() {
+      Hash160Set set = new Hash160Set();
+      byte[] hash = new byte[Hash160Set.HASH_LENGTH];
+      hash[0] = 1;
+      set.add(hash);
+      set.clear();
+      Assert.assertEquals(0, set.size());
+      Assert.assertFalse(set.contains(hash));
+      Assert.assertTrue(set.add(hash));
+   }
+
+}
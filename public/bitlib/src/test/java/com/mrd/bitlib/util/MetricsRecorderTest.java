@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.mrd.bitlib.crypto.HdKeyNode;
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PublicKey;
+import com.mrd.bitlib.crypto.RandomSource;
+import com.mrd.bitlib.util.Metrics.Operation;
+
+public class MetricsRecorderTest {
+
+   private static final RandomSource RANDOM = new RandomSource() {
+      @Override
+      public void nextBytes(byte[] bytes) {
+         for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i + 1);
+         }
+      }
+   };
+
+   @Test
+   public void bucketTest() {
+      assertEquals(0, MetricsRecorder.bucket(0));
+      assertEquals(0, MetricsRecorder.bucket(1));
+      assertEquals(1, MetricsRecorder.bucket(2));
+      assertEquals(1, MetricsRecorder.bucket(3));
+      assertEquals(10, MetricsRecorder.bucket(1024));
+      assertEquals(62, MetricsRecorder.bucket(Long.MAX_VALUE));
+   }
+
+   @Test
+   public void recordTest() {
+      MetricsRecorder recorder = new MetricsRecorder();
+      recorder.record(Operation.SIGN, 100);
+      recorder.record(Operation.SIGN, 100);
+      recorder.record(Operation.SIGN, 5000);
+      assertEquals(3, recorder.getCount(Operation.SIGN));
+      assertEquals(5200, recorder.getTotalNanos(Operation.SIGN));
+      assertEquals(2, recorder.getHistogram(Operation.SIGN)[6]);
+      assertEquals(1, recorder.getHistogram(Operation.SIGN)[12]);
+      assertEquals(127, recorder.getPercentileNanos(Operation.SIGN, 50));
+      assertEquals(8191, recorder.getPercentileNanos(Operation.SIGN, 99));
+      assertEquals(0, recorder.getCount(Operation.VERIFY));
+      assertEquals(0, recorder.getPercentileNanos(Operation.VERIFY, 50));
+      recorder.reset();
+      assertEquals(0, recorder.getCount(Operation.SIGN));
+      assertEquals(0, recorder.getHistogram(Operation.SIGN)[6]);
+   }
+
+   @Test
+   public void instrumentationTest() throws Exception {
+      MetricsRecorder recorder = new MetricsRecorder();
+      Metrics.setSink(recorder);
+      try {
+         InMemoryPrivateKey key = new InMemoryPrivateKey(RANDOM, true);
+         PublicKey publicKey = key.getPublicKey();
+         Sha256Hash hash = HashUtils.sha256(new byte[] { 1, 2, 3 });
+         byte[] signature = key.makeStandardBitcoinSignature(hash, RANDOM);
+         assertTrue(publicKey.verifyStandardBitcoinSignature(hash, signature));
+         HdKeyNode.fromSeed(new byte[16]).createChildNode(0);
+      } finally {
+         Metrics.setSink(null);
+      }
+      assertEquals(1, recorder.getCount(Operation.SIGN));
+      assertEquals(1, recorder.getCount(Operation.VERIFY));
+      assertEquals(1, recorder.getCount(Operation.DERIVE));
+      assertTrue(recorder.getCount(Operation.EC_MULTIPLY) >= 3);
+
+      // Nothing is recorded without a sink
+      new InMemoryPrivateKey(RANDOM, true);
+      assertEquals(1, recorder.getCount(Operation.SIGN));
+      assertEquals(0, Metrics.start());
+   }
+
+}
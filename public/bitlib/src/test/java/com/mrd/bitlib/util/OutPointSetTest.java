@@ -0,0 +1,158 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mrd.bitlib.model.OutPoint;
+
+public class OutPointSetTest {
+
+   private static OutPoint randomOutPoint(Random random, Sha256Hash[] txids) {
+      return new OutPoint(txids[random.nextInt(txids.length)], random.nextInt(8));
+   }
+
+   private static Sha256Hash[] randomTxids(Random random, int count) {
+      Sha256Hash[] txids = new Sha256Hash[count];
+      for (int i = 0; i < count; i++) {
+         byte[] bytes = new byte[Sha256Hash.HASH_LENGTH];
+         random.nextBytes(bytes);
+         txids[i] = Sha256Hash.of(bytes);
+      }
+      return txids;
+   }
+
+   @Test
+   public void setMatchesHashSetTest() {
+      Random random = new Random(1);
+      Sha256Hash[] txids = randomTxids(random, 500);
+      Set<OutPoint> expected = new HashSet<OutPoint>();
+      OutPointSet set = new OutPointSet();
+      for (int i = 0; i < 20000; i++) {
+         OutPoint outPoint = randomOutPoint(random, txids);
+         if (random.nextInt(3) == 0) {
+            Assert.assertEquals(expected.remove(outPoint), set.remove(outPoint));
+         } else {
+            Assert.assertEquals(expected.add(outPoint), set.add(outPoint));
+         }
+         Assert.assertEquals(expected.size(), set.size());
+      }
+      for (Sha256Hash txid : txids) {
+         for (int index = 0; index < 8; index++) {
+            Assert.assertEquals(expected.contains(new OutPoint(txid, index)), set.contains(txid, index));
+         }
+      }
+      Assert.assertEquals(expected, set);
+      Assert.assertEquals(set, expected);
+   }
+
+   @Test
+   public void iteratorRemoveTest() {
+      Random random = new Random(2);
+      Sha256Hash[] txids = randomTxids(random, 2000);
+      OutPointSet set = new OutPointSet();
+      for (int i = 0; i < 3000; i++) {
+         set.add(randomOutPoint(random, txids));
+      }
+      Set<OutPoint> expected = new HashSet<OutPoint>(set);
+      int originalSize = set.size();
+      int visited = 0;
+      Iterator<OutPoint> it = set.iterator();
+      while (it.hasNext()) {
+         OutPoint outPoint = it.next();
+         visited++;
+         if (outPoint.index % 2 == 0) {
+            it.remove();
+            expected.remove(outPoint);
+         }
+      }
+      Assert.assertEquals(originalSize, visited);
+      Assert.assertEquals(expected, set);
+      set.clear();
+      Assert.assertTrue(set.isEmpty());
+      Assert.assertFalse(set.iterator().hasNext());
+   }
+
+   @Test
+   public void mapMatchesHashMapTest() {
+      Random random = new Random(3);
+      Sha256Hash[] txids = randomTxids(random, 300);
+      Map<OutPoint, Integer> expected = new HashMap<OutPoint, Integer>();
+      OutPointMap<Integer> map = new OutPointMap<Integer>();
+      for (int i = 0; i < 20000; i++) {
+         OutPoint outPoint = randomOutPoint(random, txids);
+         if (random.nextInt(3) == 0) {
+            Assert.assertEquals(expected.remove(outPoint), map.remove(outPoint));
+         } else {
+            Assert.assertEquals(expected.put(outPoint, i), map.put(outPoint, i));
+         }
+      }
+      Assert.assertEquals(expected, map);
+      for (OutPoint outPoint : expected.keySet()) {
+         Assert.assertEquals(expected.get(outPoint), map.get(outPoint.hash, outPoint.index));
+      }
+      for (Map.Entry<OutPoint, Integer> entry : map.entrySet()) {
+         entry.setValue(-1);
+      }
+      for (Integer value : map.values()) {
+         Assert.assertEquals(Integer.valueOf(-1), value);
+      }
+   }
+
+   @Test
+   public void containsSerializedTest() {
+      OutPoint outPoint = new OutPoint(HashUtils.sha256(new byte[] { 9 }), 0x01020304);
+      OutPointSet set = new OutPointSet();
+      set.add(outPoint);
+      // The outpoint as serialized in a transaction input, after 4 other bytes
+      ByteWriter writer = new ByteWriter(40);
+      writer.putIntLE(0);
+      writer.putSha256Hash(outPoint.hash, true);
+      writer.putIntLE(outPoint.index);
+      byte[] serialized = writer.toBytes();
+      Assert.assertTrue(set.containsSerialized(serialized, 4));
+      serialized[36]++;
+      Assert.assertFalse(set.containsSerialized(serialized, 4));
+   }
+
+}
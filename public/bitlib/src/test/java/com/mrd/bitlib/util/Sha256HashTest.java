@@ -0,0 +1,115 @@
+/*
+ * Copyright 2013 Megion Research and Development GmbH
+ *
+ * Licensed under the Microsoft Reference Source License (MS-RSL)
+ *
+ * This license governs use of the accompanying software. If you use the software, you accept this license.
+ * If you do not accept the license, do not use the software.
+ *
+ * 1. Definitions
+ * The terms "reproduce," "reproduction," and "distribution" have the same meaning here as under U.S. copyright law.
+ * "You" means the licensee of the software.
+ * "Your company" means the company you worked for when you downloaded the software.
+ * "Reference use" means use of the software within your company as a reference, in read only form, for the sole purposes
+ * of debugging your products, maintaining your products, or enhancing the interoperability of your products with the
+ * software, and specifically excludes the right to distribute the software outside of your company.
+ * "Licensed patents" means any Licensor patent claims which read directly on the software as distributed by the Licensor
+ * under this license.
+ *
+ * 2. Grant of Rights
+ * (A) Copyright Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free copyright license to reproduce the software for reference use.
+ * (B) Patent Grant- Subject to the terms of this license, the Licensor grants you a non-transferable, non-exclusive,
+ * worldwide, royalty-free patent license under licensed patents for reference use.
+ *
+ * 3. Limitations
+ * (A) No Trademark License- This license does not grant you any rights to use the Licensor’s name, logo, or trademarks.
+ * (B) If you begin patent litigation against the Licensor over patents that you think may apply to the software
+ * (including a cross-claim or counterclaim in a lawsuit), your license to the software ends automatically.
+ * (C) The software is licensed "as-is." You bear the risk of using it. The Licensor gives no express warranties,
+ * guarantees or conditions. You may have additional consumer rights under your local laws which this license cannot
+ * change. To the extent permitted under your local laws, the Licensor excludes the implied warranties of merchantability,
+ * fitness for a particular purpose and non-infringement.
+ */
+
+package com.mrd.bitlib.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.primitives.Ints;
+
+public class Sha256HashTest {
+
+   private static final byte[] BYTES = HexUtils
+         .toBytes("000102030405060708090a0b0c0d0e0f80f1e2d3c4b5a6978877665544332211");
+
+   @Test
+   public void bytesRoundTripTest() {
+      Sha256Hash hash = Sha256Hash.of(BYTES);
+      Assert.assertArrayEquals(BYTES, hash.getBytes());
+      Assert.assertEquals(HexUtils.toHex(BYTES), hash.toHex());
+      Assert.assertArrayEquals(HexUtils.toBytes("00010203"), hash.firstFourBytes());
+      Assert.assertTrue(hash.startsWith(HexUtils.toBytes("0001020304")));
+      Assert.assertFalse(hash.startsWith(HexUtils.toBytes("0001020305")));
+      Assert.assertEquals(hash, Sha256Hash.copyOf(BitUtils.copyOf(BYTES, 40), 0));
+      Assert.assertEquals(hash.hashCode(), Sha256Hash.of(BYTES).hashCode());
+   }
+
+   @Test
+   public void reverseTest() throws Exception {
+      Sha256Hash hash = Sha256Hash.of(BYTES);
+      Assert.assertArrayEquals(BitUtils.reverseBytes(BYTES), hash.reverse().getBytes());
+      Assert.assertEquals(hash, hash.reverse().reverse());
+      ByteWriter writer = new ByteWriter(64);
+      writer.putSha256Hash(hash);
+      writer.putSha256Hash(hash, true);
+      ByteReader reader = new ByteReader(writer.toBytes());
+      Assert.assertEquals(hash, reader.getSha256Hash());
+      Assert.assertEquals(hash.reverse(), reader.getSha256Hash());
+   }
+
+   @Test
+   public void compareToMatchesSignedByteOrderTest() {
+      Random random = new Random(42);
+      for (int i = 0; i < 1000; i++) {
+         byte[] a = new byte[Sha256Hash.HASH_LENGTH];
+         byte[] b = new byte[Sha256Hash.HASH_LENGTH];
+         random.nextBytes(a);
+         random.nextBytes(b);
+         // force long common prefixes now and then
+         System.arraycopy(a, 0, b, 0, random.nextInt(Sha256Hash.HASH_LENGTH));
+         Assert.assertEquals(Integer.signum(byteCompare(a, b)),
+               Integer.signum(Sha256Hash.of(a).compareTo(Sha256Hash.of(b))));
+      }
+      Assert.assertEquals(0, Sha256Hash.of(BYTES).compareTo(Sha256Hash.of(BYTES)));
+   }
+
+   @Test
+   public void serializationTest() throws Exception {
+      Sha256Hash hash = Sha256Hash.of(BYTES);
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bout);
+      out.writeObject(hash);
+      out.close();
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+      Assert.assertEquals(hash, in.readObject());
+      in.close();
+   }
+
+   private static int byteCompare(byte[] a, byte[] b) {
+      for (int i = 0; i < a.length; i++) {
+         int compare = Ints.compare(a[i], b[i]);
+         if (compare != 0) {
+            return compare;
+         }
+      }
+      return 0;
+   }
+}
@@ -6,6 +6,8 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class FortunaTest {
@@ -19,6 +21,55 @@ public class FortunaTest {
         }
     }
 
+    @Test
+    public void shouldGiveThreadsTheirOwnGenerators() throws Exception {
+        final Fortuna fortuna = Fortuna.createPerThreadInstance();
+        final byte[][] results = new byte[4][];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    byte[] bytes = new byte[64];
+                    fortuna.nextBytes(bytes);
+                    results[index] = bytes;
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < results.length; i++) {
+            for (int j = i + 1; j < results.length; j++) {
+                assertFalse(Arrays.equals(results[i], results[j]));
+            }
+        }
+    }
+
+    @Test
+    public void shouldFillLargeArrays() throws Exception {
+        Fortuna fortuna = Fortuna.createInstance();
+        byte[] bytes = new byte[1048576 + 100];
+        fortuna.nextBytes(bytes);
+        byte[] head = Arrays.copyOfRange(bytes, 0, 32);
+        byte[] tail = Arrays.copyOfRange(bytes, bytes.length - 32, bytes.length);
+        assertFalse(Arrays.equals(head, tail));
+        assertFalse(Arrays.equals(new byte[32], tail));
+    }
+
+    @Test
+    public void shouldCountEventsAndReseeds() throws Exception {
+        Fortuna fortuna = Fortuna.createInstance();
+        fortuna.nextInt();
+        long[] counts = fortuna.getPoolEventCounts();
+        assertEquals(32, counts.length);
+        assertTrue(counts[0] > 0);
+        assertTrue(fortuna.getReseedCount() >= 1);
+        assertTrue(fortuna.getLastReseedNanos() > 0);
+    }
+
     @Ignore
     @Test
     public void shouldProduceEvenDistribution() throws Exception {
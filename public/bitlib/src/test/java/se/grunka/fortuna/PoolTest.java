@@ -61,6 +61,18 @@ public class PoolTest {
         assertEquals(0, pool.size());
     }
 
+    @Test
+    public void shouldAddBatchLikeSingleEvents() throws Exception {
+        Pool single = new Pool();
+        single.add(1, "Hello".getBytes());
+        single.add(2, "World".getBytes());
+        pool.add(new int[]{1, 2, 3}, new byte[][]{"Hello".getBytes(), "World".getBytes(), "Ignored".getBytes()}, 2);
+        assertEquals(single.size(), pool.size());
+        assertEquals(2, pool.getEventCount());
+        assertArrayEquals(single.getAndClear(), pool.getAndClear());
+        assertEquals(2, pool.getEventCount());
+    }
+
     @Test
     public void shouldGet32BytesOfSeedData() throws Exception {
         byte[] bytes = pool.getAndClear();
@@ -0,0 +1,75 @@
+package se.grunka.fortuna.accumulator;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import se.grunka.fortuna.Pool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EventBatchTest {
+    private Pool[] pools;
+    private EventBatch batch;
+
+    @Before
+    public void before() throws Exception {
+        pools = new Pool[4];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new Pool();
+        }
+        batch = new EventBatch(pools);
+    }
+
+    private long eventsInPools() {
+        long events = 0;
+        for (Pool pool : pools) {
+            events += pool.getEventCount();
+        }
+        return events;
+    }
+
+    @Test
+    public void shouldFlushWhenFull() throws Exception {
+        for (int i = 0; i < EventBatch.MAX_EVENTS - 1; i++) {
+            batch.add(i % pools.length, 1, new byte[]{(byte) i});
+            batch.flushIfDue();
+            assertEquals(0, eventsInPools());
+        }
+        batch.add(0, 1, new byte[]{1});
+        batch.flushIfDue();
+        assertEquals(EventBatch.MAX_EVENTS, eventsInPools());
+    }
+
+    @Test
+    public void shouldFlushWhenOld() throws Exception {
+        batch.add(0, 1, new byte[]{1});
+        batch.flushIfDue();
+        assertEquals(0, eventsInPools());
+        Thread.sleep(EventBatch.MAX_AGE_NANOS / 1000000 + 10);
+        batch.flushIfDue();
+        assertEquals(1, eventsInPools());
+    }
+
+    @Test
+    public void shouldFlushFullPoolOnAdd() throws Exception {
+        for (int i = 0; i < EventBatch.MAX_EVENTS; i++) {
+            batch.add(0, 1, new byte[]{(byte) i});
+        }
+        assertEquals(0, pools[0].getEventCount());
+        batch.add(0, 1, new byte[]{1});
+        assertEquals(EventBatch.MAX_EVENTS, pools[0].getEventCount());
+    }
+
+    @Test
+    public void shouldCopyEvents() throws Exception {
+        byte[] event = {1, 2, 3};
+        batch.add(0, 1, event);
+        event[0] = 9;
+        batch.flush();
+        Pool expected = new Pool();
+        expected.add(1, new byte[]{1, 2, 3});
+        assertEquals(1, pools[0].getEventCount());
+        assertArrayEquals(expected.getAndClear(), pools[0].getAndClear());
+    }
+}
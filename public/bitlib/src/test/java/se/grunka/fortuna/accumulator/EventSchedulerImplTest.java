@@ -0,0 +1,126 @@
+package se.grunka.fortuna.accumulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.grunka.fortuna.Pool;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventSchedulerImplTest {
+    private static final long DELAY_MILLIS = 10;
+
+    /**
+     * Records the delays of scheduled tasks instead of running them
+     */
+    private static class RecordingScheduler extends ScheduledThreadPoolExecutor {
+        private final List<Long> delays = new ArrayList<Long>();
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        RecordingScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            delays.add(unit.toMillis(delay));
+            tasks.add(command);
+            return null;
+        }
+
+        long lastDelay() {
+            return delays.get(delays.size() - 1);
+        }
+    }
+
+    private Pool[] pools;
+    private RecordingScheduler executor;
+    private EventAdderImpl adder;
+    private EventSchedulerImpl scheduler;
+
+    @Before
+    public void before() throws Exception {
+        pools = new Pool[32];
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new Pool();
+        }
+        executor = new RecordingScheduler();
+        adder = new EventAdderImpl(0, pools);
+        scheduler = new EventSchedulerImpl(0, new ConcurrentHashMap<Integer, Context>(), executor, adder, null);
+    }
+
+    @After
+    public void after() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldBackOffWhileValueRepeats() throws Exception {
+        adder.add(new byte[]{1});
+        scheduler.schedule(DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        assertEquals(DELAY_MILLIS, executor.lastDelay());
+        for (int backoff = 2; backoff <= EventSchedulerImpl.MAX_BACKOFF; backoff *= 2) {
+            adder.add(new byte[]{1});
+            scheduler.schedule(DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            assertEquals(DELAY_MILLIS * backoff, executor.lastDelay());
+        }
+        adder.add(new byte[]{1});
+        scheduler.schedule(DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        assertEquals(DELAY_MILLIS * EventSchedulerImpl.MAX_BACKOFF, executor.lastDelay());
+
+        // A new value resets the backoff
+        adder.add(new byte[]{2});
+        scheduler.schedule(DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        assertEquals(DELAY_MILLIS, executor.lastDelay());
+    }
+
+    @Test
+    public void shouldBackOffWhilePoolsAreSaturated() throws Exception {
+        while (pools[0].size() < EventAdderImpl.SATURATED_POOL_SIZE) {
+            pools[0].add(1, new byte[32]);
+        }
+        byte value = 0;
+        for (int backoff = 2; backoff <= EventSchedulerImpl.MAX_BACKOFF; backoff *= 2) {
+            adder.add(new byte[]{value++});
+            scheduler.schedule(DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            assertEquals(DELAY_MILLIS * backoff, executor.lastDelay());
+        }
+    }
+
+    @Test
+    public void shouldRunSourceAndFlushBatch() throws Exception {
+        EventBatch batch = new EventBatch(pools);
+        final EventAdderImpl batchAdder = new EventAdderImpl(0, pools, batch);
+        Map<Integer, Context> contexts = new ConcurrentHashMap<Integer, Context>();
+        final EventSchedulerImpl batchScheduler = new EventSchedulerImpl(0, contexts, executor, batchAdder, batch);
+        EntropySource source = new EntropySource() {
+            private byte value = 0;
+
+            @Override
+            public void event(EventScheduler scheduler, EventAdder adder) {
+                for (int i = 0; i < EventBatch.MAX_EVENTS; i++) {
+                    adder.add(new byte[]{value++});
+                }
+                scheduler.schedule(DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        };
+        contexts.put(0, new Context(source, batchAdder, batchScheduler));
+        batchScheduler.schedule(0, TimeUnit.MILLISECONDS);
+        executor.tasks.get(0).run();
+        assertEquals(DELAY_MILLIS, executor.lastDelay());
+        long events = 0;
+        for (Pool pool : pools) {
+            events += pool.getEventCount();
+        }
+        assertEquals(EventBatch.MAX_EVENTS, events);
+    }
+}
@@ -2,13 +2,14 @@ package com.mycelium.lt;
 
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
-import Rijndael.Rijndael;
-
 import com.google.common.io.BaseEncoding;
+import com.mrd.bitlib.crypto.Aes;
 import com.mrd.bitlib.crypto.Ecdh;
-import com.mrd.bitlib.crypto.Hmac;
+import com.mrd.bitlib.crypto.HmacContext;
 import com.mrd.bitlib.crypto.InMemoryPrivateKey;
 import com.mrd.bitlib.crypto.PublicKey;
 import com.mrd.bitlib.util.BitUtils;
@@ -34,6 +35,7 @@ public class ChatMessageEncryptionKey implements Serializable {
 
    public final byte[] encryptionKey;
    public final byte[] hmacKey;
+   private transient volatile HmacContext hmacContext;
 
    private ChatMessageEncryptionKey(byte[] aesKey, byte[] hmacKey) {
       this.encryptionKey = aesKey;
@@ -65,6 +67,13 @@ public class ChatMessageEncryptionKey implements Serializable {
       return new ChatMessageEncryptionKey(encryptionKey, hmacKey);
    }
 
+   /**
+    * @return a key with its own copy of the key material
+    */
+   ChatMessageEncryptionKey copy() {
+      return new ChatMessageEncryptionKey(BitUtils.copyByteArray(encryptionKey), BitUtils.copyByteArray(hmacKey));
+   }
+
    @Override
    public int hashCode() {
       return (int) BitUtils.uint32ToLong(encryptionKey, 0) + (int) BitUtils.uint32ToLong(hmacKey, 0);
@@ -108,7 +117,7 @@ public class ChatMessageEncryptionKey implements Serializable {
       writer.putBytes(messageBytes);
 
       // Encrypt message using the MAC value as IV
-      byte[] IV = BitUtils.copyOf(mac, Rijndael.BLOCK_SIZE);
+      byte[] IV = BitUtils.copyOf(mac, Aes.BLOCK_SIZE);
       byte[] enc = aesCbcEncryption(IV, writer.toBytes());
 
       // Concatenate the MAC value and the encrypted message
@@ -145,15 +154,78 @@ public class ChatMessageEncryptionKey implements Serializable {
       byte[] encryptedBytes = BitUtils.copyOfRange(encryptedMessageBytes, MAC_LENGTH, encryptedMessageBytes.length);
 
       // Decrypt message using the MAC value as IV
-      byte[] IV = BitUtils.copyOf(mac, Rijndael.BLOCK_SIZE);
+      byte[] IV = BitUtils.copyOf(mac, Aes.BLOCK_SIZE);
       byte[] decryptedMessage = aesDecrypt(IV, encryptedBytes);
+      return checkDecryptedMessage(mac, decryptedMessage, encryptedMessageBytes.length);
+   }
+
+   /**
+    * Decrypt and verify the integrity of many encrypted chat messages, such as
+    * a whole chat history. All messages are decrypted with a single AES key
+    * setup, as CBC decryption of a block only depends on the block before it.
+    * 
+    * @param encryptedChatMessages
+    *           the encrypted messages
+    * @return the plaintext of each message in the same order, or null for
+    *         messages that fail integrity checks
+    */
+   public List<String> decryptAndCheckChatMessages(List<String> encryptedChatMessages) {
+      int count = encryptedChatMessages.size();
+      byte[][] encryptedMessages = new byte[count][];
+      int totalLength = 0;
+      for (int i = 0; i < count; i++) {
+         try {
+            encryptedMessages[i] = BaseEncoding.base64().omitPadding().decode(encryptedChatMessages.get(i));
+         } catch (IllegalArgumentException e) {
+            continue;
+         }
+         totalLength += paddedLength(Math.max(0, encryptedMessages[i].length - MAC_LENGTH));
+      }
+
+      // Decrypt the blocks of all messages in one go, then chain each message
+      // with its IV
+      byte[] allEncrypted = new byte[totalLength];
+      int offset = 0;
+      for (byte[] encryptedMessage : encryptedMessages) {
+         if (encryptedMessage != null && encryptedMessage.length > MAC_LENGTH) {
+            System.arraycopy(encryptedMessage, MAC_LENGTH, allEncrypted, offset, encryptedMessage.length - MAC_LENGTH);
+            offset += paddedLength(encryptedMessage.length - MAC_LENGTH);
+         }
+      }
+      byte[] allDecrypted = totalLength == 0 ? allEncrypted : Aes.decryptEcb(encryptionKey, allEncrypted);
+
+      List<String> result = new ArrayList<String>(count);
+      offset = 0;
+      for (byte[] encryptedMessage : encryptedMessages) {
+         if (encryptedMessage == null) {
+            result.add(null);
+            continue;
+         }
+         byte[] mac = BitUtils.copyOf(encryptedMessage, MAC_LENGTH);
+         int length = paddedLength(Math.max(0, encryptedMessage.length - MAC_LENGTH));
+         byte[] decryptedMessage = BitUtils.copyOfRange(allDecrypted, offset, offset + length);
+         for (int i = 0; i < length; i++) {
+            // The first block is chained with the IV, which is the MAC value
+            decryptedMessage[i] ^= i < Aes.BLOCK_SIZE ? mac[i] : allEncrypted[offset + i - Aes.BLOCK_SIZE];
+         }
+         offset += length;
+         try {
+            result.add(checkDecryptedMessage(mac, decryptedMessage, encryptedMessage.length));
+         } catch (InvalidChatMessage e) {
+            result.add(null);
+         }
+      }
+      return result;
+   }
 
+   private String checkDecryptedMessage(byte[] mac, byte[] decryptedMessage, int encryptedLength)
+         throws InvalidChatMessage {
       // Get message bytes
       ByteReader reader = new ByteReader(decryptedMessage);
       byte[] messageBytes;
       try {
          int messageByteSize = reader.getIntLE();
-         if (messageByteSize < 0 || messageByteSize > encryptedMessageBytes.length) {
+         if (messageByteSize < 0 || messageByteSize > encryptedLength) {
             throw new InvalidChatMessage("Invalid chat message size");
          }
          messageBytes = reader.getBytes(messageByteSize);
@@ -173,53 +245,26 @@ public class ChatMessageEncryptionKey implements Serializable {
    }
 
    private byte[] aesDecrypt(byte[] IV, byte[] encryptedBytes) {
-      // Prepare AES key
-      Rijndael aes = new Rijndael();
-      aes.makeKey(encryptionKey, encryptionKey.length * 8, Rijndael.DIR_DECRYPT);
-
       // Decrypt in CBC mode using IV
-      byte[] pt = new byte[Rijndael.BLOCK_SIZE];
-      byte[] ct;
-      byte[] parentBlock = IV;
-      ByteWriter writer = new ByteWriter(encryptedBytes.length);
-      for (int i = 0; i < encryptedBytes.length; i += Rijndael.BLOCK_SIZE) {
-         ct = BitUtils.copyOfRange(encryptedBytes, i, i + Rijndael.BLOCK_SIZE);
-         aes.decrypt(ct, pt);
-         xorBytes(parentBlock, pt);
-         parentBlock = ct;
-         writer.putBytes(pt);
-      }
-      return writer.toBytes();
+      return Aes.decryptCbc(encryptionKey, IV, padToBlockSize(encryptedBytes));
    }
 
    private byte[] aesCbcEncryption(byte[] IV, byte[] data) {
-
-      // Prepare AES key
-      Rijndael aes = new Rijndael();
-      aes.makeKey(encryptionKey, encryptionKey.length * 8, Rijndael.DIR_ENCRYPT);
-
       // Encrypt in CBC mode using IV
-      byte[] pt;
-      byte[] ct = new byte[Rijndael.BLOCK_SIZE];
-      byte[] parentBlock = IV;
-      ByteWriter writer = new ByteWriter(data.length + Rijndael.BLOCK_SIZE);
-      for (int i = 0; i < data.length; i += Rijndael.BLOCK_SIZE) {
-         pt = BitUtils.copyOfRange(data, i, i + Rijndael.BLOCK_SIZE);
-         xorBytes(parentBlock, pt);
-         aes.encrypt(pt, ct);
-         parentBlock = ct;
-         writer.putBytes(ct);
-      }
-      return writer.toBytes();
+      return Aes.encryptCbc(encryptionKey, IV, padToBlockSize(data));
    }
 
-   private static void xorBytes(byte[] toApply, byte[] target) {
-      if (toApply.length != target.length) {
-         throw new RuntimeException();
-      }
-      for (int i = 0; i < toApply.length; i++) {
-         target[i] = (byte) (target[i] ^ toApply[i]);
+   private static byte[] padToBlockSize(byte[] data) {
+      // A partial last block is padded with zeros
+      int length = paddedLength(data.length);
+      if (data.length == length) {
+         return data;
       }
+      return BitUtils.copyOf(data, length);
+   }
+
+   private static int paddedLength(int length) {
+      return (length + Aes.BLOCK_SIZE - 1) / Aes.BLOCK_SIZE * Aes.BLOCK_SIZE;
    }
 
    private static final int MAC_LENGTH = 128 / 8;
@@ -229,7 +274,12 @@ public class ChatMessageEncryptionKey implements Serializable {
     * bytes
     */
    private byte[] calculateHmac(byte[] messageBytes) {
-      byte[] hmac = Hmac.hmacSha256(hmacKey, messageBytes);
+      HmacContext context = hmacContext;
+      if (context == null) {
+         context = HmacContext.sha256(hmacKey);
+         hmacContext = context;
+      }
+      byte[] hmac = context.mac(messageBytes);
       // We use the first half of the H-MAC value as our MAC value
       return BitUtils.copyOf(hmac, MAC_LENGTH);
    }
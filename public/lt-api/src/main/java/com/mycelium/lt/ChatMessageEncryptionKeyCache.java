@@ -0,0 +1,123 @@
+package com.mycelium.lt;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import com.mrd.bitlib.crypto.InMemoryPrivateKey;
+import com.mrd.bitlib.crypto.PublicKey;
+
+/**
+ * A bounded cache of chat message encryption keys, so that the ECDH shared
+ * secret of a trade session is only calculated once. The least recently used
+ * key is evicted when the cache is full, and the key material of evicted
+ * entries is overwritten. This class is thread safe.
+ */
+public class ChatMessageEncryptionKeyCache {
+
+   private static class CacheKey {
+      private final byte[] ownPublicKey;
+      private final byte[] foreignPublicKey;
+      private final UUID tradeSessionId;
+
+      private CacheKey(PublicKey ownPublicKey, PublicKey foreignPublicKey, UUID tradeSessionId) {
+         this.ownPublicKey = ownPublicKey.getPublicKeyBytes();
+         this.foreignPublicKey = foreignPublicKey.getPublicKeyBytes();
+         this.tradeSessionId = tradeSessionId;
+      }
+
+      @Override
+      public int hashCode() {
+         return Arrays.hashCode(foreignPublicKey) ^ tradeSessionId.hashCode();
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+         if (!(obj instanceof CacheKey)) {
+            return false;
+         }
+         CacheKey other = (CacheKey) obj;
+         return tradeSessionId.equals(other.tradeSessionId) && Arrays.equals(foreignPublicKey, other.foreignPublicKey)
+               && Arrays.equals(ownPublicKey, other.ownPublicKey);
+      }
+   }
+
+   private final Map<CacheKey, ChatMessageEncryptionKey> keys;
+
+   /**
+    * @param maxSize
+    *           the maximum number of keys to keep
+    */
+   public ChatMessageEncryptionKeyCache(final int maxSize) {
+      if (maxSize < 1) {
+         throw new IllegalArgumentException("The cache must hold at least one key");
+      }
+      keys = new LinkedHashMap<CacheKey, ChatMessageEncryptionKey>(16, 0.75f, true) {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<CacheKey, ChatMessageEncryptionKey> eldest) {
+            if (size() > maxSize) {
+               wipe(eldest.getValue());
+               return true;
+            }
+            return false;
+         }
+      };
+   }
+
+   /**
+    * Get the chat message encryption key for a trade session, calculating it
+    * with {@link ChatMessageEncryptionKey#fromEcdh} if it is not cached.
+    * <p>
+    * The returned key is a copy owned by the caller, and stays usable after
+    * the cached key is evicted.
+    */
+   public ChatMessageEncryptionKey get(PublicKey foreignPublicKey, InMemoryPrivateKey privateKey, UUID tradeSessionId) {
+      CacheKey cacheKey = new CacheKey(privateKey.getPublicKey(), foreignPublicKey, tradeSessionId);
+      synchronized (keys) {
+         ChatMessageEncryptionKey key = keys.get(cacheKey);
+         if (key != null) {
+            // Copy while holding the lock, as eviction wipes the cached key
+            return key.copy();
+         }
+      }
+      // Calculate outside the lock, at worst two threads calculate the same
+      // key
+      ChatMessageEncryptionKey key = ChatMessageEncryptionKey.fromEcdh(foreignPublicKey, privateKey, tradeSessionId);
+      ChatMessageEncryptionKey result = key.copy();
+      synchronized (keys) {
+         ChatMessageEncryptionKey previous = keys.put(cacheKey, key);
+         if (previous != null) {
+            wipe(previous);
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Remove all keys and overwrite their key material, for instance when the
+    * local trader account is removed
+    */
+   public void clear() {
+      synchronized (keys) {
+         for (ChatMessageEncryptionKey key : keys.values()) {
+            wipe(key);
+         }
+         keys.clear();
+      }
+   }
+
+   public int size() {
+      synchronized (keys) {
+         return keys.size();
+      }
+   }
+
+   private static void wipe(ChatMessageEncryptionKey key) {
+      Arrays.fill(key.encryptionKey, (byte) 0);
+      Arrays.fill(key.hmacKey, (byte) 0);
+   }
+
+}
@@ -1,5 +1,7 @@
 package com.mycelium.lt;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import junit.framework.Assert;
@@ -42,6 +44,58 @@ public class MessageEncryptionTest {
       checkEncryptDecrypt(MESSAGE_THREE, encryptionKey);
    }
 
+   @Test
+   public void testBulkDecryption() throws KeyGenerationException {
+      UUID tradeSessionId = UUID.randomUUID();
+      HdKeyNode root = HdKeyNode.fromSeed(MASTER_SEED);
+      InMemoryPrivateKey myPrv = root.createChildPrivateKey(0);
+      PublicKey foreignPub = root.createChildPublicKey(1);
+      ChatMessageEncryptionKey encryptionKey = ChatMessageEncryptionKey.fromEcdh(foreignPub, myPrv, tradeSessionId);
+
+      List<String> history = new ArrayList<String>();
+      history.add(encryptionKey.encryptChatMessage(MESSAGE_ONE));
+      history.add(encryptionKey.encryptChatMessage(MESSAGE_TWO));
+      history.add("not base 64 !");
+      history.add(encryptionKey.encryptChatMessage(MESSAGE_THREE));
+      history.add(ChatMessageEncryptionKey.fromEcdh(foreignPub, myPrv, UUID.randomUUID()).encryptChatMessage(
+            MESSAGE_ONE));
+      history.add(encryptionKey.encryptChatMessage(MESSAGE_ONE));
+
+      List<String> decrypted = encryptionKey.decryptAndCheckChatMessages(history);
+      Assert.assertEquals(history.size(), decrypted.size());
+      Assert.assertEquals(MESSAGE_ONE, decrypted.get(0));
+      Assert.assertEquals(MESSAGE_TWO, decrypted.get(1));
+      Assert.assertNull(decrypted.get(2));
+      Assert.assertEquals(MESSAGE_THREE, decrypted.get(3));
+      Assert.assertNull(decrypted.get(4));
+      Assert.assertEquals(MESSAGE_ONE, decrypted.get(5));
+   }
+
+   @Test
+   public void testKeyCache() throws KeyGenerationException {
+      HdKeyNode root = HdKeyNode.fromSeed(MASTER_SEED);
+      InMemoryPrivateKey myPrv = root.createChildPrivateKey(0);
+      PublicKey foreignPub = root.createChildPublicKey(1);
+      UUID session1 = UUID.randomUUID();
+      UUID session2 = UUID.randomUUID();
+      ChatMessageEncryptionKeyCache cache = new ChatMessageEncryptionKeyCache(1);
+
+      ChatMessageEncryptionKey key1 = cache.get(foreignPub, myPrv, session1);
+      Assert.assertEquals(ChatMessageEncryptionKey.fromEcdh(foreignPub, myPrv, session1), key1);
+      Assert.assertEquals(key1, cache.get(foreignPub, myPrv, session1));
+      Assert.assertEquals(1, cache.size());
+
+      // Evicting the first key leaves the copy handed out intact
+      ChatMessageEncryptionKey key2 = cache.get(foreignPub, myPrv, session2);
+      Assert.assertEquals(1, cache.size());
+      Assert.assertFalse(key1.equals(key2));
+      Assert.assertEquals(ChatMessageEncryptionKey.fromEcdh(foreignPub, myPrv, session1), key1);
+
+      cache.clear();
+      Assert.assertEquals(0, cache.size());
+      Assert.assertEquals(ChatMessageEncryptionKey.fromEcdh(foreignPub, myPrv, session2), key2);
+   }
+
    @Test
    public void testEncryptionDecryptionNegative() throws KeyGenerationException {
       // Generate random trade session ID, encryption key and derive HMAC key
@@ -59,6 +59,7 @@ import com.mrd.bitlib.crypto.PublicKey;
 import com.mrd.bitlib.model.Address;
 import com.mycelium.lt.ApiUtils;
 import com.mycelium.lt.ChatMessageEncryptionKey;
+import com.mycelium.lt.ChatMessageEncryptionKeyCache;
 import com.mycelium.lt.api.LtApi;
 import com.mycelium.lt.api.LtApiException;
 import com.mycelium.lt.api.model.LtSession;
@@ -81,6 +82,7 @@ public class LocalTraderManager {
    public static final String GCM_SENDER_ID = "1025080855849";
 
    private static final String TAG = "LocalTraderManager";
+   private static final int CHAT_MESSAGE_ENCRYPTION_KEY_CACHE_SIZE = 32;
 
    final private Context _context;
    final private RecordManager _recordManager;
@@ -105,6 +107,8 @@ public class LocalTraderManager {
    private boolean _notificationsEnabled;
    private TraderInfo _cachedTraderInfo;
    private long _lastNotificationSoundTimestamp;
+   private final ChatMessageEncryptionKeyCache _chatMessageEncryptionKeyCache = new ChatMessageEncryptionKeyCache(
+         CHAT_MESSAGE_ENCRYPTION_KEY_CACHE_SIZE);
 
    public LocalTraderManager(Context context, RecordManager recordManager, TradeSessionDb db, LtApi api,
          MbwManager mbwManager) {
@@ -562,7 +566,7 @@ public class LocalTraderManager {
    }
 
    public ChatMessageEncryptionKey generateChatMessageEncryptionKey(PublicKey foreignPublicKey, UUID tradeSessionId) {
-      return ChatMessageEncryptionKey.fromEcdh(foreignPublicKey, getLocalTraderPrivateKey(), tradeSessionId);
+      return _chatMessageEncryptionKeyCache.get(foreignPublicKey, getLocalTraderPrivateKey(), tradeSessionId);
    }
 
    public void unsetLocalTraderAccount() {
@@ -574,6 +578,7 @@ public class LocalTraderManager {
       editor.remove(Constants.LOCAL_TRADER_NICKNAME_SETTING);
       setLastTraderSynchronization(0);
       _db.deleteAll();
+      _chatMessageEncryptionKeyCache.clear();
       editor.commit();
    }
 
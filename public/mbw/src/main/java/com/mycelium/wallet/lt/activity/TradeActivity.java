@@ -41,8 +41,10 @@ import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 
 import android.app.Activity;
@@ -135,6 +137,7 @@ public class TradeActivity extends Activity {
    private TextView _tvConfidence;
    private ListView _lvChat;
    private ChatAdapter _chatAdapter;
+   private Map<ChatEntry, String> _decryptedChatMessages = new IdentityHashMap<ChatEntry, String>();
    private Ringtone _updateSound;
    private boolean _dingOnUpdates;
    private boolean _didShowInsufficientFunds;
@@ -222,6 +225,25 @@ public class TradeActivity extends Activity {
       return _key;
    }
 
+   /**
+    * Decrypt the whole chat history at once rather than one message per row
+    */
+   private void decryptChatMessages(List<ChatEntry> chatEntries) {
+      List<ChatEntry> encryptedEntries = new ArrayList<ChatEntry>();
+      List<String> encryptedMessages = new ArrayList<String>();
+      for (ChatEntry chatEntry : chatEntries) {
+         if (chatEntry.type == ChatEntry.TYPE_OWNER_CHAT || chatEntry.type == ChatEntry.TYPE_PEER_CHAT) {
+            encryptedEntries.add(chatEntry);
+            encryptedMessages.add(chatEntry.message);
+         }
+      }
+      List<String> decrypted = getChatMessageEncryptionKey().decryptAndCheckChatMessages(encryptedMessages);
+      _decryptedChatMessages = new IdentityHashMap<ChatEntry, String>();
+      for (int i = 0; i < encryptedEntries.size(); i++) {
+         _decryptedChatMessages.put(encryptedEntries.get(i), decrypted.get(i));
+      }
+   }
+
    OnClickListener refreshClickListener = new OnClickListener() {
 
       @Override
@@ -484,6 +506,7 @@ public class TradeActivity extends Activity {
       }
 
       // Chat
+      decryptChatMessages(tradeSession.chatEntries);
       _chatAdapter.clear();
       for (ChatEntry chatEntry : tradeSession.chatEntries) {
          _chatAdapter.add(chatEntry);
@@ -585,6 +608,17 @@ public class TradeActivity extends Activity {
          _invalidMessageBackgroundColor = 0xFFFF0000; // red
       }
 
+      private String getDecryptedChatMessage(ChatEntry chatEntry) throws InvalidChatMessage {
+         if (!_decryptedChatMessages.containsKey(chatEntry)) {
+            return getChatMessageEncryptionKey().decryptAndCheckChatMessage(chatEntry.message);
+         }
+         String message = _decryptedChatMessages.get(chatEntry);
+         if (message == null) {
+            throw new InvalidChatMessage("Message integrity check failed");
+         }
+         return message;
+      }
+
       @Override
       public View getView(int position, View convertView, ViewGroup parent) {
          View v = convertView;
@@ -619,7 +653,7 @@ public class TradeActivity extends Activity {
          case ChatEntry.TYPE_OWNER_CHAT:
             try {
                text = new StringBuilder().append(_tradeSession.ownerName).append(": ")
-                     .append(getChatMessageEncryptionKey().decryptAndCheckChatMessage(o.message)).toString();
+                     .append(getDecryptedChatMessage(o)).toString();
                color = _ownerMessageBackgroundColor;
             } catch (InvalidChatMessage e) {
                text = getString(R.string.lt_invalid_chat_message, _tradeSession.ownerName);
@@ -629,7 +663,7 @@ public class TradeActivity extends Activity {
          case ChatEntry.TYPE_PEER_CHAT:
             try {
                text = new StringBuilder().append(_tradeSession.peerName).append(": ")
-                     .append(getChatMessageEncryptionKey().decryptAndCheckChatMessage(o.message)).toString();
+                     .append(getDecryptedChatMessage(o)).toString();
                color = _peerMessageBackgroundColor;
             } catch (InvalidChatMessage e) {
                text = getString(R.string.lt_invalid_chat_message, _tradeSession.peerName);
@@ -40,10 +40,17 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
@@ -152,6 +159,17 @@ public class ExportDistiller {
 
    public static String exportPrivateKeys(Context context, ExportPdfParameters params,
          ExportProgressTracker progressTracker) {
+      // Render the QR codes on other threads while the pages are laid out
+      QrCodeRenderer qrCodes = new QrCodeRenderer(params.getAllEntries());
+      try {
+         return exportPrivateKeys(context, params, progressTracker, qrCodes);
+      } finally {
+         qrCodes.shutdown();
+      }
+   }
+
+   private static String exportPrivateKeys(Context context, ExportPdfParameters params,
+         ExportProgressTracker progressTracker, QrCodeRenderer qrCodes) {
 
       int pageWidth = PaperSize.EXECUTIVE_WIDTH;
       int pageHeight = PaperSize.EXECUTIVE_HEIGHT;
@@ -282,7 +300,7 @@ public class ExportDistiller {
       // Add first key to first page (we know that there will always be one
       // acrive record)
       fromTop += addRecord(new OffsetWriter(0F, fromTop, writer), true, 1, activeRecords, params.firstEntry(), true,
-            progressTracker);
+            progressTracker, qrCodes);
 
       // Add page number
       int pageNum = 1;
@@ -305,7 +323,7 @@ public class ExportDistiller {
 
          // Add Record
          fromTop += addRecord(new OffsetWriter(0F, fromTop, writer), true, i + 1 + 1, params.getNumActive(),
-               exportEntry, lastRecordOnPage, progressTracker);
+               exportEntry, lastRecordOnPage, progressTracker, qrCodes);
 
          // Add page number
          if (lastRecordOnPage) {
@@ -327,7 +345,7 @@ public class ExportDistiller {
 
          // Add Record
          fromTop += addRecord(new OffsetWriter(0F, fromTop, writer), false, i + 1, archiveWithoutFirst.size(),
-               archiveWithoutFirst.get(i), lastRecordOnPage, progressTracker);
+               archiveWithoutFirst.get(i), lastRecordOnPage, progressTracker, qrCodes);
 
          // Add page number
          if (lastRecordOnPage) {
@@ -350,7 +368,7 @@ public class ExportDistiller {
    }
 
    private static double addRecord(OffsetWriter writer, boolean active, int entryNum, int totalEntries,
-         ExportEntry entry, boolean addEndLine, ExportProgressTracker progressTracker) {
+         ExportEntry entry, boolean addEndLine, ExportProgressTracker progressTracker, QrCodeRenderer qrCodes) {
       String address = entry.address;
       String encryptedKey = entry.encryptedKey;
       double fromTop = 0;
@@ -392,7 +410,7 @@ public class ExportDistiller {
       // Bitmap addressQr = Utils.getQRCodeBitmap("bitcoin:" + address, 200, 0);
       // writer.addImage(2.9, fromTop, 3.5, 3.5, addressQr);
 
-      writer.addQrCode(2.9, fromTop - 0.25, 3.5, "bitcoin:" + address);
+      writer.addQrCode(2.9, fromTop - 0.25, 3.5, qrCodes.get("bitcoin:" + address));
 
       progressTracker.addressCompleted();
       // Encrypted private key QR-code
@@ -400,7 +418,7 @@ public class ExportDistiller {
          // Bitmap keyQr = Utils.getQRCodeBitmap(encryptedKey, 200, 0);
          // writer.addImage(12.5, fromTop, 3.5, 3.5, keyQr);
 
-         writer.addQrCode(12.5, fromTop - 0.5, 4, encryptedKey);
+         writer.addQrCode(12.5, fromTop - 0.5, 4, qrCodes.get(encryptedKey));
 
          progressTracker.privateKeyCompleted();
       }
@@ -668,6 +686,68 @@ public class ExportDistiller {
       return chopped;
    }
 
+   private static BitMatrix getQRCodeMatrix(String url) {
+      Hashtable<EncodeHintType, Object> hints = new Hashtable<EncodeHintType, Object>();
+      hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
+      hints.put(EncodeHintType.MARGIN, 0);
+      try {
+         return new QRCodeWriter().encode(url, BarcodeFormat.QR_CODE, 0, 0, hints);
+      } catch (final WriterException e) {
+         throw new RuntimeException(e);
+      }
+   }
+
+   /**
+    * Renders the QR code matrices of all entries on a thread pool, so that the
+    * page layout can pick them up in document order as they are needed
+    */
+   private static class QrCodeRenderer {
+      private final ExecutorService _executor;
+      private final Map<String, Future<BitMatrix>> _matrices;
+
+      public QrCodeRenderer(Iterable<ExportEntry> entries) {
+         _executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+         _matrices = new HashMap<String, Future<BitMatrix>>();
+         for (ExportEntry entry : entries) {
+            prefetch("bitcoin:" + entry.address);
+            if (entry.encryptedKey != null) {
+               prefetch(entry.encryptedKey);
+            }
+         }
+      }
+
+      private void prefetch(final String content) {
+         if (_matrices.containsKey(content)) {
+            return;
+         }
+         _matrices.put(content, _executor.submit(new Callable<BitMatrix>() {
+            @Override
+            public BitMatrix call() {
+               return getQRCodeMatrix(content);
+            }
+         }));
+      }
+
+      public BitMatrix get(String content) {
+         Future<BitMatrix> future = _matrices.get(content);
+         if (future == null) {
+            return getQRCodeMatrix(content);
+         }
+         try {
+            return future.get();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+         } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+         }
+      }
+
+      public void shutdown() {
+         _executor.shutdownNow();
+      }
+   }
+
    private static class OffsetWriter extends MyWriter {
 
       public OffsetWriter(double cmX, double cmY, OffsetWriter parent) {
@@ -790,8 +870,7 @@ public class ExportDistiller {
                height, bitmap);
       }
 
-      public void addQrCode(double cmX, double cmY, double cmSize, String url) {
-         BitMatrix matrix = getQRCodeMatrix(url);
+      public void addQrCode(double cmX, double cmY, double cmSize, BitMatrix matrix) {
          int xPos = translateCmX(cmX);
          int yPos = translateCmX(cmY);
          int width = matrix.getWidth();
@@ -815,17 +894,6 @@ public class ExportDistiller {
          return Math.round(value * 10) / 10.0;
       }
 
-      private static BitMatrix getQRCodeMatrix(String url) {
-         Hashtable<EncodeHintType, Object> hints = new Hashtable<EncodeHintType, Object>();
-         hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.M);
-         hints.put(EncodeHintType.MARGIN, 0);
-         try {
-            return new QRCodeWriter().encode(url, BarcodeFormat.QR_CODE, 0, 0, hints);
-         } catch (final WriterException e) {
-            throw new RuntimeException(e);
-         }
-      }
-
       public String asString() {
          return _writer.asString();
       }
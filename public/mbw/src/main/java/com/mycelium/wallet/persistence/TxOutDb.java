@@ -49,6 +49,7 @@ import com.mrd.bitlib.model.OutPoint;
 import com.mrd.bitlib.model.SourcedTransactionOutput;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.OutPointSet;
 import com.mrd.bitlib.util.Sha256Hash;
 import com.mrd.mbwapi.api.AddressOutputState;
 
@@ -292,7 +293,7 @@ public class TxOutDb {
    }
 
    public Set<OutPoint> getConfirmedOutputState(Address address) {
-      Set<OutPoint> result = new HashSet<OutPoint>();
+      Set<OutPoint> result = new OutPointSet();
       Cursor cursor = null;
       try {
          SQLiteQueryWithBlobs blobQuery = new SQLiteQueryWithBlobs(_database);
@@ -315,7 +316,7 @@ public class TxOutDb {
    }
 
    public Set<OutPoint> getReceivingOutputState(Address address) {
-      Set<OutPoint> result = new HashSet<OutPoint>();
+      Set<OutPoint> result = new OutPointSet();
       Cursor cursor = null;
       try {
          SQLiteQueryWithBlobs blobQuery = new SQLiteQueryWithBlobs(_database);
@@ -338,7 +339,7 @@ public class TxOutDb {
    }
 
    public Set<OutPoint> getSendingOutputState(Address address) {
-      Set<OutPoint> result = new HashSet<OutPoint>();
+      Set<OutPoint> result = new OutPointSet();
       Cursor cursor = null;
       try {
          SQLiteQueryWithBlobs blobQuery = new SQLiteQueryWithBlobs(_database);
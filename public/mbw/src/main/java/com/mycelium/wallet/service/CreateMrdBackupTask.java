@@ -36,9 +36,16 @@ package com.mycelium.wallet.service;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import android.content.Context;
 
@@ -82,7 +89,7 @@ public class CreateMrdBackupTask extends ServiceTask<Boolean> {
    private String _stretchStatusMessage;
    private String _encryptStatusMessage;
    private String _pdfStatusMessage;
-   private Double _encryptionProgress;
+   private AtomicInteger _encryptedCount;
    private ExportProgressTracker _pdfProgress;
 
    public CreateMrdBackupTask(KdfParameters kdfParameters, Context context, RecordManager recordManager,
@@ -123,20 +130,21 @@ public class CreateMrdBackupTask extends ServiceTask<Boolean> {
             return false;
          }
 
-         // Encrypt
-         _encryptionProgress = 0D;
-         double increment = 1D / (_active.size() + _archived.size());
-         // Encrypt active
-         List<ExportEntry> encryptedActiveKeys = new LinkedList<ExportEntry>();
-         for (EntryToExport e : _active) {
-            encryptedActiveKeys.add(createExportEntry(e, encryptionParameters, _network));
-            _encryptionProgress += increment;
-         }
-         // Encrypt archived
-         List<ExportEntry> encryptedArchivedKeys = new LinkedList<ExportEntry>();
-         for (EntryToExport e : _archived) {
-            encryptedArchivedKeys.add(createExportEntry(e, encryptionParameters, _network));
-            _encryptionProgress += increment;
+         // Encrypt active and archived keys in parallel, the AES and checksum
+         // work is independent for every entry
+         List<ExportEntry> encryptedActiveKeys;
+         List<ExportEntry> encryptedArchivedKeys;
+         _encryptedCount = new AtomicInteger();
+         ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+         try {
+            List<Future<ExportEntry>> active = submitAll(executor, _active, encryptionParameters);
+            List<Future<ExportEntry>> archived = submitAll(executor, _archived, encryptionParameters);
+            encryptedActiveKeys = getAll(active);
+            encryptedArchivedKeys = getAll(archived);
+         } catch (InterruptedException e) {
+            return false;
+         } finally {
+            executor.shutdownNow();
          }
 
          // Generate PDF document
@@ -160,6 +168,38 @@ public class CreateMrdBackupTask extends ServiceTask<Boolean> {
       _kdfParameters.terminate();
    }
 
+   private List<Future<ExportEntry>> submitAll(ExecutorService executor, List<EntryToExport> entries,
+         final EncryptionParameters parameters) {
+      List<Future<ExportEntry>> futures = new ArrayList<Future<ExportEntry>>(entries.size());
+      for (final EntryToExport e : entries) {
+         futures.add(executor.submit(new Callable<ExportEntry>() {
+            @Override
+            public ExportEntry call() {
+               ExportEntry entry = createExportEntry(e, parameters, _network);
+               _encryptedCount.incrementAndGet();
+               return entry;
+            }
+         }));
+      }
+      return futures;
+   }
+
+   private static List<ExportEntry> getAll(List<Future<ExportEntry>> futures) throws InterruptedException {
+      List<ExportEntry> result = new LinkedList<ExportEntry>();
+      for (Future<ExportEntry> future : futures) {
+         try {
+            result.add(future.get());
+         } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OutOfMemoryError) {
+               throw (OutOfMemoryError) cause;
+            }
+            throw new RuntimeException(cause);
+         }
+      }
+      return result;
+   }
+
    private static ExportEntry createExportEntry(EntryToExport toExport, EncryptionParameters parameters,
          NetworkParameters network) {
       String encrypted = null;
@@ -173,8 +213,9 @@ public class CreateMrdBackupTask extends ServiceTask<Boolean> {
    protected ServiceTaskStatus getStatus() {
       if (_pdfProgress != null) {
          return new ServiceTaskStatus(_pdfStatusMessage, _pdfProgress.getProgress());
-      } else if (_encryptionProgress != null) {
-         return new ServiceTaskStatus(_encryptStatusMessage, _encryptionProgress);
+      } else if (_encryptedCount != null) {
+         double progress = (double) _encryptedCount.get() / (_active.size() + _archived.size());
+         return new ServiceTaskStatus(_encryptStatusMessage, progress);
       } else {
          return new ServiceTaskStatus(_stretchStatusMessage, _kdfParameters.getProgress());
       }
@@ -34,7 +34,6 @@
 
 package com.mrd.mbwapi.api;
 
-import java.util.HashSet;
 import java.util.Set;
 
 import com.mrd.bitlib.model.Address;
@@ -42,6 +41,7 @@ import com.mrd.bitlib.model.OutPoint;
 import com.mrd.bitlib.util.ByteReader;
 import com.mrd.bitlib.util.ByteReader.InsufficientBytesException;
 import com.mrd.bitlib.util.ByteWriter;
+import com.mrd.bitlib.util.OutPointSet;
 
 public class AddressOutputState {
    public Address address;
@@ -66,7 +66,7 @@ public class AddressOutputState {
 
    private static Set<OutPoint> outPointSetFromReader(ByteReader reader) throws InsufficientBytesException {
       int size = reader.getIntLE();
-      Set<OutPoint> list = new HashSet<OutPoint>(size);
+      Set<OutPoint> list = new OutPointSet(size);
       for (int i = 0; i < size; i++) {
          list.add(new OutPoint(reader));
       }